@@ -0,0 +1,128 @@
+package com.callumbirks;
+
+import java.util.Random;
+
+/*
+    The BenchmarkMaps class creates the grids used by the benchmarks. Every map is square, and is
+    created from a fixed seed so that each run of the benchmarks searches exactly the same grids.
+    The start node of every map is the top left cell, (0, 0), and the end node is the cell one in
+    from the bottom right corner, (size - 2, size - 2), which is open in every type of map.
+ */
+public final class BenchmarkMaps {
+    // The seed used for every random choice, so that the maps are the same on every run
+    private static final long SEED = 15;
+    // The fraction of cells which are walls in the random maps
+    private static final double WALL_DENSITY = 0.25;
+
+    // The types of map the benchmarks are run on
+    public enum Type {
+        // A grid with no walls at all
+        OPEN,
+        // A perfect maze, where there is exactly one path between any two open cells
+        MAZE,
+        // A grid where a quarter of the cells are walls, scattered at random
+        RANDOM,
+        // A random grid where the end node is shut in by walls, so that there is no path to it
+        UNREACHABLE
+    }
+
+    private BenchmarkMaps() {
+    }
+
+    // Create a map of the given type, with the given number of rows and columns
+    static Grid create(Type type, int size) {
+        Grid grid = new Grid(size, size);
+        Random random = new Random(SEED);
+        switch (type) {
+            case OPEN:
+                break;
+            case MAZE:
+                carveMaze(grid, random);
+                break;
+            case RANDOM:
+            case UNREACHABLE:
+                // Scatter the walls again until the start node and end node are connected
+                do {
+                    for (int i = 0; i < grid.getSize(); i++)
+                        grid.setWall(i, random.nextDouble() < WALL_DENSITY);
+                    grid.setWall(start(grid), false);
+                    grid.setWall(end(grid), false);
+                } while (!new Components(grid).isConnected(start(grid), end(grid)));
+                break;
+        }
+        grid.setWall(start(grid), false);
+        grid.setWall(end(grid), false);
+        if (type == Type.UNREACHABLE) {
+            // Surround the end node with walls
+            int x = grid.getX(end(grid));
+            int y = grid.getY(end(grid));
+            grid.setWall(grid.index(x, y - 1), true);
+            grid.setWall(grid.index(x + 1, y), true);
+            grid.setWall(grid.index(x, y + 1), true);
+            grid.setWall(grid.index(x - 1, y), true);
+        }
+        return grid;
+    }
+
+    // The index of the start node of every map
+    static int start(Grid grid) {
+        return grid.index(0, 0);
+    }
+
+    // The index of the end node of every map
+    static int end(Grid grid) {
+        return grid.index(grid.getWidth() - 2, grid.getHeight() - 2);
+    }
+
+    /*
+        Fill the grid with walls and then carve a maze into it using a depth-first search. The cells with
+        even co-ordinates are the rooms of the maze, and the cells between two rooms are the walls which are
+        knocked down to join them.
+     */
+    private static void carveMaze(Grid grid, Random random) {
+        for (int i = 0; i < grid.getSize(); i++)
+            grid.setWall(i, true);
+        int rooms = (grid.getWidth() + 1) / 2;
+        int[] stack = new int[rooms * rooms];
+        boolean[] visited = new boolean[rooms * rooms];
+        int[] directions = {0, 1, 2, 3};
+        int top = 0;
+        stack[top++] = 0;
+        visited[0] = true;
+        grid.setWall(0, false);
+        while (top > 0) {
+            int room = stack[top - 1];
+            int roomX = room % rooms;
+            int roomY = room / rooms;
+            // Try the directions in a random order, moving to the first unvisited room found
+            shuffle(directions, random);
+            boolean moved = false;
+            for (int direction : directions) {
+                int nextX = roomX + (direction == 1 ? 1 : direction == 3 ? -1 : 0);
+                int nextY = roomY + (direction == 2 ? 1 : direction == 0 ? -1 : 0);
+                if (nextX < 0 || nextY < 0 || nextX >= rooms || nextY >= rooms || 2 * nextX >= grid.getWidth()
+                        || 2 * nextY >= grid.getHeight() || visited[nextY * rooms + nextX])
+                    continue;
+                visited[nextY * rooms + nextX] = true;
+                grid.setWall(grid.index(roomX + nextX, roomY + nextY), false);
+                grid.setWall(grid.index(2 * nextX, 2 * nextY), false);
+                stack[top++] = nextY * rooms + nextX;
+                moved = true;
+                break;
+            }
+            // If every neighbouring room has been visited, go back to the previous room
+            if (!moved)
+                top--;
+        }
+    }
+
+    // Shuffle the given array into a random order
+    private static void shuffle(int[] array, Random random) {
+        for (int i = array.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int temp = array[i];
+            array[i] = array[j];
+            array[j] = temp;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.callumbirks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/*
+    Benchmarks one tick of the CooperativePlanner with many agents on a random map, heading for a handful
+    of shared goals. The sample times show how steady the time per tick is, which is what matters for
+    keeping to a frame budget. The planner is created again for each iteration, so that the agents are
+    still moving rather than waiting at their goals.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CooperativeBenchmark {
+    // The number of different goals the agents head for
+    private static final int GOAL_COUNT = 8;
+
+    @Param({"256"})
+    public int size;
+
+    @Param({"1000", "4000"})
+    public int agents;
+
+    private CooperativePlanner planner;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        Grid grid = BenchmarkMaps.create(BenchmarkMaps.Type.RANDOM, size);
+        planner = new CooperativePlanner(grid);
+        Random random = new Random(size);
+        int[] goals = new int[GOAL_COUNT];
+        for (int i = 0; i < GOAL_COUNT; ) {
+            goals[i] = random.nextInt(grid.getSize());
+            if (!grid.isWall(goals[i]))
+                i++;
+        }
+        // Place the agents on distinct open cells, which are skipped if another agent is already there
+        while (planner.getAgentCount() < agents) {
+            int cell = random.nextInt(grid.getSize());
+            int goal = goals[random.nextInt(GOAL_COUNT)];
+            if (grid.isWall(cell))
+                continue;
+            try {
+                planner.addAgent(grid.getX(cell), grid.getY(cell), grid.getX(goal), grid.getY(goal), 0);
+            } catch (IllegalArgumentException e) {
+                // Another agent is already at this cell
+            }
+        }
+        // Let every agent make its first plan, which is the one tick where they all plan at once
+        planner.tick();
+    }
+
+    @Benchmark
+    public int tick() {
+        planner.tick();
+        return planner.getLastPlanned();
+    }
+}
@@ -0,0 +1,57 @@
+package com.callumbirks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+    Benchmarks turning the result of a search into a path, on a maze where the path is long. 'reconstructPath'
+    follows the previous values left by the search back from the end node, and 'setPath' is the step AStar
+    takes afterwards to store the cells of the path.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReconstructPathBenchmark {
+    @Param({"64", "256", "1024"})
+    public int size;
+
+    private AStar aStar;
+    private AStarSearch search;
+    private int end;
+    private int[] cells;
+
+    @Setup
+    public void setup() {
+        Grid grid = BenchmarkMaps.create(BenchmarkMaps.Type.MAZE, size);
+        aStar = new AStar(grid);
+        search = new AStarSearch(grid, new SearchState(grid.getSize()));
+        end = BenchmarkMaps.end(grid);
+        // Search once, leaving the previous values of the path in the search state
+        cells = search.findPath(BenchmarkMaps.start(grid), end);
+    }
+
+    @Benchmark
+    public int[] reconstructPath() {
+        return search.reconstructPath(end);
+    }
+
+    @Benchmark
+    public GridPath setPath() {
+        aStar.setPath(cells);
+        return aStar.getPath();
+    }
+}
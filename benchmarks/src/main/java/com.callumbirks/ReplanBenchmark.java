@@ -0,0 +1,76 @@
+package com.callumbirks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/*
+    Benchmarks the work the Controller does while the user draws walls: change one wall, then run the
+    search again. The walls changed are chosen from a fixed list of open cells, and each is added the first
+    time it is chosen and removed the next, so the grid stays close to the original map however long the
+    benchmark runs for.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReplanBenchmark {
+    // The number of cells to choose the walls from, which must be a power of 2
+    private static final int CELL_COUNT = 1024;
+
+    @Param({"256", "1024"})
+    public int size;
+
+    @Param({"A_STAR", "JUMP_POINT", "INCREMENTAL", "HIERARCHICAL", "BIDIRECTIONAL"})
+    public AStar.Mode mode;
+
+    private AStar aStar;
+    private int[] xs;
+    private int[] ys;
+    private int next = 0;
+
+    @Setup
+    public void setup() {
+        Grid grid = BenchmarkMaps.create(BenchmarkMaps.Type.RANDOM, size);
+        aStar = new AStar(grid);
+        aStar.setMode(mode);
+        int start = BenchmarkMaps.start(grid);
+        int end = BenchmarkMaps.end(grid);
+        aStar.setStart(grid.getX(start), grid.getY(start));
+        aStar.setEnd(grid.getX(end), grid.getY(end));
+        aStar.run();
+        // Choose the cells whose walls will be changed, from the open cells other than the start and end nodes
+        xs = new int[CELL_COUNT];
+        ys = new int[CELL_COUNT];
+        Random random = new Random(size);
+        for (int i = 0; i < CELL_COUNT; ) {
+            int cell = random.nextInt(grid.getSize());
+            if (grid.isWall(cell) || cell == start || cell == end)
+                continue;
+            xs[i] = grid.getX(cell);
+            ys[i] = grid.getY(cell);
+            i++;
+        }
+    }
+
+    @Benchmark
+    public GridPath editAndReplan() {
+        int i = next++ & (CELL_COUNT - 1);
+        aStar.setWall(xs[i], ys[i], !aStar.isWall(xs[i], ys[i]));
+        aStar.run();
+        return aStar.getPath();
+    }
+}
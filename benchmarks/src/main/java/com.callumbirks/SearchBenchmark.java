@@ -0,0 +1,59 @@
+package com.callumbirks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+    Benchmarks a single call of AStar.run() on each type of map at several sizes, for each of the
+    searches which start from scratch on every run. The incremental mode is left out, as running it
+    again on an unchanged grid does no work, it is covered by ReplanBenchmark instead. The flow field mode
+    is left out for the same reason, and the anytime mode is also left out, as it spends up to its time
+    limit improving the path.
+    Both the throughput and the distribution of the time taken (with its percentiles) are reported.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SearchBenchmark {
+    @Param({"64", "256", "1024"})
+    public int size;
+
+    @Param({"OPEN", "MAZE", "RANDOM", "UNREACHABLE"})
+    public BenchmarkMaps.Type map;
+
+    @Param({"A_STAR", "JUMP_POINT", "BIDIRECTIONAL", "HIERARCHICAL", "WEIGHTED"})
+    public AStar.Mode mode;
+
+    private AStar aStar;
+
+    @Setup
+    public void setup() {
+        Grid grid = BenchmarkMaps.create(map, size);
+        aStar = new AStar(grid);
+        aStar.setMode(mode);
+        aStar.setStart(grid.getX(BenchmarkMaps.start(grid)), grid.getY(BenchmarkMaps.start(grid)));
+        aStar.setEnd(grid.getX(BenchmarkMaps.end(grid)), grid.getY(BenchmarkMaps.end(grid)));
+        // Run once so that anything created lazily by the mode (such as the clusters of HIERARCHICAL) already exists
+        aStar.run();
+    }
+
+    @Benchmark
+    public GridPath run() {
+        aStar.run();
+        return aStar.getPath();
+    }
+}
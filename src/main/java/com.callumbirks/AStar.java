@@ -1,76 +1,414 @@
 package com.callumbirks;
 
-import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.BitSet;
 import java.util.List;
-import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
 
 /*
-    This class contains the A* algorithm. This algorithm has been written
-    in a modular way so that with the Node class, it is entirely separable
-    from the GUI portion of the application.
+    This class is used to run the A* algorithm and the other pathfinding searches. It has been
+    written in a modular way so that with the Grid and Node classes, it is entirely separable
+    from the GUI portion of the application. The searches themselves are contained in their own
+    classes (such as AStarSearch), which this class chooses between depending on the mode.
  */
 public class AStar {
-    // A 2D array of Node objects which represents the grid
-    private final Node[][] grid;
-    // A Node object which represents the start node
-    private Node start = null;
-    // A Node object which represents the end node
-    private Node end = null;
-    // A List of Node objects which represents the path found by the algorithm
-    private List<Node> path = null;
+    // The value used to represent "no cell", for example when the start node has not been set
+    private static final int NONE = SearchState.NONE;
 
     /*
-        The primary and only constructor for the class, it takes the width and height of the
-        desired grid as parameters. The constructor is simply used to initialise the grid.
+        The different searches which can be used to find the path. A_STAR is the standard A* algorithm,
+        and JUMP_POINT is Jump Point Search, which finds a path of the same length on a grid where every
+        move has the same cost, but skips over the many equivalent paths through open areas of the grid
+        so that far fewer nodes are tested. INCREMENTAL is D* Lite, which keeps its work between runs
+        and only updates the part of the grid affected by walls being changed, making it the best choice
+        when the path is run again after every small change to the grid. HIERARCHICAL is Hierarchical
+        Pathfinding A*, which splits the grid into clusters and searches between the borders of the
+        clusters first, making long searches across large grids much faster at the cost of the path
+        sometimes being slightly longer than the shortest possible. BIDIRECTIONAL is bidirectional A*,
+        which searches from both the start node and the end node at once, so that a start or end node
+        which is shut in by walls is found quickly without testing the rest of the grid. WEIGHTED is
+        weighted A*, which multiplies h(n) by epsilon so that the search heads more directly towards the
+        end node, finding a path that is at most epsilon times as long as the shortest in far less time.
+        ANYTIME is Anytime Repairing A*, which finds a weighted A* path first and then keeps improving it,
+        lowering epsilon each time, until the path is the shortest or the time limit has passed.
+        FLOW_FIELD works out the distance from every cell to the end node once (see FlowField) and reads
+        the path from there, so searching from many start nodes to the same end node costs only the length
+        of each path. The field is kept up to date as walls change, like the incremental mode.
+
+        Every mode other than A_STAR, WEIGHTED, ANYTIME and FLOW_FIELD relies on every move costing the same and only
+        moving up, down, left or right. When any cell has a terrain cost other than 1, or diagonal moves are
+        allowed, those modes use the version of A* which handles both instead (see WeightedSearch).
+     */
+    public enum Mode {
+        A_STAR,
+        JUMP_POINT,
+        INCREMENTAL,
+        HIERARCHICAL,
+        BIDIRECTIONAL,
+        WEIGHTED,
+        ANYTIME,
+        FLOW_FIELD
+    }
+
+    // The Grid object which stores the width, height and walls of the map
+    private final Grid grid;
+    // The index of the start cell in the grid, or NONE if it has not been set
+    private int start = NONE;
+    // The index of the end cell in the grid, or NONE if it has not been set
+    private int end = NONE;
+    // The path found by the algorithm, held as the index of each cell along it
+    private GridPath path = null;
+    /*
+        A BitSet with a bit set for every cell on the path. This is kept up to date by setPath,
+        so that checking whether a cell is on the path (which is done for every cell when rendering)
+        takes O(1) time rather than searching through the path.
+     */
+    private final BitSet pathCells;
+    /*
+        The values used by the algorithm for each cell (f(n), g(n), h(n) and previous), stored as flat
+        arrays indexed by the index of the cell in the grid, along with the open set. These are created
+        once along with the grid and reused by each run.
+     */
+    private final SearchState state;
+    // The A* algorithm, which uses the grid and search state of this class
+    private final AStarSearch aStarSearch;
+    // The Jump Point Search, which shares the grid and search state with this class
+    private final JumpPointSearch jumpPointSearch;
+    // The A* algorithm for terrain costs and diagonal moves, which also shares the grid and search state
+    private final WeightedSearch weightedSearch;
+    /*
+        The incremental search, which is only created when the INCREMENTAL mode is first run,
+        as it uses several arrays as large as the grid which are kept between runs.
+     */
+    private IncrementalSearch incrementalSearch = null;
+    // The hierarchical search, which is only created when the HIERARCHICAL mode is first run
+    private HierarchicalSearch hierarchicalSearch = null;
+    /*
+        The bidirectional search, which is only created when the BIDIRECTIONAL mode is first run, as it
+        needs a second search state for the backward search.
+     */
+    private BidirectionalSearch bidirectionalSearch = null;
+    // The search state of the backward half of the bidirectional search
+    private SearchState backwardState = null;
+    // The anytime search, which is only created when the ANYTIME mode is first run
+    private AnytimeSearch anytimeSearch = null;
+    /*
+        The flow field, which is only created when the FLOW_FIELD mode is first run (or it is asked for), as it
+        uses several arrays as large as the grid which are kept between runs.
+     */
+    private FlowField flowField = null;
+    // The statistics of the last search, or null if there has not been a search yet
+    private SearchStats lastStats = null;
+    // Whether the values left in the search states belong to the last search, rather than it being skipped
+    private boolean searchedCellsValid = false;
+    // Whether the last search used the weighted search rather than the search for the current mode
+    private boolean lastSearchWeighted = false;
+    /*
+        The batch search used by findPaths, which searches a copy of the grid so that it can be shared
+        between threads. It is kept between batches so that its workspaces can be reused, and is thrown
+        away whenever a wall changes.
+     */
+    private BatchSearch batchSearch = null;
+    /*
+        The cells whose wall or terrain cost has changed since they were last taken with takeChangedCells, or null
+        if the changes are not being tracked. BackgroundSearch tracks them so that it only needs to pass the changed
+        cells to its own copy of the grid, rather than copying the whole grid for every search.
+     */
+    private BitSet changedCells = null;
+    /*
+        The connected components of the grid, used to check whether the end node can be reached at all
+        before searching for a path. These are created the first time they are needed and then kept up
+        to date as walls change.
+     */
+    private Components components = null;
+    /*
+        The cache of recent results, which is only created by the first search after a cache size has been set,
+        so an object which is never searched (such as the one BackgroundSearch copies the grid from) holds no
+        cache. Each change to the grid only removes the results it could affect, and changing how the path is
+        searched for removes them all.
+     */
+    private PathCache pathCache = null;
+    // The largest number of results held by the path cache, or 0 if there is no cache
+    private int cacheSize = 0;
+    /*
+        The landmark tables used to improve h(n) (see Landmarks), or null if there are none yet or a wall has
+        been removed since they were worked out. The tables are worked out again in the background when walls
+        change, and the new tables are taken the next time a search is run after they are finished.
+     */
+    private Landmarks landmarks = null;
+    // The number of landmarks to choose, or 0 if the landmark heuristic is off
+    private int landmarkCount = 0;
+    // Whether walls have changed since the landmark tables (or the tables being worked out) were started
+    private boolean landmarksStale = false;
+    // The version of the grid (see Grid.getVersion) the current landmark tables were worked out for
+    private long landmarksVersion = -1;
+    // The landmark tables being worked out in the background, or null if none are
+    private ForkJoinTask<Landmarks> pendingLandmarks = null;
+    // The version of the grid (see Grid.getVersion) the tables being worked out are for
+    private long pendingVersion = 0;
+    // The version of the grid straight after a wall was last removed, tables for an earlier version are not a lower bound
+    private long wallRemovedVersion = -1;
+    // The search used by the run function, A* by default
+    private Mode mode = Mode.A_STAR;
+    // Whether the path may move diagonally as well as up, down, left and right
+    private boolean diagonal = false;
+    // The weight h(n) is multiplied by in the WEIGHTED mode, and the weight the ANYTIME mode starts with
+    private double epsilon = 2;
+    // The longest time the ANYTIME mode spends improving its path, in milliseconds
+    private long timeLimit = 50;
+
+    /*
+        The primary constructor for the class, it takes the width and height of the
+        desired grid as parameters. The constructor is simply used to initialise an empty grid,
+        and the constructor below creates the arrays which hold the values for each cell.
      */
     public AStar(int width, int height) {
-        // Create a new 2D Node array with 'width' columns and 'height' rows, and assign it to the grid variable
-        grid = new Node[width][height];
-        // Loop through each element of the grid
-        for (int x = 0; x < width; x++) {
-            for (int y = 0; y < height; y++) {
-                // Set each element on the grid to a new Node with the relevant co-ordinates as parameters
-                grid[x][y] = new Node(x, y);
-            }
+        // Create a new Grid with 'width' columns and 'height' rows
+        this(new Grid(width, height));
+    }
+
+    /*
+        A constructor which searches the given grid, such as one loaded from a map file. The grid should
+        only be changed through this object from now on, so that the searches are told about each change.
+     */
+    public AStar(Grid grid) {
+        this.grid = grid;
+        // Create the values for each cell in the grid
+        state = new SearchState(grid.getSize());
+        pathCells = new BitSet(grid.getSize());
+        aStarSearch = new AStarSearch(grid, state);
+        jumpPointSearch = new JumpPointSearch(grid, state);
+        weightedSearch = new WeightedSearch(grid, state);
+    }
+
+    // Getter for the search used by the run function
+    public Mode getMode() {
+        return mode;
+    }
+
+    // Setter for the search used by the run function
+    public void setMode(Mode mode) {
+        this.mode = mode;
+        // The incremental search is only kept up to date while it is being used
+        if (mode != Mode.INCREMENTAL)
+            incrementalSearch = null;
+        // The same is true of the clusters of the hierarchical search
+        if (mode != Mode.HIERARCHICAL)
+            hierarchicalSearch = null;
+        // The second search state of the bidirectional search is not needed by the other modes
+        if (mode != Mode.BIDIRECTIONAL) {
+            bidirectionalSearch = null;
+            backwardState = null;
         }
-        // Loop through each element of the grid again
-        for (int x = 0; x < width; x++) {
-            for (int y = 0; y < height; y++) {
-                // Use the setNeighbours function to calculate and set the neighbours of each node in the grid
-                grid[x][y].setNeighbours(width, height, grid);
+        if (mode != Mode.ANYTIME)
+            anytimeSearch = null;
+        if (mode != Mode.FLOW_FIELD)
+            flowField = null;
+        // The values left in the search states are from a different mode
+        searchedCellsValid = false;
+        // The cached results may have been found by a different search
+        clearCache();
+    }
+
+    // Getter for the largest number of results held by the path cache, or 0 if there is no cache
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    /*
+        Setter for the largest number of results held by the path cache, which remembers the paths between
+        recently searched start and end nodes so that asking for them again does not search the grid again.
+        A size of 0 turns the cache off, which is the default. Changing the size empties the cache, and the new
+        cache is created by the next search.
+     */
+    public void setCacheSize(int size) {
+        if (size < 0)
+            throw new IllegalArgumentException("Cache size must not be negative.");
+        if (size == cacheSize)
+            return;
+        cacheSize = size;
+        pathCache = null;
+    }
+
+    /*
+        Getter for the path cache, which holds its hit and miss counts, or null if there is no cache or there has
+        not been a search since the cache size was set
+     */
+    public PathCache getPathCache() {
+        return pathCache;
+    }
+
+    // Remove every result from the path cache, if there is one
+    private void clearCache() {
+        if (pathCache != null)
+            pathCache.clear();
+    }
+
+    // Getter for the number of landmarks chosen for the landmark heuristic, or 0 if it is off
+    public int getLandmarkCount() {
+        return landmarkCount;
+    }
+
+    /*
+        Setter for the number of landmarks chosen for the landmark heuristic (see Landmarks), which improves
+        h(n) for the A_STAR, WEIGHTED and ANYTIME modes on grids where walls are in the way. Each landmark
+        needs an int for every cell of the grid. The tables are worked out in the background, so searches run
+        without them until they are ready. A count of 0 turns the landmark heuristic off, which is the default.
+     */
+    public void setLandmarkCount(int count) {
+        if (count < 0)
+            throw new IllegalArgumentException("Landmark count must not be negative.");
+        if (count == landmarkCount)
+            return;
+        landmarkCount = count;
+        landmarks = null;
+        pendingLandmarks = null;
+        landmarksStale = count > 0;
+        // The weighted searches may find different paths with a different h(n)
+        clearCache();
+    }
+
+    /*
+        Getter for the landmark tables currently used, or null if there are none. These are always a lower
+        bound for the grid as it is now, but may not be as close a one as they could be if walls have been added.
+     */
+    Landmarks getLandmarks() {
+        return landmarks;
+    }
+
+    /*
+        Getter for the landmark tables if they were worked out for the grid exactly as it is now, or null if there
+        are none or the grid has changed since, for saving the tables along with the grid.
+     */
+    Landmarks getCurrentLandmarks() {
+        return landmarks != null && landmarksVersion == grid.getVersion() ? landmarks : null;
+    }
+
+    /*
+        Use the given landmark tables, such as ones saved with the grid in a map file, instead of working them
+        out. The tables must be a lower bound for the grid as it is now: they must have been worked out for it,
+        or for the grid before some walls were added. They are used until a wall is removed, and are only worked
+        out again after walls change if the landmark count is above 0.
+     */
+    void setLandmarks(Landmarks landmarks) {
+        this.landmarks = landmarks;
+        landmarksVersion = grid.getVersion();
+        pendingLandmarks = null;
+        landmarksStale = false;
+        clearCache();
+    }
+
+    /*
+        Bring the landmark tables up to date before a search. Tables which have finished being worked out in
+        the background are taken, unless a wall has been removed since they were started. If walls have changed
+        since the current tables were started, new tables are started in the background on a copy of the grid.
+     */
+    private void updateLandmarks() {
+        if (landmarkCount == 0)
+            return;
+        if (pendingLandmarks != null && pendingLandmarks.isDone()) {
+            if (pendingVersion >= wallRemovedVersion) {
+                landmarks = pendingLandmarks.join();
+                landmarksVersion = pendingVersion;
             }
+            pendingLandmarks = null;
         }
+        if (landmarksStale && pendingLandmarks == null) {
+            Grid copy = grid.copy();
+            int count = landmarkCount;
+            pendingVersion = grid.getVersion();
+            pendingLandmarks = ForkJoinPool.commonPool().submit(() -> Landmarks.compute(copy, count));
+            landmarksStale = false;
+        }
+    }
+
+    // Getter for whether the path may move diagonally
+    public boolean isDiagonal() {
+        return diagonal;
+    }
+
+    /*
+        Setter for whether the path may move diagonally as well as up, down, left and right. A diagonal
+        move costs about 1.4 times as much as an orthogonal one, and may not cut the corner of a wall.
+     */
+    public void setDiagonal(boolean diagonal) {
+        if (this.diagonal == diagonal)
+            return;
+        this.diagonal = diagonal;
+        clearCache();
+        if (flowField != null)
+            flowField.setDiagonal(diagonal);
+        // The values left in the search states may be from a different search
+        searchedCellsValid = false;
+    }
+
+    // Getter for epsilon, the weight h(n) is multiplied by in the WEIGHTED and ANYTIME modes
+    public double getEpsilon() {
+        return epsilon;
+    }
+
+    /*
+        Setter for epsilon, which must be at least 1. In the WEIGHTED mode the path found is at most epsilon
+        times as long as the shortest path, and the ANYTIME mode starts from this and works down towards 1.
+     */
+    public void setEpsilon(double epsilon) {
+        // This also rejects NaN
+        if (!(epsilon >= 1))
+            throw new IllegalArgumentException("Epsilon must be at least 1.");
+        if (this.epsilon == epsilon)
+            return;
+        this.epsilon = epsilon;
+        clearCache();
+    }
+
+    // Getter for the longest time the ANYTIME mode spends improving its path, in milliseconds
+    public long getTimeLimit() {
+        return timeLimit;
+    }
+
+    /*
+        Setter for the longest time the ANYTIME mode spends improving its path, in milliseconds, counted from
+        when the search starts. The first path is always found however long it takes, and the best path found
+        once the time has passed is used.
+     */
+    public void setTimeLimit(long timeLimit) {
+        if (timeLimit < 0)
+            throw new IllegalArgumentException("Time limit must not be negative.");
+        if (this.timeLimit == timeLimit)
+            return;
+        this.timeLimit = timeLimit;
+        clearCache();
     }
 
     /*
         Setter for the start node, takes the desired x and y co-ordinates for the start node as parameters
-        and sets 'start' equal to the Node object at the given co-ordinates in the grid.
+        and sets 'start' equal to the index of the cell at the given co-ordinates in the grid.
      */
     public void setStart(int x, int y) {
-        start = grid[x][y];
+        start = grid.index(x, y);
     }
 
-    // Getter for the start node
+    // Getter for the start node, returns null if the start node has not been set
     public Node getStart() {
-        return start;
+        return toNode(start);
     }
 
     /*
         Setter for the end node, takes the desired x and y co-ordinates for the end node as parameters
-        and sets 'end' equal to the Node object at the given co-ordinates in the grid.
+        and sets 'end' equal to the index of the cell at the given co-ordinates in the grid.
      */
     public void setEnd(int x, int y) {
-        end = grid[x][y];
+        end = grid.index(x, y);
     }
 
-    // Getter for the end node
+    // Getter for the end node, returns null if the end node has not been set
     public Node getEnd() {
-        return end;
+        return toNode(end);
     }
 
     // Getter for the path, if the path has not been found then this returns null
-    public List<Node> getPath() {
+    public GridPath getPath() {
         return path;
     }
 
@@ -80,22 +418,159 @@ public class AStar {
         (false means this node will be made to not be a wall, true means it will be made to be a wall)
      */
     public void setWall(int x, int y, boolean wall) {
-        grid[x][y].setWall(wall);
+        int cell = grid.index(x, y);
+        // If the wall has not changed there is nothing to do
+        if (grid.isWall(cell) == wall)
+            return;
+        grid.setWall(cell, wall);
+        if (changedCells != null)
+            changedCells.set(cell);
+        // The copy of the grid used by the batch search is now out of date
+        batchSearch = null;
+        // Remove the cached results which this wall could change
+        if (pathCache != null) {
+            if (wall)
+                pathCache.cellBlocked(cell, true, diagonal);
+            else
+                pathCache.cellOpened(cell, true, diagonal);
+        }
+        wallsChanged(wall);
+        // Update which cells are connected to each other
+        if (components != null) {
+            if (wall)
+                components.wallAdded(cell);
+            else
+                components.wallRemoved(cell);
+        }
+        cellChanged(cell);
+    }
+
+    /*
+        Apply the given batch of walls to the grid as a single change (see WallEdit), so that the grid's version
+        only goes up once however many cells change, and every part of the search is told about the changed
+        cells together. Returns the cells which were changed, as indexes into the grid.
+     */
+    public BitSet setWalls(WallEdit edit) {
+        return setWalls(edit.getCells(grid), edit.isWall());
+    }
+
+    /*
+        Make every one of the given cells a wall ('wall') or open, as a single change to the grid, in the same way
+        as setWalls(WallEdit). Returns the cells which were changed.
+     */
+    BitSet setWalls(BitSet cells, boolean wall) {
+        BitSet changed = grid.setWalls(cells, wall);
+        if (changed.isEmpty())
+            return changed;
+        if (changedCells != null)
+            changedCells.or(changed);
+        // The copy of the grid used by the batch search is now out of date
+        batchSearch = null;
+        // Remove the cached results which these walls could change
+        if (pathCache != null)
+            pathCache.wallsChanged(changed, wall, diagonal);
+        wallsChanged(wall);
+        // Update which cells are connected to each other, where new walls must be handled together
+        if (components != null) {
+            if (wall) {
+                components.wallsAdded(changed);
+            } else {
+                for (int cell = changed.nextSetBit(0); cell >= 0; cell = changed.nextSetBit(cell + 1))
+                    components.wallRemoved(cell);
+            }
+        }
+        for (int cell = changed.nextSetBit(0); cell >= 0; cell = changed.nextSetBit(cell + 1))
+            cellChanged(cell);
+        return changed;
+    }
+
+    /*
+        Mark the landmark tables as needing to be worked out again after walls have been added ('wall') or removed.
+        Adding a wall only makes paths longer, so the current tables can still be used until then, but removing
+        one can make paths shorter.
+     */
+    private void wallsChanged(boolean wall) {
+        landmarksStale = true;
+        if (!wall) {
+            landmarks = null;
+            wallRemovedVersion = grid.getVersion();
+        }
+    }
+
+    // Let the searches which are kept up to date as walls change know that the wall of the given cell has changed
+    private void cellChanged(int cell) {
+        // Let the flow field and the incremental search update the cells affected by this wall
+        if (flowField != null)
+            flowField.wallChanged(cell);
+        if (incrementalSearch != null)
+            incrementalSearch.wallChanged(cell);
+        // Let the hierarchical search know which of its clusters need to be calculated again
+        if (hierarchicalSearch != null)
+            hierarchicalSearch.wallChanged(cell);
+    }
+
+    /*
+        Setter for the terrain cost of moving onto the node at the given x and y co-ordinates, which must be
+        between 1 and Grid.MAX_COST. Every node has a cost of 1 until it is given a different one.
+     */
+    public void setCost(int x, int y, int cost) {
+        int cell = grid.index(x, y);
+        int old = grid.getCost(cell);
+        if (old == cost)
+            return;
+        grid.setCost(cell, cost);
+        if (changedCells != null)
+            changedCells.set(cell);
+        // The copy of the grid used by the batch search is now out of date
+        batchSearch = null;
+        // Remove the cached results which this cost could change
+        if (pathCache != null) {
+            if (cost > old)
+                pathCache.cellBlocked(cell, false, diagonal);
+            else
+                pathCache.cellOpened(cell, false, diagonal);
+        }
+        if (flowField != null)
+            flowField.costChanged(cell, old);
+    }
+
+    // Start keeping track of the cells whose wall or terrain cost changes, see takeChangedCells
+    void trackChanges() {
+        if (changedCells == null)
+            changedCells = new BitSet();
+    }
+
+    /*
+        Get the cells whose wall or terrain cost has changed since the last call, or since trackChanges was called,
+        and start tracking afresh, or null if the changes are not being tracked. A cell which has been changed back
+        to how it was is still included.
+     */
+    BitSet takeChangedCells() {
+        if (changedCells == null)
+            return null;
+        BitSet cells = changedCells;
+        changedCells = new BitSet();
+        return cells;
+    }
+
+    // Getter for the terrain cost of moving onto the node at the given x and y co-ordinates
+    public int getCost(int x, int y) {
+        return grid.getCost(grid.index(x, y));
     }
 
     // Getter for the wall boolean of a node at the given x and y co-ordinates of the grid
     public boolean isWall(int x, int y) {
-        return grid[x][y].isWall();
+        return grid.isWall(grid.index(x, y));
     }
 
     // Check whether the node at the given x and y co-ords is the start node
     public boolean isStart(int x, int y) {
-        return grid[x][y].equals(start);
+        return grid.index(x, y) == start;
     }
 
     // Check whether the node at the given x and y co-ords is the end node
     public boolean isEnd(int x, int y) {
-        return grid[x][y].equals(end);
+        return grid.index(x, y) == end;
     }
 
     // Check if the path has been set
@@ -105,45 +580,52 @@ public class AStar {
 
     // Check whether the path has been set, and then if the node at the given x and y co-ords is on the path
     public boolean isOnPath(int x, int y) {
-        return isPathSet() && path.contains(grid[x][y]);
+        return isPathSet() && pathCells.get(grid.index(x, y));
     }
 
-    // Check whether the node at the given x and y co-ordinates is within the bounds of the grid
-    public boolean isInGrid(int x, int y) {
-        return x < getGridWidth() && y < getGridHeight() && x >= 0 && y >= 0;
-    }
-
-    /*
-        Loop through all of the nodes in the grid, resetting the values of f(n), g(n), h(n)
-        and previous. The reason these values are reset is to ensure that the algorithm runs
-        consistently every time.
-    */
-    private void resetValues() {
-        // For each node in the grid
-        for (int x = 0; x < getGridWidth(); x++) {
-            for (int y = 0; y < getGridHeight(); y++) {
-                // Reset f(n) to infinity
-                grid[x][y].setF((int) Double.POSITIVE_INFINITY);
-                // Reset g(n) to infinity
-                grid[x][y].setG((int) Double.POSITIVE_INFINITY);
-                // Reset and calculate h(n)
-                grid[x][y].setH(AStar.calculateH(x,y,end));
-                // Reset 'previous'
-                grid[x][y].setPrevious(null);
-            }
-        }
+    /*
+        Check whether there is a path between the nodes at the two given sets of co-ordinates, which is
+        true if both nodes are not walls and are in the same connected area of the grid. This takes O(1)
+        time, without needing to search for the path.
+     */
+    public boolean isReachable(int x1, int y1, int x2, int y2) {
+        return getComponents().isConnected(grid.index(x1, y1), grid.index(x2, y2));
+    }
+
+    /*
+        Getter for the flow field used by the FLOW_FIELD mode, which is created the first time it is needed.
+        Its goals can be set to several nodes at once, so that each path leads to the nearest of them, and
+        the path from any node is then read from the field without a search. The field is kept up to date
+        as walls and terrain costs change until the mode is changed to one other than FLOW_FIELD. Running
+        the FLOW_FIELD mode sets the goals back to the end node alone.
+     */
+    public FlowField getFlowField() {
+        if (flowField == null)
+            flowField = new FlowField(grid, diagonal);
+        return flowField;
+    }
+
+    // Getter for the connected components of the grid, which are created the first time they are needed
+    private Components getComponents() {
+        if (components == null)
+            components = new Components(grid);
+        return components;
     }
 
-    // Calculate and return the width of the grid based on the number of columns
-    private int getGridWidth() {
-        return grid.length;
+    // Getter for the grid, used to take a copy of it for searches which run in the background
+    Grid getGrid() {
+        return grid;
     }
 
-    // Calculate and return the height of the grid based on the number of rows in the first column
-    private int getGridHeight() {
-        return grid[0].length;
+    // Check whether the node at the given x and y co-ordinates is within the bounds of the grid
+    public boolean isInGrid(int x, int y) {
+        return grid.isInGrid(x, y);
     }
 
+    // Create a Node object for the cell with the given index, or return null if the index is NONE
+    private Node toNode(int index) {
+        return index == NONE ? null : new Node(grid.getX(index), grid.getY(index));
+    }
 
     /*
         This function runs the algorithm itself. It takes no parameters and returns nothing, as it
@@ -151,125 +633,256 @@ public class AStar {
         ensure that the start and end nodes are not null before calling this function. It is not
         necessary to check that grid is not null, as grid cannot be null if this class has been
         instantiated. If the optimal path is found by this algorithm, it will be stored in the
-        'path' variable, which can be obtained using the 'getPath' function.
+        'path' variable, which can be obtained using the 'getPath' function. The search used
+        depends on the current mode.
      */
     public void run() {
-        // If the start node or end node are null, throw an IllegalArgumentException with the relevant message
-        if(start == null)
+        checkEndpoints();
+        setPath(findPath(start, end));
+    }
+
+    // Check that the start and end nodes have been set, throwing an IllegalArgumentException with the relevant message if not
+    void checkEndpoints() {
+        if(start == NONE)
             throw new IllegalArgumentException("Start node has not been set.");
-        if(end == null)
+        if(end == NONE)
             throw new IllegalArgumentException("End node has not been set");
+    }
 
-        // Call the resetValues function to ensure that the algorithm will run consistently
-        resetValues();
+    /*
+        Find the path between the cells with the given indexes using the search for the current mode,
+        without changing the path stored by this object. The path is returned as an array holding the
+        index of every cell along it in order, or null if there is no path.
+     */
+    int[] findPath(int start, int end) {
+        long startTime = System.nanoTime();
+        long startBytes = SearchMetrics.allocatedBytes();
+        if (pathCache == null && cacheSize > 0)
+            pathCache = new PathCache(grid, cacheSize);
+        // Use the cached result if there is one, without searching
+        if (pathCache != null) {
+            PathCache.Entry cached = pathCache.get(start, end);
+            if (cached != null) {
+                SearchMetrics.getInstance().recordCacheHit();
+                searchedCellsValid = false;
+                lastStats = new SearchStats(0, 0, 0, 0, System.nanoTime() - startTime,
+                        SearchMetrics.allocatedSince(startBytes), cached.cells == null ? -1 : cached.cells.length,
+                        cached.cost, cached.bound, true);
+                return cached.cells;
+            }
+            SearchMetrics.getInstance().recordCacheMiss();
+        }
+        boolean weighted = isWeighted();
+        createSearch(weighted);
+        IndexedHeap[] openSets = getOpenSets(weighted);
+        for (IndexedHeap openSet : openSets)
+            openSet.resetCounters();
 
+        int[] cells;
         /*
-            Set the g(n) value of the start node to 0, as g(n) represents the distance
-            between the given node and the start node. And the distance between the start node
-            and itself is 0.
+            If the start node and end node are not connected, there is no path and no need to search for one.
+            A start node which is a wall can still be moved away from, so it is left for the search to handle.
          */
-        start.setG(0);
-        /*
-            f(n) = g(n) + h(n) for a given node, and as g(n) of the start node is 0, f(n) = h(n),
-            so here it calculates the h(n) value of the start node and assigns it to the f(n) value.
-         */
-        start.setF(calculateH(start.getX(), start.getY(), end));
-        /*
-            Create a variable to hold the openSet. The openSet is a list of the next nodes to be
-            tested to find the optimal path. I am using a PriorityQueue for the openSet to improve
-            efficiency. When retrieving a node from this PriorityQueue, the node with the lowest f(n)
-            value is retrieved, therefore the node with the lowest f(n) value in the set will always
-            be tested first. The f(n) value in this algorithm is given by g(n) + h(n), g(n) being the
-            cost from the start node to the current node and h(n) being the euclidean distance from the
-            current node to the end node.
-         */
-        PriorityQueue<Node> openSet = new PriorityQueue<>(Comparator.comparing(Node::getF));
-        /*
-            Add the start node to the open set as this is the first node in the path and we need
-            to traverse through the grid from the start node to the end node in order to find
-            the optimal path
-         */
-        openSet.add(start);
-
-        // While there are still nodes to be tested
-        while (!openSet.isEmpty()) {
-            /* Get the top value of this queue, which in this case will be the node with the lowest f(n)
-               and assign to current (the node currently being tested) */
-            Node current = openSet.peek();
-            // If this node is the end node
-            if (current.equals(end)) {
-                // Run the reconstructPath function to reconstruct the path and assign the result to the 'path' variable
-                path = reconstructPath(current);
-                // Exit the function early as the optimal path has been located
-                return;
-            }
-            // Remove the current node from the openSet (It does not need to be tested again)
-            openSet.remove(current);
-            // For each of the current node's neighbours
-            for (Node neighbour : current.getNeighbours()) {
-                // If the neighbour is not a wall
-                if(!neighbour.isWall()) {
-                    // Increment the g(n) value by 1 as this will be the g(n) value of the neighbour
-                    int tempG = current.getG() + 1;
-                    // If the new g(n) value is lower than the current g(n) value of the neighbour
-                    if (tempG < neighbour.getG()) {
-                        // Set the previous node of the neighbour to be the current node
-                        neighbour.setPrevious(current);
-                        // Set the neighbour's g(n) value to the new g(n) value
-                        neighbour.setG(tempG);
-                        // Calculate the neighbour's f(n) value and assign to their f(n) value
-                        neighbour.setF(tempG + neighbour.getH());
-                        // If the neighbour is not already in the openSet
-                        if (!openSet.contains(neighbour))
-                            // Add them to the open set as we will need to test their neighbour's next
-                            openSet.add(neighbour);
-                    }
-                }
-            }
+        if (!grid.isWall(start) && !getComponents().isConnected(start, end)) {
+            cells = null;
+            searchedCellsValid = false;
+        } else {
+            if (usesLandmarks(weighted))
+                updateLandmarks();
+            cells = search(start, end, weighted, startTime);
+            searchedCellsValid = true;
+        }
+        lastSearchWeighted = weighted;
+
+        // Add up the work done by the open sets of the search, and record it
+        long expanded = 0;
+        long pushed = 0;
+        long decreaseKeys = 0;
+        int peakOpen = 0;
+        for (IndexedHeap openSet : openSets) {
+            expanded += openSet.getPolls();
+            pushed += openSet.getAdds();
+            decreaseKeys += openSet.getKeyChanges();
+            peakOpen += openSet.getPeakSize();
         }
         /*
-            If the loop finishes this means that openSet is now empty and we have not been able to reach
-            the end node from the start node and there are no more nodes left to be tested. This means
-            there is no available path between the start node and end node. Therefore the path variable
-            will be null
+            Without terrain costs or diagonal moves, every move costs 1 so the cost of the path is the number
+            of moves along it. Otherwise the weighted search leaves the cost in the g(n) value of the end node.
+            The anytime search keeps track of the cost of its best path itself, as the search may have stopped
+            part way through improving it, and the flow field reads the cost from its distances.
          */
-        path = null;
+        double cost = -1;
+        if (cells != null && mode == Mode.ANYTIME)
+            cost = anytimeSearch.getPathCost() / (double) WeightedSearch.ORTHOGONAL;
+        else if (cells != null && mode == Mode.FLOW_FIELD)
+            cost = flowField.getPathCost() / (double) WeightedSearch.ORTHOGONAL;
+        else if (cells != null)
+            cost = weighted ? state.g[end] / (double) WeightedSearch.ORTHOGONAL : cells.length - 1;
+        // How much longer than the shortest path the path found can be, which the hierarchical search does not know
+        double bound = 1;
+        if (cells != null && mode == Mode.ANYTIME)
+            bound = anytimeSearch.getBound();
+        else if (cells != null && mode == Mode.WEIGHTED)
+            bound = epsilon;
+        else if (cells != null && mode == Mode.HIERARCHICAL && !weighted)
+            bound = Double.NaN;
+        lastStats = new SearchStats(expanded, pushed, decreaseKeys, peakOpen, System.nanoTime() - startTime,
+                SearchMetrics.allocatedSince(startBytes), cells == null ? -1 : cells.length, cost, bound, false);
+        SearchMetrics.getInstance().record(lastStats);
+        if (pathCache != null)
+            pathCache.put(start, end, cells, cost, bound);
+        return cells;
     }
 
-    // Calculate the h(n) value for a node at a given co-ordinate and given the end node
-    private static int calculateH(int x, int y, Node end) {
-        /*
-            Using Pythagoras, calculate the euclidean distance between the given node and the end node.
-            Math.ceil rounds up, rounding is necessary as we are casting the result from a double to an
-            integer which would otherwise cause truncation which is less precise than rounding.
-         */
-        return (int) Math.ceil(Math.sqrt(((end.getX() - x)*(end.getX()) - x) + ((end.getY() - y)*(end.getY() - y))));
+    // Check whether the search which will be run uses the landmark heuristic
+    private boolean usesLandmarks(boolean weighted) {
+        if (mode == Mode.FLOW_FIELD)
+            return false;
+        return weighted || mode == Mode.A_STAR || mode == Mode.WEIGHTED || mode == Mode.ANYTIME;
+    }
+
+    // Check whether the moves do not all cost the same, because of terrain costs or diagonal moves
+    private boolean isWeighted() {
+        return diagonal || !grid.isUniform();
     }
 
     /*
-        Reconstruct the path from the current node (which would be the end node) back to the start node.
-        The arguments passed in is a Node representing the current node.
-        The value returned is the completed path (A list of nodes).
+        Create the search for the current mode if it has not been created yet. If the moves do not all cost
+        the same, the weighted search is used instead of most modes, and it shares the search state of this
+        class, so there is nothing to create.
      */
-    private static List<Node> reconstructPath(Node current) {
-        // Create a local variable to hold the path, using an ArrayList
-        List<Node> path = new ArrayList<>();
-        // Add the current node to the path
-        path.add(current);
-        /*
-            While the current node has a previous node (when we reach a node in the path without a
-            previous node, this is the start node)
-         */
-        while(current.getPrevious() != null) {
-            // Set the current node to be this node's previous node
-            current = current.getPrevious();
-            /*
-                Add the current node to the start of the path (as we are working backwards,
-                we add each node to the start so that the path will end up in the correct order).
-             */
-            path.add(0,current);
+    private void createSearch(boolean weighted) {
+        if (mode == Mode.ANYTIME) {
+            if (anytimeSearch == null)
+                anytimeSearch = new AnytimeSearch(grid, state);
+        } else if (mode == Mode.FLOW_FIELD) {
+            getFlowField();
+        } else if (weighted) {
+            return;
+        } else if (mode == Mode.INCREMENTAL && incrementalSearch == null) {
+            incrementalSearch = new IncrementalSearch(grid);
+        } else if (mode == Mode.HIERARCHICAL && hierarchicalSearch == null) {
+            hierarchicalSearch = new HierarchicalSearch(grid, state);
+        } else if (mode == Mode.BIDIRECTIONAL && bidirectionalSearch == null) {
+            backwardState = new SearchState(grid.getSize());
+            bidirectionalSearch = new BidirectionalSearch(grid, state, backwardState);
         }
-        // Return the completed path
-        return path;
+    }
+
+    // Get the open sets used by the search for the current mode, or by the weighted search if it is used instead
+    private IndexedHeap[] getOpenSets(boolean weighted) {
+        if (mode == Mode.FLOW_FIELD)
+            return new IndexedHeap[] {flowField.getOpenSet()};
+        if (!weighted && mode == Mode.INCREMENTAL)
+            return new IndexedHeap[] {incrementalSearch.getOpenSet()};
+        if (!weighted && mode == Mode.BIDIRECTIONAL)
+            return new IndexedHeap[] {state.openSet, backwardState.openSet};
+        return new IndexedHeap[] {state.openSet};
+    }
+
+    /*
+        Run the search for the current mode, which must already have been created, or the weighted search
+        if the moves do not all cost the same and the mode can not handle that. The time limit of the
+        anytime search is counted from the given value of System.nanoTime().
+     */
+    private int[] search(int start, int end, boolean weighted, long startTime) {
+        if (mode == Mode.ANYTIME) {
+            anytimeSearch.setLandmarks(landmarks);
+            return anytimeSearch.findPath(start, end, diagonal, epsilon, startTime, TimeUnit.MILLISECONDS.toNanos(timeLimit));
+        }
+        // The flow field handles terrain costs and diagonal moves itself, and only needs working out again for a new end node
+        if (mode == Mode.FLOW_FIELD) {
+            if (!flowField.hasOnlyGoal(end))
+                flowField.setGoals(end);
+            return flowField.findPath(start);
+        }
+        // Only the weighted mode multiplies h(n) by epsilon
+        double weight = mode == Mode.WEIGHTED ? epsilon : 1;
+        if (weighted) {
+            weightedSearch.setWeight(weight);
+            weightedSearch.setLandmarks(landmarks);
+            return weightedSearch.findPath(start, end, diagonal);
+        }
+        if (mode == Mode.JUMP_POINT)
+            return jumpPointSearch.findPath(start, end);
+        else if (mode == Mode.INCREMENTAL)
+            return incrementalSearch.findPath(start, end);
+        else if (mode == Mode.HIERARCHICAL)
+            return hierarchicalSearch.findPath(start, end);
+        else if (mode == Mode.BIDIRECTIONAL)
+            return bidirectionalSearch.findPath(start, end);
+        aStarSearch.setWeight(weight);
+        aStarSearch.setLandmarks(landmarks);
+        return aStarSearch.findPath(start, end);
+    }
+
+    // Getter for the statistics of the last search, or null if there has not been a search yet
+    public SearchStats getLastStats() {
+        return lastStats;
+    }
+
+    /*
+        Fill in the cells which were in the open set and the closed set (tested, or reached and no longer
+        waiting to be tested) at the end of the last search, by setting their bits in the given BitSets.
+        Nothing is set if there has not been a search yet, or if the last search was skipped because the
+        start node and end node are not connected. The hierarchical search only records the entrances of
+        the clusters it searched between, rather than every cell.
+     */
+    public void getSearchedCells(BitSet open, BitSet closed) {
+        if (!searchedCellsValid)
+            return;
+        if (mode == Mode.FLOW_FIELD) {
+            flowField.getSearchedCells(open, closed);
+        } else if (lastSearchWeighted) {
+            state.getSearchedCells(open, closed);
+        } else if (mode == Mode.INCREMENTAL) {
+            incrementalSearch.getSearchedCells(open, closed);
+        } else {
+            state.getSearchedCells(open, closed);
+            if (mode == Mode.BIDIRECTIONAL)
+                backwardState.getSearchedCells(open, closed);
+        }
+    }
+
+    /*
+        Find the path for each of a batch of queries, running the searches in parallel on the common
+        ForkJoinPool. The paths are returned in the same order as the queries, with null in place of
+        the path for any query which has no path. This does not change the start node, end node or
+        path of this object. Jump Point Search is used if that is the current mode, otherwise A* is
+        used, as the other modes keep work between runs which can not be shared between threads. As with
+        run, the weighted search is used instead if there are terrain costs or diagonal moves.
+     */
+    public List<GridPath> findPaths(List<PathQuery> queries) {
+        boolean jumpPoint = mode == Mode.JUMP_POINT;
+        // Create a new batch search if the grid has changed or a different search is needed
+        if (batchSearch == null || batchSearch.isJumpPoint() != jumpPoint || batchSearch.isDiagonal() != diagonal)
+            batchSearch = new BatchSearch(grid.copy(), jumpPoint, diagonal, ForkJoinPool.commonPool());
+        return batchSearch.findPaths(queries);
+    }
+
+    /*
+        Set the path to the given cells (in order from the start node to the end node), or remove the
+        path if the given array is null because no path was found.
+     */
+    void setPath(int[] cells) {
+        // Clear the cells of the previous path
+        clearPath();
+        if (cells == null)
+            return;
+        for (int cell : cells)
+            pathCells.set(cell);
+        path = new GridPath(cells, grid.getWidth());
+    }
+
+    /*
+        Remove the current path, clearing the bits of only the cells which were on the path so
+        that this takes time proportional to the length of the path rather than the size of the grid.
+     */
+    private void clearPath() {
+        if (path != null) {
+            for (int i = 0; i < path.length(); i++)
+                pathCells.clear(path.getCell(i));
+        }
+        path = null;
     }
 }
@@ -0,0 +1,199 @@
+package com.callumbirks;
+
+/*
+    This class contains the A* algorithm itself. It searches the given grid using the given search
+    state, so several instances can search the same grid at once as long as each has its own state.
+ */
+class AStarSearch {
+    // The value used to represent "no cell", for example the previous cell of the start cell
+    private static final int NONE = SearchState.NONE;
+    // The grid being searched
+    private final Grid grid;
+    // The values for each cell and the open set
+    private final SearchState state;
+    // The co-ordinates of the end node for the current run, used when calculating h(n)
+    private int endX;
+    private int endY;
+    // The weight h(n) is multiplied by, where a weight above 1 trades the length of the path for speed
+    private double weight = 1;
+    // The landmark tables used to improve h(n), or null to use only the Manhattan distance
+    private Landmarks landmarks = null;
+    // The distance from each landmark to the end node for the current run, or null if there are no landmarks
+    private int[] landmarkTarget = null;
+
+    // The constructor for the search, taking the grid to search and the search state to use
+    AStarSearch(Grid grid, SearchState state) {
+        this.grid = grid;
+        this.state = state;
+    }
+
+    /*
+        Setter for the weight h(n) is multiplied by, which must be at least 1. With a weight of w (weighted
+        A*), the path found is at most w times as long as the shortest path, but the search heads much more
+        directly towards the end node, so far fewer nodes are usually tested.
+     */
+    void setWeight(double weight) {
+        this.weight = weight;
+    }
+
+    /*
+        Setter for the landmark tables used to improve h(n) (see Landmarks), or null to use only the Manhattan
+        distance. The tables must be a lower bound for the grid as it is now.
+     */
+    void setLandmarks(Landmarks landmarks) {
+        this.landmarks = landmarks;
+    }
+
+    /*
+        This function runs the algorithm. It takes the indexes of the start and end nodes as parameters.
+        If the optimal path is found by this algorithm, it is returned as an array holding the index of
+        every cell along it in order, including the start and end nodes. If there is no path between the
+        two, null is returned instead.
+     */
+    int[] findPath(int start, int end) {
+        // Local references to the values of each cell, so that they can be used more concisely below
+        int[] f = state.f;
+        int[] g = state.g;
+        int[] h = state.h;
+        int[] previous = state.previous;
+        IndexedHeap openSet = state.openSet;
+
+        /*
+            Start a new search so that the values left over from the previous run are ignored,
+            this ensures that the algorithm will run consistently
+         */
+        state.begin();
+        endX = grid.getX(end);
+        endY = grid.getY(end);
+        landmarkTarget = landmarks == null ? null : landmarks.distancesTo(end);
+        touch(start);
+
+        /*
+            Set the g(n) value of the start node to 0, as g(n) represents the distance
+            between the given node and the start node. And the distance between the start node
+            and itself is 0.
+         */
+        g[start] = 0;
+        /*
+            f(n) = g(n) + h(n) for a given node, and as g(n) of the start node is 0, f(n) = h(n),
+            so here it calculates the h(n) value of the start node and assigns it to the f(n) value.
+         */
+        f[start] = h[start];
+        /*
+            The openSet (emptied by state.begin) is a list of the next nodes to be tested to find the optimal
+            path. I am using an IndexedHeap for the openSet to improve efficiency. When retrieving a node
+            from this heap, the node with the lowest f(n) value is retrieved, therefore the node with the
+            lowest f(n) value in the set will always be tested first. When two nodes have the same f(n)
+            value, the one with the lowest h(n) value (the one closest to the end node) is retrieved first,
+            which means fewer nodes are tested. The f(n) value in this algorithm is given by g(n) + h(n),
+            g(n) being the cost from the start node to the current node and h(n) being the Manhattan
+            distance from the current node to the end node.
+
+            Add the start node to the open set as this is the first node in the path and we need
+            to traverse through the grid from the start node to the end node in order to find
+            the optimal path
+         */
+        openSet.add(start);
+
+        // An array to hold the neighbours of the current cell, a cell can have at most 4 neighbours
+        int[] neighbours = new int[4];
+
+        // While there are still nodes to be tested
+        while (!openSet.isEmpty()) {
+            // Stop if this search has been cancelled
+            SearchState.checkCancelled();
+            /* Remove the top value of this heap, which in this case will be the node with the lowest f(n)
+               and assign to current (the node currently being tested). It does not need to be tested again */
+            int current = openSet.poll();
+            // If this node is the end node
+            if (current == end) {
+                // Run the reconstructPath function to reconstruct the path and return it, as the optimal path has been located
+                return reconstructPath(current);
+            }
+            // Calculate the neighbours of the current node which are not walls
+            int count = grid.getNeighbours(current, neighbours);
+            // For each of the current node's neighbours
+            for (int i = 0; i < count; i++) {
+                int neighbour = neighbours[i];
+                // Make sure the neighbour's values belong to this run
+                touch(neighbour);
+                // Increment the g(n) value by 1 as this will be the g(n) value of the neighbour
+                int tempG = g[current] + 1;
+                // If the new g(n) value is lower than the current g(n) value of the neighbour
+                if (tempG < g[neighbour]) {
+                    // Set the previous node of the neighbour to be the current node
+                    previous[neighbour] = current;
+                    // Set the neighbour's g(n) value to the new g(n) value
+                    g[neighbour] = tempG;
+                    // Calculate the neighbour's f(n) value and assign to their f(n) value
+                    f[neighbour] = tempG + h[neighbour];
+                    // If the neighbour is already in the openSet, move it up the heap as its f(n) value has dropped
+                    if (openSet.contains(neighbour))
+                        openSet.decreaseKey(neighbour);
+                    // Otherwise add them to the open set as we will need to test their neighbour's next
+                    else
+                        openSet.add(neighbour);
+                }
+            }
+        }
+        /*
+            If the loop finishes this means that openSet is now empty and we have not been able to reach
+            the end node from the start node and there are no more nodes left to be tested. This means
+            there is no available path between the start node and end node.
+         */
+        return null;
+    }
+
+    /*
+        Prepare the given cell to be used by the current run of the algorithm. The first time a cell
+        is used during a run its values are reset and its h(n) value is calculated, so each run only
+        pays for the cells it actually visits, instead of for the whole grid.
+     */
+    private void touch(int cell) {
+        if (state.touch(cell)) {
+            int h = calculateH(grid.getX(cell), grid.getY(cell), endX, endY);
+            // The landmarks give a closer estimate than the Manhattan distance wherever walls are in the way
+            if (landmarkTarget != null)
+                h = Math.max(h, landmarks.lowerBound(cell, landmarkTarget));
+            state.h[cell] = weight == 1 ? h : (int) Math.min(weight * h, SearchState.INFINITY - 1);
+        }
+    }
+
+    // Calculate the h(n) value for a node at a given co-ordinate and given the co-ordinates of the end node
+    private static int calculateH(int x, int y, int endX, int endY) {
+        /*
+            Calculate the Manhattan distance between the given node and the end node. Every move is one
+            step up, down, left or right and costs 1, so no path can be shorter than this, and it is the
+            exact length of the path when there are no walls in the way. This is never less than the
+            euclidean distance, so fewer nodes are tested than with it, and needs no square root.
+         */
+        return Math.abs(endX - x) + Math.abs(endY - y);
+    }
+
+    /*
+        Reconstruct the path from the current node (which would be the end node) back to the start node.
+        The argument passed in is the index of the current node.
+        The value returned is the completed path (An array of cell indexes). This is package-private
+        so that it can be benchmarked on its own, after a search has filled in the previous values.
+     */
+    int[] reconstructPath(int current) {
+        /*
+            The path is one node longer than the g(n) value of the end node, so it can be filled in
+            backwards from the end node without needing to insert each node at the start of a list.
+         */
+        int[] path = new int[state.g[current] + 1];
+        int i = path.length - 1;
+        path[i] = current;
+        /*
+            While the current node has a previous node (when we reach a node in the path without a
+            previous node, this is the start node)
+         */
+        while (state.previous[current] != NONE) {
+            // Set the current node to be this node's previous node and add it to the path
+            current = state.previous[current];
+            path[--i] = current;
+        }
+        // Return the completed path
+        return path;
+    }
+}
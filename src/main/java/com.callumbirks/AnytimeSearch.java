@@ -0,0 +1,251 @@
+package com.callumbirks;
+
+import java.util.BitSet;
+
+/*
+    The AnytimeSearch class contains Anytime Repairing A* (ARA*). It first runs weighted A*, where h(n)
+    is multiplied by a weight (epsilon) above 1, which finds a path quickly that costs at most epsilon
+    times as much as the cheapest path. It then lowers epsilon step by step and improves the path, until
+    either the path is known to be the cheapest or the time runs out, and the best path found so far is
+    returned. Rather than starting again for each epsilon, each step reuses the values of the last one:
+    only the nodes whose g(n) value dropped after they had been tested in the last step (the
+    "inconsistent" nodes) need to be tested again.
+
+    Moves cost the same as in WeightedSearch, so this handles terrain costs and diagonal moves too.
+ */
+class AnytimeSearch {
+    // How much epsilon is lowered by after each path is found
+    private static final double EPSILON_STEP = 0.5;
+    // The number of nodes tested between each check of the clock, as reading the clock takes time
+    private static final int CLOCK_INTERVAL = 256;
+    // The value used to represent "no cell", for example the previous cell of the start cell
+    private static final int NONE = SearchState.NONE;
+    // The value used to represent infinity for f(n) and g(n)
+    private static final int INFINITY = SearchState.INFINITY;
+    // The grid being searched
+    private final Grid grid;
+    // The values for each cell and the open set
+    private final SearchState state;
+    // The nodes which have been tested during the current step, which are not added to the open set again
+    private final BitSet closed;
+    // The nodes whose g(n) value dropped after they were tested, which are tested again in the next step
+    private final BitSet inconsistent;
+    // The neighbours of the current cell and the cost of the move to each
+    private final int[] neighbours = new int[WeightedSearch.MAX_MOVES];
+    private final int[] moveCosts = new int[WeightedSearch.MAX_MOVES];
+    // The end node and its co-ordinates for the current run
+    private int end;
+    private int endX;
+    private int endY;
+    // Whether diagonal moves are allowed in the current run
+    private boolean diagonal;
+    // The epsilon of the current step
+    private double epsilon;
+    // The landmark tables used to improve h(n), or null to use only the distance over open ground
+    private Landmarks landmarks = null;
+    // The distance from each landmark to the end node for the current run, or null if there are no landmarks
+    private int[] landmarkTarget = null;
+    // The value of System.nanoTime() after which the path stops being improved
+    private long deadline;
+    // The cost of the best path found by the last run, or -1 if no path was found
+    private int pathCost = -1;
+    // The most the best path found by the last run can cost, as a multiple of the cost of the cheapest path
+    private double bound = 1;
+
+    // The constructor for the search, taking the grid to search and the search state to use
+    AnytimeSearch(Grid grid, SearchState state) {
+        this.grid = grid;
+        this.state = state;
+        closed = new BitSet(grid.getSize());
+        inconsistent = new BitSet(grid.getSize());
+    }
+
+    /*
+        Setter for the landmark tables used to improve h(n) (see Landmarks), or null to use only the distance
+        over open ground. The tables must be a lower bound for the grid as it is now.
+     */
+    void setLandmarks(Landmarks landmarks) {
+        this.landmarks = landmarks;
+    }
+
+    /*
+        Find a path from the start node to the end node, starting with the given epsilon (which must be at
+        least 1) and improving the path until it is known to be the cheapest, or until the given number of
+        nanoseconds have passed since System.nanoTime() returned 'startTime'. The first path is always found,
+        however long it takes. The best path is returned as an array holding the index of every cell along it
+        in order, or null if there is no path.
+     */
+    int[] findPath(int start, int end, boolean diagonal, double epsilon, long startTime, long timeLimit) {
+        this.end = end;
+        endX = grid.getX(end);
+        endY = grid.getY(end);
+        this.diagonal = diagonal;
+        this.epsilon = epsilon;
+        landmarkTarget = landmarks == null ? null : landmarks.distancesTo(end);
+        // Limit the time so that the deadline can be compared with System.nanoTime() without overflowing
+        deadline = startTime + Math.min(timeLimit, Long.MAX_VALUE / 2);
+        state.begin();
+        closed.clear();
+        inconsistent.clear();
+        touch(start);
+        touch(end);
+        state.g[start] = 0;
+        state.f[start] = f(start);
+        state.openSet.add(start);
+
+        // The first path is found without a deadline
+        improvePath(false);
+        if (state.g[end] == INFINITY) {
+            pathCost = -1;
+            bound = 1;
+            return null;
+        }
+        int[] best = reconstructPath();
+        bound = calculateBound();
+
+        while (bound > 1 && System.nanoTime() - deadline < 0) {
+            // There is no point in a step whose epsilon is higher than the bound already known
+            this.epsilon = Math.max(1, Math.min(this.epsilon - EPSILON_STEP, bound));
+            reopen();
+            // Keep the last path if the time runs out before this step has finished
+            if (!improvePath(true))
+                break;
+            best = reconstructPath();
+            bound = calculateBound();
+        }
+        return best;
+    }
+
+    // Getter for the cost of the best path found by the last run, in the units of WeightedSearch, or -1 if there was no path
+    int getPathCost() {
+        return pathCost;
+    }
+
+    // Getter for the most the best path found by the last run can cost, as a multiple of the cost of the cheapest path
+    double getBound() {
+        return bound;
+    }
+
+    /*
+        Test nodes until the end node's path is known to cost at most epsilon times as much as the cheapest
+        path, which is when no node in the open set has a lower f(n) value than the g(n) value of the end node.
+        If 'timed' is true, this stops and returns false once the deadline has passed.
+     */
+    private boolean improvePath(boolean timed) {
+        int[] g = state.g;
+        int[] previous = state.previous;
+        IndexedHeap openSet = state.openSet;
+        int tested = 0;
+        while (!openSet.isEmpty() && g[end] > state.f[openSet.peek()]) {
+            // Stop if this search has been cancelled, or has run out of time
+            SearchState.checkCancelled();
+            if (timed && ++tested % CLOCK_INTERVAL == 0 && System.nanoTime() - deadline > 0)
+                return false;
+            int current = openSet.poll();
+            closed.set(current);
+            int count = WeightedSearch.getMoves(grid, current, diagonal, neighbours, moveCosts);
+            for (int i = 0; i < count; i++) {
+                int neighbour = neighbours[i];
+                touch(neighbour);
+                long tempG = (long) g[current] + moveCosts[i];
+                if (tempG < g[neighbour] && tempG < INFINITY) {
+                    g[neighbour] = (int) tempG;
+                    previous[neighbour] = current;
+                    // A node which has already been tested in this step waits until the next step to be tested again
+                    if (closed.get(neighbour)) {
+                        inconsistent.set(neighbour);
+                    } else {
+                        state.f[neighbour] = f(neighbour);
+                        if (openSet.contains(neighbour))
+                            openSet.decreaseKey(neighbour);
+                        else
+                            openSet.add(neighbour);
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /*
+        Prepare for the next step with a lower epsilon: the f(n) value of every node in the open set is
+        calculated again, the inconsistent nodes are added back to the open set, and no node has been tested.
+     */
+    private void reopen() {
+        IndexedHeap openSet = state.openSet;
+        for (int i = 0; i < openSet.size(); i++) {
+            int cell = openSet.get(i);
+            state.f[cell] = f(cell);
+        }
+        openSet.heapify();
+        for (int cell = inconsistent.nextSetBit(0); cell >= 0; cell = inconsistent.nextSetBit(cell + 1)) {
+            state.f[cell] = f(cell);
+            if (!openSet.contains(cell))
+                openSet.add(cell);
+        }
+        inconsistent.clear();
+        closed.clear();
+    }
+
+    /*
+        Calculate how much the path just found can cost at most, as a multiple of the cost of the cheapest
+        path. The cheapest path must pass through a node which is in the open set or is inconsistent, so its
+        cost is at least the lowest g(n) + h(n) of those nodes. If there are none, the path is the cheapest.
+        This must be called after reconstructPath, which works out the cost of the path.
+     */
+    private double calculateBound() {
+        long lowest = Long.MAX_VALUE;
+        IndexedHeap openSet = state.openSet;
+        for (int i = 0; i < openSet.size(); i++) {
+            int cell = openSet.get(i);
+            lowest = Math.min(lowest, (long) state.g[cell] + state.h[cell]);
+        }
+        for (int cell = inconsistent.nextSetBit(0); cell >= 0; cell = inconsistent.nextSetBit(cell + 1))
+            lowest = Math.min(lowest, (long) state.g[cell] + state.h[cell]);
+        if (lowest >= pathCost)
+            return 1;
+        return Math.min(epsilon, pathCost / (double) lowest);
+    }
+
+    // Calculate the f(n) value of the given cell for the current epsilon
+    private int f(int cell) {
+        return (int) Math.min(state.g[cell] + epsilon * state.h[cell], INFINITY - 1);
+    }
+
+    // Prepare the given cell to be used by the current run, calculating its h(n) value the first time it is used
+    private void touch(int cell) {
+        if (state.touch(cell)) {
+            int h = WeightedSearch.calculateH(grid.getX(cell), grid.getY(cell), endX, endY, diagonal);
+            if (landmarkTarget != null)
+                h = Math.max(h, WeightedSearch.calculateLandmarkH(landmarks, cell, landmarkTarget, diagonal));
+            state.h[cell] = h;
+        }
+    }
+
+    /*
+        Reconstruct the path from the end node back to the start node, by following the previous values, and
+        work out its cost. The cost is added up along the path rather than taken from the g(n) value of the end
+        node, as the g(n) values of nodes along the path may have dropped after the end node's was set, in
+        which case the path followed is cheaper than the end node's g(n) value.
+     */
+    private int[] reconstructPath() {
+        int length = 1;
+        for (int cell = end; state.previous[cell] != NONE; cell = state.previous[cell])
+            length++;
+        int[] path = new int[length];
+        int current = end;
+        long cost = 0;
+        for (int i = length - 1; i >= 0; i--) {
+            path[i] = current;
+            int previous = state.previous[current];
+            if (previous != NONE) {
+                // A move is diagonal if it changes both the x and y co-ordinates
+                boolean diagonalMove = grid.getX(previous) != grid.getX(current) && grid.getY(previous) != grid.getY(current);
+                cost += (long) (diagonalMove ? WeightedSearch.DIAGONAL : WeightedSearch.ORTHOGONAL) * grid.getCost(current);
+            }
+            current = previous;
+        }
+        pathCost = (int) Math.min(cost, INFINITY - 1);
+        return path;
+    }
+}
@@ -16,7 +16,7 @@ public class App extends Application {
         // Set the title of the application window
         stage.setTitle("A* Pathfinder");
         // Create a scene to hold the GUI elements in, of size 800x500
-        stage.setScene(new Scene(root, 800, 530));
+        stage.setScene(new Scene(root, 800, 560));
         // Make the window non-resizable
         stage.setResizable(false);
         // Finally display the window
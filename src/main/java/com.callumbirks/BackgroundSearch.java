@@ -0,0 +1,237 @@
+package com.callumbirks;
+
+import javafx.application.Platform;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/*
+    The BackgroundSearch class runs searches on a background thread, so that a slow search does not
+    freeze the window while it runs. The background thread searches its own copy of the grid, so the user
+    can keep changing the grid while it runs. Only the newest search matters: asking for a new search
+    cancels the one still running (or still waiting to run), and the result of a search is thrown away if a
+    newer one has been asked for by the time it finishes. Results are handed back on the JavaFX application
+    thread using Platform.runLater.
+
+    The background thread keeps its own AStar object between searches. The whole grid is only copied the first
+    time a search is asked for on a new AStar object (such as after the grid is cleared or a map is loaded).
+    From then on that object keeps track of the cells which change (see AStar.takeChangedCells), and each search
+    only passes the new state of those cells to the background thread, where the walls added and the walls
+    removed are each applied as a single batch (see AStar.setWalls). This way asking for a search takes time
+    proportional to the number of cells changed rather than the size of the grid, and the modes which keep
+    their work between runs (such as the incremental mode) only need to update the parts of the grid which
+    have changed.
+ */
+class BackgroundSearch {
+    // The single background thread which runs the searches, one at a time
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "pathfinder-search");
+        // The thread should not stop the application from closing
+        thread.setDaemon(true);
+        return thread;
+    });
+    // The search which is currently running or waiting to run, so that it can be cancelled
+    private Future<?> current = null;
+    // The number of the newest search that has been asked for, only used on the JavaFX application thread
+    private long latest = 0;
+    // The number of the newest search whose result has been handed back, or which has been cancelled
+    private long completed = 0;
+    // The AStar object whose grid the background thread has a copy of, only used on the JavaFX application thread
+    private AStar owner = null;
+    // The AStar object used by the background thread, which is only used on that thread
+    private AStar worker = null;
+    /*
+        A copy of the grid of a new owner for the background thread to start again from, or null if there is
+        none, and the changes to the owner's grid which the background thread has not applied yet, oldest
+        first. These are handed over under the lock of the list, as a search which is cancelled before it
+        starts never runs, so its changes are left for the next search to apply.
+     */
+    private Grid pendingGrid = null;
+    private final List<Changes> pendingChanges = new ArrayList<>();
+
+    /*
+        The details of a finished search which are handed back along with its path: the statistics of the
+        search, and the cells in its open and closed sets if they were asked for (otherwise these are null).
+     */
+    static class Result {
+        final SearchStats stats;
+        final BitSet open;
+        final BitSet closed;
+
+        private Result(SearchStats stats, BitSet open, BitSet closed) {
+            this.stats = stats;
+            this.open = open;
+            this.closed = closed;
+        }
+    }
+
+    /*
+        The new state of the cells of the grid which changed between two searches: the cells which are now walls,
+        the cells which are now open, and the terrain cost of each changed cell.
+     */
+    private static class Changes {
+        final BitSet walls = new BitSet();
+        final BitSet open = new BitSet();
+        final int[] cells;
+        final int[] costs;
+
+        private Changes(Grid grid, BitSet changed) {
+            cells = new int[changed.cardinality()];
+            costs = new int[cells.length];
+            int i = 0;
+            for (int cell = changed.nextSetBit(0); cell >= 0; cell = changed.nextSetBit(cell + 1)) {
+                if (grid.isWall(cell))
+                    walls.set(cell);
+                else
+                    open.set(cell);
+                cells[i] = cell;
+                costs[i++] = grid.getCost(cell);
+            }
+        }
+    }
+
+    /*
+        Find the path between the start and end nodes of the given AStar object in the background, using
+        its current mode and grid as they are now. When the search finishes, its path is stored in
+        the given AStar object and 'onFinished' is given the details of the search, both on the JavaFX
+        application thread, unless a newer search has been asked for in the meantime. The cells in the open
+        and closed sets are only collected if 'collectCells' is true, as this takes time proportional to the
+        size of the grid. This must be called on the JavaFX application thread.
+     */
+    void submit(AStar aStar, boolean collectCells, Consumer<Result> onFinished) {
+        // Check the start and end nodes now, so that the error is thrown to the caller rather than on the background thread
+        aStar.checkEndpoints();
+        handOver(aStar);
+        Grid grid = aStar.getGrid();
+        int start = grid.index(aStar.getStart().getX(), aStar.getStart().getY());
+        int end = grid.index(aStar.getEnd().getX(), aStar.getEnd().getY());
+        AStar.Mode mode = aStar.getMode();
+        boolean diagonal = aStar.isDiagonal();
+        double epsilon = aStar.getEpsilon();
+        long timeLimit = aStar.getTimeLimit();
+        int cacheSize = aStar.getCacheSize();
+        int landmarkCount = aStar.getLandmarkCount();
+        Landmarks landmarks = aStar.getLandmarks();
+        long number = ++latest;
+        // Cancel the previous search, interrupting it if it is already running
+        if (current != null)
+            current.cancel(true);
+        current = executor.submit(() -> {
+            int[] path;
+            try {
+                path = search(mode, diagonal, epsilon, timeLimit, cacheSize, landmarkCount, landmarks, start, end);
+            } catch (CancellationException e) {
+                // A newer search has been asked for, so there is no result to hand back
+                return;
+            }
+            BitSet open = null;
+            BitSet closed = null;
+            if (collectCells) {
+                open = new BitSet(worker.getGrid().getSize());
+                closed = new BitSet(worker.getGrid().getSize());
+                worker.getSearchedCells(open, closed);
+            }
+            Result result = new Result(worker.getLastStats(), open, closed);
+            Platform.runLater(() -> {
+                // Ignore the result if a newer search has been asked for since this one
+                if (number != latest)
+                    return;
+                completed = number;
+                aStar.setPath(path);
+                onFinished.accept(result);
+            });
+        });
+    }
+
+    /*
+        Cancel any search which is running or waiting to run, so that its result is never handed back.
+        This must be called on the JavaFX application thread.
+     */
+    void cancel() {
+        if (current != null)
+            current.cancel(true);
+        current = null;
+        completed = ++latest;
+    }
+
+    // Check whether a search has been asked for whose result has not yet been handed back
+    boolean isPending() {
+        return completed != latest;
+    }
+
+    /*
+        Hand the changes made to the given AStar object's grid since the last search over to the background thread.
+        If the background thread does not have a copy of this object's grid yet, a copy of the whole grid is handed
+        over instead, and the object starts keeping track of the cells which change from then on.
+     */
+    private void handOver(AStar aStar) {
+        BitSet changed = aStar == owner ? aStar.takeChangedCells() : null;
+        if (changed == null) {
+            aStar.trackChanges();
+            // Any changes which were already being tracked are part of the copy
+            aStar.takeChangedCells();
+            Grid copy = aStar.getGrid().copy();
+            owner = aStar;
+            synchronized (pendingChanges) {
+                pendingGrid = copy;
+                pendingChanges.clear();
+            }
+        } else if (!changed.isEmpty()) {
+            Changes changes = new Changes(aStar.getGrid(), changed);
+            synchronized (pendingChanges) {
+                pendingChanges.add(changes);
+            }
+        }
+    }
+
+    /*
+        Run a search on the background thread. The background thread's AStar object is first brought up to date
+        with the grid handed over by the searches asked for since the last one ran, by starting again from a new
+        copy of the grid if there is one, and then applying each set of changes in turn. Within each set, the new
+        walls and the removed walls are applied as one batch each, and the terrain costs are only set where they
+        differ. The other settings of the search are copied across as well. The landmark tables of the AStar
+        object the search was asked for on (if it has any) are a lower bound for its grid, so they are used until
+        the background thread's AStar object has worked out its own.
+     */
+    private int[] search(AStar.Mode mode, boolean diagonal, double epsilon, long timeLimit, int cacheSize,
+                         int landmarkCount, Landmarks landmarks, int start, int end) {
+        Grid copy;
+        List<Changes> changes;
+        synchronized (pendingChanges) {
+            copy = pendingGrid;
+            pendingGrid = null;
+            changes = new ArrayList<>(pendingChanges);
+            pendingChanges.clear();
+        }
+        if (copy != null) {
+            worker = new AStar(copy);
+            worker.setMode(mode);
+        } else if (worker.getMode() != mode) {
+            worker.setMode(mode);
+        }
+        worker.setDiagonal(diagonal);
+        worker.setEpsilon(epsilon);
+        worker.setTimeLimit(timeLimit);
+        worker.setCacheSize(cacheSize);
+        worker.setLandmarkCount(landmarkCount);
+        Grid grid = worker.getGrid();
+        for (Changes change : changes) {
+            worker.setWalls(change.walls, true);
+            worker.setWalls(change.open, false);
+            for (int i = 0; i < change.cells.length; i++) {
+                int cell = change.cells[i];
+                if (grid.getCost(cell) != change.costs[i])
+                    worker.setCost(grid.getX(cell), grid.getY(cell), change.costs[i]);
+            }
+        }
+        if (landmarks != null && worker.getLandmarks() == null)
+            worker.setLandmarks(landmarks);
+        return worker.findPath(start, end);
+    }
+}
@@ -0,0 +1,147 @@
+package com.callumbirks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/*
+    The BatchSearch class answers many searches over the same grid at once, spreading them across
+    the threads of a ForkJoinPool. The grid is only ever read, so it is shared by every thread, while
+    each thread borrows its own "workspace" (a search state and the searches that use it) so that
+    the searches do not interfere with each other. Workspaces are kept after each batch and reused
+    by the next one, so a batch does not need to create any arrays as large as the grid once the
+    pool has warmed up. The statistics of each search are recorded in SearchMetrics, in the same way as
+    the searches run through AStar.
+ */
+class BatchSearch {
+    // How many pieces each batch is split into for each thread, so that threads which finish early can take more work
+    private static final int PIECES_PER_THREAD = 4;
+    // The grid being searched, which must not be changed while this class is in use
+    private final Grid grid;
+    // Whether to use Jump Point Search rather than A*
+    private final boolean jumpPoint;
+    // Whether diagonal moves are allowed
+    private final boolean diagonal;
+    // Whether the weighted search must be used, because of terrain costs or diagonal moves
+    private final boolean weighted;
+    // The pool of threads which the searches are run on
+    private final ForkJoinPool pool;
+    // The workspaces which are not currently being used by a thread
+    private final ConcurrentLinkedQueue<Workspace> workspaces = new ConcurrentLinkedQueue<>();
+
+    /*
+        The search state and searches used by one thread. A thread takes a workspace from the queue
+        (or creates one if the queue is empty) before it starts its searches, and returns it afterwards.
+     */
+    private static class Workspace {
+        private final SearchState state;
+        private final AStarSearch aStarSearch;
+        private final JumpPointSearch jumpPointSearch;
+        private final WeightedSearch weightedSearch;
+
+        private Workspace(Grid grid) {
+            state = new SearchState(grid.getSize());
+            aStarSearch = new AStarSearch(grid, state);
+            jumpPointSearch = new JumpPointSearch(grid, state);
+            weightedSearch = new WeightedSearch(grid, state);
+        }
+    }
+
+    /*
+        The constructor for the batch search, taking the grid to search, whether to use Jump Point Search
+        rather than A*, whether diagonal moves are allowed, and the pool of threads to run the searches on.
+        The weighted search is used instead of either if the grid has terrain costs or diagonal moves are allowed.
+     */
+    BatchSearch(Grid grid, boolean jumpPoint, boolean diagonal, ForkJoinPool pool) {
+        this.grid = grid;
+        this.jumpPoint = jumpPoint;
+        this.diagonal = diagonal;
+        this.weighted = diagonal || !grid.isUniform();
+        this.pool = pool;
+    }
+
+    // Check whether this batch search uses Jump Point Search rather than A*
+    boolean isJumpPoint() {
+        return jumpPoint;
+    }
+
+    // Check whether this batch search allows diagonal moves
+    boolean isDiagonal() {
+        return diagonal;
+    }
+
+    /*
+        Find the path for each of the given queries. The paths are returned in the same order as the
+        queries, with null in place of the path for any query which has no path.
+     */
+    List<GridPath> findPaths(List<PathQuery> queries) {
+        int count = queries.size();
+        // Check every query before starting, so that a bad query does not leave the batch half finished
+        int[] starts = new int[count];
+        int[] ends = new int[count];
+        for (int i = 0; i < count; i++) {
+            PathQuery query = queries.get(i);
+            if (!grid.isInGrid(query.getStartX(), query.getStartY()) || !grid.isInGrid(query.getEndX(), query.getEndY()))
+                throw new IllegalArgumentException("Query " + i + " is outside of the grid.");
+            starts[i] = grid.index(query.getStartX(), query.getStartY());
+            ends[i] = grid.index(query.getEndX(), query.getEndY());
+        }
+
+        int[][] paths = new int[count][];
+        int pieces = Math.min(count, pool.getParallelism() * PIECES_PER_THREAD);
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(pieces);
+        for (int piece = 0; piece < pieces; piece++) {
+            // Each piece handles an equal share of the queries
+            int from = (int) ((long) count * piece / pieces);
+            int to = (int) ((long) count * (piece + 1) / pieces);
+            tasks.add(pool.submit(() -> {
+                Workspace workspace = borrowWorkspace();
+                try {
+                    for (int i = from; i < to; i++)
+                        paths[i] = search(workspace, starts[i], ends[i]);
+                } finally {
+                    workspaces.add(workspace);
+                }
+            }));
+        }
+        // Wait for every piece to finish, which also makes the paths they found visible to this thread
+        for (ForkJoinTask<?> task : tasks)
+            task.join();
+
+        List<GridPath> results = new ArrayList<>(count);
+        for (int[] path : paths)
+            results.add(path == null ? null : new GridPath(path, grid.getWidth()));
+        return results;
+    }
+
+    // Find the path between the given cells using the given workspace, and record the statistics of the search
+    private int[] search(Workspace workspace, int start, int end) {
+        long startTime = System.nanoTime();
+        long startBytes = SearchMetrics.allocatedBytes();
+        IndexedHeap openSet = workspace.state.openSet;
+        openSet.resetCounters();
+        int[] path;
+        if (weighted)
+            path = workspace.weightedSearch.findPath(start, end, diagonal);
+        else if (jumpPoint)
+            path = workspace.jumpPointSearch.findPath(start, end);
+        else
+            path = workspace.aStarSearch.findPath(start, end);
+        // The weighted search leaves the cost of the path in the g(n) value of the end node, see AStar.findPath
+        double cost = -1;
+        if (path != null)
+            cost = weighted ? workspace.state.g[end] / (double) WeightedSearch.ORTHOGONAL : path.length - 1;
+        SearchMetrics.getInstance().record(new SearchStats(openSet.getPolls(), openSet.getAdds(),
+                openSet.getKeyChanges(), openSet.getPeakSize(), System.nanoTime() - startTime,
+                SearchMetrics.allocatedSince(startBytes), path == null ? -1 : path.length, cost, 1, false));
+        return path;
+    }
+
+    // Take an unused workspace, or create a new one if every workspace is in use
+    private Workspace borrowWorkspace() {
+        Workspace workspace = workspaces.poll();
+        return workspace != null ? workspace : new Workspace(grid);
+    }
+}
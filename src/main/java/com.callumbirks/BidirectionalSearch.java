@@ -0,0 +1,138 @@
+package com.callumbirks;
+
+/*
+    The BidirectionalSearch class contains bidirectional A*. Two searches are run at the same time,
+    one forwards from the start node towards the end node and one backwards from the end node towards
+    the start node, each using its own search state. Whichever search has the smaller open set is
+    advanced next. Whenever a cell has been reached by both searches, the two halves join into a path,
+    and the shortest of these paths is remembered. The search stops once either open set has no node
+    whose f(n) value is lower than the length of that path, as no shorter path can be found after that.
+
+    Advancing the smaller search first also means that if the start node or the end node is shut in by
+    walls, the search from inside the enclosed area runs out of nodes quickly and the search stops,
+    without the other search having to test every cell outside of it.
+ */
+class BidirectionalSearch {
+    // The value used to represent infinity for distances
+    private static final int INFINITY = SearchState.INFINITY;
+    // The value used to represent "no cell"
+    private static final int NONE = SearchState.NONE;
+    // The grid being searched
+    private final Grid grid;
+    // The search state of the forward search, whose g(n) is the distance from the start node
+    private final SearchState forward;
+    // The search state of the backward search, whose g(n) is the distance to the end node
+    private final SearchState backward;
+    // An array to hold the neighbours of a cell
+    private final int[] neighbours = new int[4];
+    // The length of the shortest path found so far, and the cell where its two halves meet
+    private int bestLength;
+    private int meetingCell;
+
+    // The constructor for the search, taking the grid to search and a search state for each direction
+    BidirectionalSearch(Grid grid, SearchState forward, SearchState backward) {
+        this.grid = grid;
+        this.forward = forward;
+        this.backward = backward;
+    }
+
+    /*
+        Find the shortest path from the start node to the end node. The path is returned as an array
+        holding the index of every cell along it in order, including the start and end nodes, or null
+        if there is no path between the two.
+     */
+    int[] findPath(int start, int end) {
+        // A path can never move onto a wall, so there is no path to an end node which is a wall
+        if (grid.isWall(end))
+            return null;
+        bestLength = INFINITY;
+        meetingCell = NONE;
+        begin(forward, start, end);
+        begin(backward, end, start);
+        while (!forward.openSet.isEmpty() && !backward.openSet.isEmpty()) {
+            SearchState.checkCancelled();
+            // Stop once neither search can find a path shorter than the best one found so far
+            if (topF(forward) >= bestLength || topF(backward) >= bestLength)
+                break;
+            // Advance whichever search has fewer nodes waiting to be tested
+            if (forward.openSet.size() <= backward.openSet.size())
+                expand(forward, backward, end);
+            else
+                expand(backward, forward, start);
+        }
+        // If either search ran out of nodes before a path was found, the start and end nodes are not connected
+        if (meetingCell == NONE)
+            return null;
+        return reconstructPath();
+    }
+
+    // Start a new search in the given state from the given source cell towards the given target cell
+    private void begin(SearchState state, int source, int target) {
+        state.begin();
+        touch(state, source, target);
+        state.g[source] = 0;
+        state.f[source] = state.h[source];
+        state.openSet.add(source);
+        // The source of the forward search may already be the target
+        if (source == target) {
+            bestLength = 0;
+            meetingCell = source;
+        }
+    }
+
+    /*
+        Test the node with the lowest f(n) value in the given search. 'target' is the cell the search is
+        heading towards, used to calculate h(n). Any neighbour which has also been reached by the other
+        search completes a path, which is remembered if it is the shortest so far.
+     */
+    private void expand(SearchState state, SearchState other, int target) {
+        int current = state.openSet.poll();
+        int count = grid.getNeighbours(current, neighbours);
+        for (int i = 0; i < count; i++) {
+            int neighbour = neighbours[i];
+            touch(state, neighbour, target);
+            int tempG = state.g[current] + 1;
+            if (tempG < state.g[neighbour]) {
+                state.previous[neighbour] = current;
+                state.g[neighbour] = tempG;
+                state.f[neighbour] = tempG + state.h[neighbour];
+                if (state.openSet.contains(neighbour))
+                    state.openSet.decreaseKey(neighbour);
+                else
+                    state.openSet.add(neighbour);
+                // If the other search has reached this cell, the two halves make a path through it
+                if (other.isTouched(neighbour) && other.g[neighbour] != INFINITY
+                        && tempG + other.g[neighbour] < bestLength) {
+                    bestLength = tempG + other.g[neighbour];
+                    meetingCell = neighbour;
+                }
+            }
+        }
+    }
+
+    // Read the lowest f(n) value in the open set of the given search
+    private static int topF(SearchState state) {
+        return state.f[state.openSet.peek()];
+    }
+
+    // Prepare the given cell to be used by the given search, calculating its h(n) value if needed
+    private void touch(SearchState state, int cell, int target) {
+        if (state.touch(cell))
+            state.h[cell] = Math.abs(grid.getX(cell) - grid.getX(target)) + Math.abs(grid.getY(cell) - grid.getY(target));
+    }
+
+    /*
+        Join the two halves of the shortest path. The forward search's previous values lead from the
+        meeting cell back to the start node, and the backward search's lead from it on to the end node.
+     */
+    private int[] reconstructPath() {
+        int[] path = new int[bestLength + 1];
+        int i = forward.g[meetingCell];
+        for (int cell = meetingCell; cell != NONE; cell = forward.previous[cell])
+            path[i--] = cell;
+        i = forward.g[meetingCell];
+        for (int cell = backward.previous[meetingCell]; cell != NONE; cell = backward.previous[cell])
+            path[++i] = cell;
+        return path;
+    }
+}
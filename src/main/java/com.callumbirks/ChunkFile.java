@@ -0,0 +1,225 @@
+package com.callumbirks;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/*
+    The ChunkFile class reads and writes the walls of a ChunkedGrid, in a binary format which lets any one
+    chunk be read without reading the rest of the file. Unlike MapFile the file is never mapped into memory
+    as a whole, as it can be far larger than the memory available; each chunk is read with a single read
+    from the file when it is needed.
+
+    Every value is stored little-endian. The file starts with a 24 byte header:
+        int  MAGIC          (identifies the file as a chunk file)
+        int  VERSION        (the version of the format)
+        int  width          (the number of columns of the world)
+        int  height         (the number of rows of the world)
+        int  CHUNK_SIZE     (the width and height of each chunk, which must be ChunkedGrid.CHUNK_SIZE)
+        int  0              (reserved)
+    This is followed by a table with a long for each chunk, in rows of chunks from the top left, which is
+    either EMPTY_ENTRY for a chunk with no walls, FULL_ENTRY for a chunk made entirely of walls, or the
+    position in the file of the chunk's walls. The walls of each chunk are CHUNK_SIZE longs, one for each row
+    of the chunk, where bit x of a row is set if the cell in column x of that row of the chunk is a wall.
+ */
+class ChunkFile implements Closeable {
+    // The first int of every chunk file, the characters "PFGC" read as a little-endian int
+    private static final int MAGIC = 0x43474650;
+    // The version of the format written by this class
+    private static final int VERSION = 1;
+    // The size of the header in bytes
+    private static final int HEADER_SIZE = 24;
+    // The entries of the table for a chunk with no walls and a chunk made entirely of walls
+    private static final long EMPTY_ENTRY = 0;
+    private static final long FULL_ENTRY = 1;
+    // The size of the walls of one chunk in the file in bytes
+    private static final int CHUNK_BYTES = 8 * ChunkedGrid.CHUNK_SIZE;
+    // The size of the buffers used when writing a file
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+    // The path of the file, used in error messages
+    private final Path path;
+    // The channel the chunks are read from
+    private final FileChannel channel;
+    // The width and height of the world
+    private final int width;
+    private final int height;
+    // The number of chunks across the world
+    private final int chunksX;
+    // The position in the file of the first byte after the table, where the walls of the chunks start
+    private final long dataStart;
+    // The size of the file in bytes
+    private final long size;
+    // A buffer used to read one chunk, or one entry of the table
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(CHUNK_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+    // The constructor for an opened chunk file, taking its channel and the values read from its header
+    private ChunkFile(Path path, FileChannel channel, int width, int height) throws IOException {
+        this.path = path;
+        this.channel = channel;
+        this.width = width;
+        this.height = height;
+        this.chunksX = chunkCount(width);
+        this.dataStart = HEADER_SIZE + 8L * chunksX * chunkCount(height);
+        this.size = channel.size();
+    }
+
+    /*
+        Open the chunk file at the given path and read its header, keeping the file open to read chunks from.
+        An IOException is thrown if the file can not be read or is not a chunk file.
+     */
+    static ChunkFile open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, header, 0);
+            if (header.getInt(0) != MAGIC)
+                throw new IOException(path + " is not a chunk file.");
+            if (header.getInt(4) != VERSION)
+                throw new IOException(path + " uses an unsupported version of the chunk format.");
+            int width = header.getInt(8);
+            int height = header.getInt(12);
+            if (width <= 0 || height <= 0 || header.getInt(16) != ChunkedGrid.CHUNK_SIZE)
+                throw new IOException(path + " has an invalid header.");
+            ChunkFile file = new ChunkFile(path, channel, width, height);
+            if (file.dataStart > file.size)
+                throw new IOException(path + " is too short for the table of its chunks.");
+            return file;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // Getter for the width of the world
+    int getWidth() {
+        return width;
+    }
+
+    // Getter for the height of the world
+    int getHeight() {
+        return height;
+    }
+
+    /*
+        Read the walls of the chunk with the given chunk co-ordinates, which is one of the shared chunks
+        ChunkedGrid.EMPTY and ChunkedGrid.FULL if it is stored as such, or a new array otherwise.
+     */
+    long[] readChunk(int chunkX, int chunkY) throws IOException {
+        buffer.clear().limit(8);
+        readFully(channel, buffer, HEADER_SIZE + 8 * ((long) chunkY * chunksX + chunkX));
+        long entry = buffer.getLong(0);
+        if (entry == EMPTY_ENTRY)
+            return ChunkedGrid.EMPTY;
+        if (entry == FULL_ENTRY)
+            return ChunkedGrid.FULL;
+        if (entry < dataStart || entry > size - CHUNK_BYTES)
+            throw new IOException(path + " has chunk (" + chunkX + ", " + chunkY + ") outside of the file.");
+        buffer.clear();
+        readFully(channel, buffer, entry);
+        long[] chunk = new long[ChunkedGrid.CHUNK_SIZE];
+        buffer.flip();
+        buffer.asLongBuffer().get(chunk);
+        return chunk;
+    }
+
+    // Close the file
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /*
+        Save the given grid to a chunk file at the given path. The table and the walls of the chunks are written
+        at the same time through two small buffers, one after the other in the file, so neither is held in memory
+        as a whole. Each chunk with no walls or only walls is written as an entry in the table alone. The file is
+        written to a temporary file which then replaces the file at the given path, so a grid which is reading
+        its chunks from that file can safely be saved over it.
+     */
+    static void save(Path path, ChunkedGrid grid) throws IOException {
+        int chunksX = grid.getChunksX();
+        int chunksY = grid.getChunksY();
+        Path directory = path.toAbsolutePath().getParent();
+        Path temporary = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer table = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                ByteBuffer data = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                table.putInt(MAGIC).putInt(VERSION).putInt(grid.getWidth()).putInt(grid.getHeight())
+                        .putInt(ChunkedGrid.CHUNK_SIZE).putInt(0);
+                // The position in the file the table and the walls of the chunks are next written at
+                long tablePosition = 0;
+                long dataPosition = HEADER_SIZE + 8L * chunksX * chunksY;
+                long nextChunk = dataPosition;
+                for (int chunkY = 0; chunkY < chunksY; chunkY++) {
+                    for (int chunkX = 0; chunkX < chunksX; chunkX++) {
+                        long[] chunk = grid.getChunk(chunkX, chunkY);
+                        long entry;
+                        if (isFilledWith(chunk, 0)) {
+                            entry = EMPTY_ENTRY;
+                        } else if (isFilledWith(chunk, -1L)) {
+                            entry = FULL_ENTRY;
+                        } else {
+                            entry = nextChunk;
+                            nextChunk += CHUNK_BYTES;
+                            if (data.remaining() < CHUNK_BYTES)
+                                dataPosition = flush(channel, data, dataPosition);
+                            for (long row : chunk)
+                                data.putLong(row);
+                        }
+                        if (table.remaining() < 8)
+                            tablePosition = flush(channel, table, tablePosition);
+                        table.putLong(entry);
+                    }
+                }
+                flush(channel, table, tablePosition);
+                flush(channel, data, dataPosition);
+            }
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    // Check whether every row of the given chunk has the given value
+    private static boolean isFilledWith(long[] chunk, long value) {
+        for (long row : chunk) {
+            if (row != value)
+                return false;
+        }
+        return true;
+    }
+
+    // Calculate the number of chunks needed to cover the given number of cells
+    private static int chunkCount(int cells) {
+        return (int) (((long) cells + ChunkedGrid.CHUNK_SIZE - 1) / ChunkedGrid.CHUNK_SIZE);
+    }
+
+    // Fill the given buffer from the channel starting at the given position, or throw an IOException if the file ends first
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0)
+                throw new IOException("Unexpected end of file.");
+            position += read;
+        }
+    }
+
+    /*
+        Write the contents of the given buffer to the channel at the given position and empty the buffer,
+        returning the position after the last byte written.
+     */
+    private static long flush(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            position += channel.write(buffer, position);
+        buffer.clear();
+        return position;
+    }
+}
@@ -0,0 +1,312 @@
+package com.callumbirks;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+    The ChunkedGrid class stores the walls of a world which can be far larger than the Grid class allows,
+    or than would fit in memory. The world is split into square chunks of CHUNK_SIZE x CHUNK_SIZE cells, and
+    each chunk is stored as CHUNK_SIZE longs, one for each row, where bit x of a row is set if the cell in
+    column x of that row is a wall. A cell is identified by its x and y co-ordinates, as there can be more
+    cells than an int index could number.
+
+    Most of a large world is usually either open ground or solid rock, so a chunk with no walls and a chunk
+    which is all walls are both represented by a single shared array (EMPTY and FULL), which costs nothing to
+    hold however many chunks use it.
+
+    A grid opened from a chunk file (see ChunkFile) only reads each chunk from the file the first time a
+    cell in it is looked at, and keeps the chunks it has read in memory in least recently used order. When
+    the memory they use goes over the budget given when the grid was opened, the chunks which have gone
+    longest without being looked at are dropped, and are read again from the file if they are needed. This
+    way a search only ever holds the part of the world around the cells it has actually visited.
+
+    A chunk which has had a wall changed is copied the first time that happens, and is then kept in memory
+    until the grid is saved, as it no longer matches the file. These chunks are not counted against the memory
+    budget, as they can not be dropped. Once the grid has been saved, it reads its chunks from the saved file
+    instead, so the changed chunks are dropped and read again like any other. This class is not safe to use
+    from more than one thread at once, as even reading a cell may load or drop chunks.
+ */
+public class ChunkedGrid implements Closeable {
+    // The width and height of each chunk in cells, which is the number of bits in a long
+    public static final int CHUNK_SIZE = 64;
+    // The number of bits to shift a co-ordinate by to find its chunk
+    static final int CHUNK_SHIFT = 6;
+    // The single chunk used for every chunk with no walls, which must never be changed
+    static final long[] EMPTY = new long[CHUNK_SIZE];
+    // The single chunk used for every chunk made entirely of walls, which must never be changed
+    static final long[] FULL = new long[CHUNK_SIZE];
+    // The memory used to hold one loaded chunk in bytes (its array), and the cost of keeping any chunk in the cache
+    private static final long CHUNK_BYTES = 16 + 8L * CHUNK_SIZE;
+    private static final long ENTRY_BYTES = 64;
+    // The memory budget used for a grid which is not given one, in bytes
+    private static final long DEFAULT_BUDGET = 64L << 20;
+
+    static {
+        Arrays.fill(FULL, -1L);
+    }
+
+    // The width of the world (number of columns)
+    private final int width;
+    // The height of the world (number of rows)
+    private final int height;
+    // The number of chunks across the world, rounding up so that every cell is in a chunk
+    private final int chunksX;
+    private final int chunksY;
+    // The file the chunks are read from, or null if the grid was not opened from a file and has not been saved
+    private ChunkFile file;
+    // The most memory the chunks read from the file may use before the least recently used ones are dropped
+    private final long memoryBudget;
+    // The chunks read from the file by their key (see chunkKey), in order from least to most recently used
+    private final LinkedHashMap<Long, long[]> loaded = new LinkedHashMap<>(16, 0.75f, true);
+    // The chunks which have had a wall changed since the grid was last saved by their key, which are never dropped
+    private final Map<Long, long[]> changed = new HashMap<>();
+    // The memory used by the loaded chunks in bytes
+    private long memoryUsed = 0;
+    // The number of chunks read from the file and dropped from memory since the grid was created
+    private long loadCount = 0;
+    private long evictionCount = 0;
+    // The key and data of the last chunk looked at, so that looking at cells close together needs no map lookup
+    private long lastKey = -1;
+    private long[] lastChunk = null;
+    // The number of changes made to the walls of the grid, see getVersion
+    private long version = 0;
+
+    /*
+        The constructor for a grid with no walls, taking the width and height of the world. Nothing is stored
+        for a chunk until one of its walls is changed.
+     */
+    public ChunkedGrid(int width, int height) {
+        this(width, height, null, DEFAULT_BUDGET);
+    }
+
+    // The constructor for a grid whose chunks are read from the given file, keeping at most the given memory budget of them
+    private ChunkedGrid(int width, int height, ChunkFile file, long memoryBudget) {
+        if (width <= 0 || height <= 0)
+            throw new IllegalArgumentException("Grid dimensions must be positive.");
+        if (memoryBudget < CHUNK_BYTES + ENTRY_BYTES)
+            throw new IllegalArgumentException("The memory budget must have room for at least one chunk.");
+        this.width = width;
+        this.height = height;
+        this.chunksX = (int) (((long) width + CHUNK_SIZE - 1) >>> CHUNK_SHIFT);
+        this.chunksY = (int) (((long) height + CHUNK_SIZE - 1) >>> CHUNK_SHIFT);
+        this.file = file;
+        this.memoryBudget = memoryBudget;
+    }
+
+    /*
+        Open the chunk file at the given path, keeping the chunks read from it within the given memory budget
+        in bytes. Only the header of the file is read here, and each chunk is read the first time it is needed.
+        The file is kept open until the grid is closed. An IOException is thrown if the file can not be read or
+        is not a chunk file.
+     */
+    public static ChunkedGrid open(Path path, long memoryBudget) throws IOException {
+        ChunkFile file = ChunkFile.open(path);
+        try {
+            return new ChunkedGrid(file.getWidth(), file.getHeight(), file, memoryBudget);
+        } catch (IllegalArgumentException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /*
+        Save the grid to a chunk file at the given path, reading each chunk in turn so that the whole world
+        is never held in memory at once. Chunks with no walls or only walls take up no space in the file
+        beyond their entry in its table. The grid can be saved over the file it was opened from.
+
+        From then on the grid reads its chunks from the saved file, closing the file it was reading from
+        before, and the chunks which had been changed are dropped from memory. If the save fails, the grid
+        carries on as it was.
+     */
+    public void save(Path path) throws IOException {
+        ChunkFile.save(path, this);
+        ChunkFile saved = ChunkFile.open(path);
+        if (file != null) {
+            try {
+                file.close();
+            } catch (IOException e) {
+                saved.close();
+                throw e;
+            }
+        }
+        file = saved;
+        // The chunks read from the old file still hold the same walls, so only the changed chunks are dropped
+        changed.clear();
+        lastKey = -1;
+        lastChunk = null;
+    }
+
+    /*
+        Close the file the chunks are read from, after which only chunks which have been changed since the grid
+        was last saved can be read
+     */
+    @Override
+    public void close() throws IOException {
+        if (file != null)
+            file.close();
+        loaded.clear();
+        memoryUsed = 0;
+        lastKey = -1;
+        lastChunk = null;
+    }
+
+    // Getter for the width of the world
+    public int getWidth() {
+        return width;
+    }
+
+    // Getter for the height of the world
+    public int getHeight() {
+        return height;
+    }
+
+    // Getter for the number of chunks across the world
+    public int getChunksX() {
+        return chunksX;
+    }
+
+    // Getter for the number of chunks down the world
+    public int getChunksY() {
+        return chunksY;
+    }
+
+    // Check whether the given x and y co-ordinates are within the bounds of the world
+    public boolean isInGrid(int x, int y) {
+        return x < width && y < height && x >= 0 && y >= 0;
+    }
+
+    // Getter for whether the cell at the given co-ordinates is a wall, which must be within the world
+    public boolean isWall(int x, int y) {
+        long[] chunk = getChunk(x >>> CHUNK_SHIFT, y >>> CHUNK_SHIFT);
+        // Java only uses the lowest 6 bits of the shift distance, so (1L << x) selects bit (x % 64)
+        return (chunk[y & (CHUNK_SIZE - 1)] & (1L << x)) != 0;
+    }
+
+    /*
+        Setter for whether the cell at the given co-ordinates is a wall. The chunk holding the cell is copied
+        the first time one of its walls changes, and is kept in memory from then on.
+     */
+    public void setWall(int x, int y, boolean wall) {
+        if (!isInGrid(x, y))
+            throw new IllegalArgumentException("The cell (" + x + ", " + y + ") is outside of the grid.");
+        int chunkX = x >>> CHUNK_SHIFT;
+        int chunkY = y >>> CHUNK_SHIFT;
+        long[] chunk = getChunk(chunkX, chunkY);
+        int row = y & (CHUNK_SIZE - 1);
+        long changedRow = wall ? chunk[row] | (1L << x) : chunk[row] & ~(1L << x);
+        if (changedRow == chunk[row])
+            return;
+        long key = chunkKey(chunkX, chunkY);
+        long[] own = changed.get(key);
+        if (own == null) {
+            own = chunk.clone();
+            changed.put(key, own);
+            long[] dropped = loaded.remove(key);
+            if (dropped != null)
+                memoryUsed -= memoryOf(dropped);
+            lastKey = key;
+            lastChunk = own;
+        }
+        own[row] = changedRow;
+        version++;
+    }
+
+    /*
+        Getter for the version of the grid, which goes up by exactly 1 every time a wall is changed, in the same
+        way as Grid.getVersion. Chunks being read from the file or dropped from memory do not change it.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /*
+        Get the chunk with the given chunk co-ordinates, as CHUNK_SIZE rows of walls. The returned array must
+        not be changed. A chunk which is not in memory is read from the file, dropping the least recently used
+        chunks if that takes the memory used over the budget. Rows and columns of a chunk at the edge of the
+        world which are outside of the world have no meaning.
+     */
+    long[] getChunk(int chunkX, int chunkY) {
+        long key = chunkKey(chunkX, chunkY);
+        if (key == lastKey)
+            return lastChunk;
+        long[] chunk = changed.get(key);
+        if (chunk == null)
+            chunk = loaded.get(key);
+        if (chunk == null)
+            chunk = load(key, chunkX, chunkY);
+        lastKey = key;
+        lastChunk = chunk;
+        return chunk;
+    }
+
+    // Read the chunk with the given key and co-ordinates from the file, and keep it in memory within the budget
+    private long[] load(long key, int chunkX, int chunkY) {
+        if (file == null)
+            return EMPTY;
+        long[] chunk;
+        try {
+            chunk = file.readChunk(chunkX, chunkY);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read chunk (" + chunkX + ", " + chunkY + ").", e);
+        }
+        loaded.put(key, chunk);
+        memoryUsed += memoryOf(chunk);
+        loadCount++;
+        // Drop the least recently used chunks until the rest fit in the budget, always keeping the new one
+        Iterator<long[]> chunks = loaded.values().iterator();
+        while (memoryUsed > memoryBudget && loaded.size() > 1) {
+            long[] dropped = chunks.next();
+            chunks.remove();
+            memoryUsed -= memoryOf(dropped);
+            evictionCount++;
+        }
+        return chunk;
+    }
+
+    // Calculate the memory used by keeping the given chunk in memory, which is less for the shared chunks
+    private static long memoryOf(long[] chunk) {
+        return chunk == EMPTY || chunk == FULL ? ENTRY_BYTES : ENTRY_BYTES + CHUNK_BYTES;
+    }
+
+    // Calculate the key of the chunk with the given chunk co-ordinates, which is never negative
+    private long chunkKey(int chunkX, int chunkY) {
+        return (long) chunkY * chunksX + chunkX;
+    }
+
+    // Getter for the number of chunks read from the file which are currently held in memory
+    public int getLoadedChunkCount() {
+        return loaded.size();
+    }
+
+    // Getter for the number of chunks which have had a wall changed, and are held in memory until the grid is saved
+    public int getChangedChunkCount() {
+        return changed.size();
+    }
+
+    // Getter for the memory used by the chunks read from the file, in bytes
+    public long getMemoryUsed() {
+        return memoryUsed;
+    }
+
+    // Getter for the memory budget of the chunks read from the file, in bytes
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    // Getter for the number of times a chunk has been read from the file
+    public long getLoadCount() {
+        return loadCount;
+    }
+
+    // Getter for the number of times a chunk has been dropped from memory to stay within the budget
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+}
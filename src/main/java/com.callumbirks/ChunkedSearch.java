@@ -0,0 +1,248 @@
+package com.callumbirks;
+
+import java.util.Arrays;
+
+/*
+    The ChunkedSearch class runs the A* algorithm over a ChunkedGrid, finding the shortest path between two
+    cells of a world which may be far too large to hold in memory. The other searches store their values in
+    arrays with an entry for every cell of the grid (see SearchState), which is impossible here, so instead
+    each cell is only given a node the first time the search reaches it. The nodes are numbered in the order
+    they are created and their values stored in arrays which grow as needed, with a hash map from each cell
+    to its node, so the memory used depends only on the number of cells the search visits.
+
+    A search with a good heuristic visits only a narrow band of cells around the path, so only the chunks
+    along that band are read from the chunk file, and the ones it has moved away from are dropped again as
+    the grid runs up against its memory budget. To keep a search which can not find a path from growing
+    without bound (for example, when the end node is walled off inside a huge world), the search gives up
+    once it has created the node limit's number of nodes.
+
+    Moves are made up, down, left and right and each costs 1, with the Manhattan distance as the heuristic.
+
+    The path is returned in the same compact way as GridPath, without an object for each cell. A cell of a
+    chunked world can not be numbered with an int index, so each cell is packed into a long instead, with
+    its y co-ordinate in the upper 32 bits and its x co-ordinate in the lower 32 bits (see getX and getY).
+ */
+public class ChunkedSearch {
+    // The value used to represent infinity for f(n)
+    private static final int INFINITY = SearchState.INFINITY;
+    // The value used to represent "no node", for example the previous node of the start node
+    private static final int NONE = SearchState.NONE;
+    // The number of nodes there is room for when a search starts
+    private static final int INITIAL_CAPACITY = 1024;
+    // The node limit used if none is given
+    private static final int DEFAULT_NODE_LIMIT = 1 << 22;
+    // The grid to search
+    private final ChunkedGrid grid;
+    // The most nodes a search may create before giving up
+    private int nodeLimit = DEFAULT_NODE_LIMIT;
+    // The co-ordinates of the start and end nodes, or NONE if they have not been set
+    private int startX = NONE;
+    private int startY = NONE;
+    private int endX = NONE;
+    private int endY = NONE;
+    // The packed co-ordinates of each cell along the path found by the last search, or null if there was none
+    private long[] path = null;
+    // Whether the last search gave up because it reached the node limit
+    private boolean limitReached = false;
+    // The number of nodes expanded (moved to the closed set) by the last search
+    private int expanded = 0;
+
+    /*
+        The values of each node of the current search: its co-ordinates, g(n), f(n), h(n), and the node
+        before it along the best path found to it so far.
+     */
+    private int[] nodeX = new int[0];
+    private int[] nodeY = new int[0];
+    private int[] g = new int[0];
+    private int[] f = new int[0];
+    private int[] h = new int[0];
+    private int[] previous = new int[0];
+    // The number of nodes created by the current search
+    private int nodeCount = 0;
+    // The node of each cell reached by the current search, keyed by y * width + x
+    private final LongIntMap nodes = new LongIntMap();
+    // The open set, which is replaced by a larger one whenever the node arrays grow
+    private IndexedHeap openSet;
+
+    // The constructor for the search, taking the grid to search
+    public ChunkedSearch(ChunkedGrid grid) {
+        this.grid = grid;
+    }
+
+    // Getter for the most nodes a search may create before giving up
+    public int getNodeLimit() {
+        return nodeLimit;
+    }
+
+    /*
+        Setter for the most nodes a search may create before giving up, which must be positive. Each node uses
+        around 50 bytes, counting its entry in the hash map.
+     */
+    public void setNodeLimit(int nodeLimit) {
+        if (nodeLimit <= 0)
+            throw new IllegalArgumentException("The node limit must be positive.");
+        this.nodeLimit = nodeLimit;
+    }
+
+    // Setter for the start node, taking its x and y co-ordinates
+    public void setStart(int x, int y) {
+        if (!grid.isInGrid(x, y))
+            throw new IllegalArgumentException("The start node must be inside the grid.");
+        startX = x;
+        startY = y;
+    }
+
+    // Setter for the end node, taking its x and y co-ordinates
+    public void setEnd(int x, int y) {
+        if (!grid.isInGrid(x, y))
+            throw new IllegalArgumentException("The end node must be inside the grid.");
+        endX = x;
+        endY = y;
+    }
+
+    /*
+        Getter for the path found by the last search, from the start node to the end node, or null if there was
+        none. Each cell along the path is packed into a long, whose co-ordinates can be read with getX and getY.
+        The array belongs to the search and must not be changed.
+     */
+    public long[] getPath() {
+        return path;
+    }
+
+    // Getter for the x co-ordinate of a cell packed into a long, as returned by getPath
+    public static int getX(long cell) {
+        return (int) cell;
+    }
+
+    // Getter for the y co-ordinate of a cell packed into a long, as returned by getPath
+    public static int getY(long cell) {
+        return (int) (cell >>> 32);
+    }
+
+    // Check whether the last search gave up because it reached the node limit, rather than finding there was no path
+    public boolean isLimitReached() {
+        return limitReached;
+    }
+
+    // Getter for the number of nodes expanded by the last search
+    public int getExpanded() {
+        return expanded;
+    }
+
+    // Getter for the number of nodes created by the last search
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    /*
+        Run the algorithm from the start node to the end node, storing the path found, which can be obtained
+        using the getPath function. The start and end nodes must have been set. A start or end node which is a
+        wall has no path.
+     */
+    public void run() {
+        if (startX == NONE)
+            throw new IllegalArgumentException("Start node has not been set.");
+        if (endX == NONE)
+            throw new IllegalArgumentException("End node has not been set.");
+        path = null;
+        limitReached = false;
+        expanded = 0;
+        begin();
+        if (grid.isWall(startX, startY) || grid.isWall(endX, endY))
+            return;
+        int width = grid.getWidth();
+        long end = (long) endY * width + endX;
+        addNode(startX, startY, 0, NONE);
+        while (!openSet.isEmpty()) {
+            SearchState.checkCancelled();
+            int current = openSet.poll();
+            expanded++;
+            int x = nodeX[current];
+            int y = nodeY[current];
+            if ((long) y * width + x == end) {
+                path = reconstructPath(current);
+                return;
+            }
+            // Test the neighbours up, right, down and left, skipping those outside the world and walls
+            for (int direction = 0; direction < 4; direction++) {
+                int nx = x + (direction == 1 ? 1 : direction == 3 ? -1 : 0);
+                int ny = y + (direction == 0 ? -1 : direction == 2 ? 1 : 0);
+                if (!grid.isInGrid(nx, ny) || grid.isWall(nx, ny))
+                    continue;
+                int tempG = g[current] + 1;
+                int neighbour = nodes.get((long) ny * width + nx);
+                if (neighbour == LongIntMap.MISSING) {
+                    if (nodeCount == nodeLimit) {
+                        limitReached = true;
+                        return;
+                    }
+                    addNode(nx, ny, tempG, current);
+                } else if (tempG < g[neighbour]) {
+                    // With a consistent heuristic a closed node is never improved, so the neighbour is still open
+                    g[neighbour] = tempG;
+                    f[neighbour] = (int) Math.min((long) tempG + h[neighbour], INFINITY - 1);
+                    previous[neighbour] = current;
+                    openSet.decreaseKey(neighbour);
+                }
+            }
+        }
+    }
+
+    // Start a new search, with no nodes and an empty open set
+    private void begin() {
+        nodes.clear();
+        nodeCount = 0;
+        if (openSet == null)
+            grow(INITIAL_CAPACITY);
+        else
+            openSet.clear();
+    }
+
+    // Create a node for the cell at the given co-ordinates, and add it to the open set
+    private void addNode(int x, int y, int nodeG, int from) {
+        if (nodeCount == nodeX.length)
+            grow(nodeX.length * 2);
+        int node = nodeCount++;
+        nodeX[node] = x;
+        nodeY[node] = y;
+        g[node] = nodeG;
+        h[node] = (int) Math.min(Math.abs((long) x - endX) + Math.abs((long) y - endY), INFINITY - 1);
+        f[node] = (int) Math.min((long) nodeG + h[node], INFINITY - 1);
+        previous[node] = from;
+        nodes.put((long) y * grid.getWidth() + x, node);
+        openSet.add(node);
+    }
+
+    /*
+        Make room for the given number of nodes. The open set reads the f(n) and h(n) arrays it was created
+        with, so a new open set is created for the new arrays and the open nodes are moved across to it.
+     */
+    private void grow(int capacity) {
+        capacity = Math.min(capacity, nodeLimit);
+        nodeX = Arrays.copyOf(nodeX, capacity);
+        nodeY = Arrays.copyOf(nodeY, capacity);
+        g = Arrays.copyOf(g, capacity);
+        f = Arrays.copyOf(f, capacity);
+        h = Arrays.copyOf(h, capacity);
+        previous = Arrays.copyOf(previous, capacity);
+        IndexedHeap grown = new IndexedHeap(capacity, f, h);
+        if (openSet != null) {
+            for (int i = 0; i < openSet.size(); i++)
+                grown.add(openSet.get(i));
+        }
+        openSet = grown;
+    }
+
+    /*
+        Follow the previous nodes back from the given node to the start node, returning the packed co-ordinates
+        of each cell along the path in order. Every move costs 1, so g(n) of the node is the number of moves along
+        the path, and the array is filled in backwards from the end without needing to be reversed.
+     */
+    private long[] reconstructPath(int node) {
+        long[] cells = new long[g[node] + 1];
+        int i = cells.length;
+        for (int current = node; current != NONE; current = previous[current])
+            cells[--i] = ((long) nodeY[current] << 32) | nodeX[current];
+        return cells;
+    }
+}
@@ -0,0 +1,279 @@
+package com.callumbirks;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/*
+    The Components class keeps track of which open cells of the grid are connected to each other.
+    Every open cell has a label, and two open cells are connected (there is a path between them)
+    exactly when their labels belong to the same component. This means checking whether the end node
+    can be reached from the start node takes O(1) time, rather than a search of every reachable cell.
+
+    The labels are kept up to date as walls change. Labels are grouped using union-find, so when a wall
+    is removed the components around it are joined in almost O(1) time. When a wall is added it may
+    split a component in two, so a breadth-first search is run from each open neighbour of the new wall
+    at the same time, one cell each in turn. Searches which meet are part of the same component, and a
+    search which runs out of cells before meeting the others has found a separate component, which is
+    given a new label. The last search left running is never finished, so the cost of a split is
+    proportional to the size of the smaller parts rather than the size of the grid.
+ */
+class Components {
+    // The label given to a wall, which is not part of any component
+    private static final int WALL = -1;
+    // The most neighbours a cell can have, and so the most searches that can be run when a wall is added
+    private static final int MAX_NEIGHBOURS = 4;
+    // The grid whose components are being tracked
+    private final Grid grid;
+    // The label of each cell, or WALL if the cell is a wall
+    private final int[] labels;
+    // The union-find parent of each label, a label which is its own parent is the root of its component
+    private int[] parents;
+    // The number of labels which have been used
+    private int labelCount;
+    // Which search (and in which call) each cell was last visited by, used when a wall is added
+    private final int[] visited;
+    // The number of times a wall has been added, used so that the visited array never needs clearing
+    private int epoch = 0;
+    // The queue of each search, which also holds every cell the search has visited
+    private final int[][] queues = new int[MAX_NEIGHBOURS][16];
+    // The number of cells in each queue, and the position of the next cell to be taken from it
+    private final int[] tails = new int[MAX_NEIGHBOURS];
+    private final int[] heads = new int[MAX_NEIGHBOURS];
+    // The group each search belongs to, searches which have met are in the same group
+    private final int[] groups = new int[MAX_NEIGHBOURS];
+    // An array to hold the neighbours of a cell
+    private final int[] neighbours = new int[MAX_NEIGHBOURS];
+    // A separate array to hold the neighbours of a cell being tested by a search
+    private final int[] searchNeighbours = new int[MAX_NEIGHBOURS];
+    // The new walls of a batch which have not been handled yet, and are treated as still open, or null
+    private BitSet pending = null;
+
+    // The constructor for the components, which labels every cell of the given grid
+    Components(Grid grid) {
+        this.grid = grid;
+        labels = new int[grid.getSize()];
+        visited = new int[grid.getSize()];
+        parents = new int[16];
+        relabel();
+    }
+
+    // Check whether the two given cells are both open and connected by a path
+    boolean isConnected(int a, int b) {
+        return labels[a] != WALL && labels[b] != WALL && find(labels[a]) == find(labels[b]);
+    }
+
+    // Update the labels after the given cell has been made into a wall
+    void wallAdded(int cell) {
+        labels[cell] = WALL;
+        int count = openNeighbours(cell, neighbours);
+        // A cell with fewer than two open neighbours can not split a component by becoming a wall
+        if (count < 2)
+            return;
+        epoch++;
+        // The visited array stores (epoch * MAX_NEIGHBOURS + search), so clear it before this would overflow
+        if (epoch >= Integer.MAX_VALUE / MAX_NEIGHBOURS) {
+            Arrays.fill(visited, 0);
+            epoch = 1;
+        }
+        // Start a search from each open neighbour, each in its own group
+        for (int k = 0; k < count; k++) {
+            queues[k][0] = neighbours[k];
+            heads[k] = 0;
+            tails[k] = 1;
+            groups[k] = k;
+            visited[neighbours[k]] = mark(k);
+        }
+        // Keep taking one cell from each search in turn until only one group is still searching
+        while (activeGroups(count) > 1) {
+            for (int k = 0; k < count; k++) {
+                if (heads[k] == tails[k])
+                    continue;
+                step(k, count);
+            }
+            // Any group whose searches have all run out of cells is a separate component
+            for (int k = 0; k < count; k++) {
+                if (groups[k] == k && isExhausted(k, count))
+                    separate(k, count);
+            }
+        }
+    }
+
+    /*
+        Update the labels after every one of the given cells has been made into a wall at once. The cells are
+        handled one at a time as if they had been added in turn, treating the walls not handled yet as still
+        open, as a wall on its own may not split a component which it splits along with the other new walls.
+     */
+    void wallsAdded(BitSet cells) {
+        pending = (BitSet) cells.clone();
+        try {
+            for (int cell = cells.nextSetBit(0); cell >= 0; cell = cells.nextSetBit(cell + 1)) {
+                pending.clear(cell);
+                wallAdded(cell);
+            }
+        } finally {
+            pending = null;
+        }
+    }
+
+    /*
+        Update the labels after the given cell has stopped being a wall. When many walls are removed at once,
+        this is called for each of them in turn, and a neighbour which has not been labelled yet is skipped, as
+        it joins up with this cell when it is labelled itself.
+     */
+    void wallRemoved(int cell) {
+        int count = grid.getNeighbours(cell, neighbours);
+        // The cell joins the components of all of its labelled neighbours together
+        int root = WALL;
+        for (int i = 0; i < count; i++) {
+            if (labels[neighbours[i]] == WALL)
+                continue;
+            int other = find(labels[neighbours[i]]);
+            if (root == WALL)
+                root = other;
+            else if (other != root)
+                parents[other] = root;
+        }
+        // With no labelled neighbours the cell is a component on its own
+        labels[cell] = root == WALL ? newLabel() : root;
+    }
+
+    // Label every cell of the grid from scratch, using a breadth-first search from each unlabelled open cell
+    private void relabel() {
+        labelCount = 0;
+        Arrays.fill(labels, WALL);
+        int[] queue = new int[16];
+        for (int cell = 0; cell < grid.getSize(); cell++) {
+            if (labels[cell] != WALL || grid.isWall(cell))
+                continue;
+            int label = newLabel();
+            labels[cell] = label;
+            queue[0] = cell;
+            int head = 0;
+            int tail = 1;
+            while (head < tail) {
+                int count = grid.getNeighbours(queue[head++], neighbours);
+                for (int i = 0; i < count; i++) {
+                    if (labels[neighbours[i]] == WALL) {
+                        labels[neighbours[i]] = label;
+                        if (tail == queue.length)
+                            queue = Arrays.copyOf(queue, tail * 2);
+                        queue[tail++] = neighbours[i];
+                    }
+                }
+            }
+        }
+    }
+
+    // Take one cell from the queue of the given search and add its unvisited open neighbours to the queue
+    private void step(int k, int count) {
+        int cell = queues[k][heads[k]++];
+        int neighbourCount = openNeighbours(cell, searchNeighbours);
+        for (int i = 0; i < neighbourCount; i++) {
+            int neighbour = searchNeighbours[i];
+            int mark = visited[neighbour];
+            // If another search has already visited this cell, the two searches are connected
+            if (mark >= mark(0) && mark < mark(0) + count) {
+                join(k, mark - mark(0), count);
+                continue;
+            }
+            visited[neighbour] = mark(k);
+            if (tails[k] == queues[k].length)
+                queues[k] = Arrays.copyOf(queues[k], tails[k] * 2);
+            queues[k][tails[k]++] = neighbour;
+        }
+    }
+
+    /*
+        Find the neighbours of the given cell which are open, along with those which are new walls of a batch
+        which have not been handled yet, writing them into the given array and returning how many there are.
+     */
+    private int openNeighbours(int cell, int[] open) {
+        int count = grid.getNeighbours(cell, open);
+        if (pending == null)
+            return count;
+        int width = grid.getWidth();
+        int x = cell % width;
+        if (cell >= width && pending.get(cell - width)) open[count++] = cell - width;
+        if (x < width - 1 && pending.get(cell + 1)) open[count++] = cell + 1;
+        if (cell < grid.getSize() - width && pending.get(cell + width)) open[count++] = cell + width;
+        if (x > 0 && pending.get(cell - 1)) open[count++] = cell - 1;
+        return count;
+    }
+
+    // Put every search in the group of search b into the group of search a
+    private void join(int a, int b, int count) {
+        int groupA = groups[a];
+        int groupB = groups[b];
+        if (groupA == groupB)
+            return;
+        for (int k = 0; k < count; k++) {
+            if (groups[k] == groupB)
+                groups[k] = groupA;
+        }
+    }
+
+    // Give every cell visited by the searches in the given group a new label, as they form a separate component
+    private void separate(int group, int count) {
+        int label = newLabel();
+        for (int k = 0; k < count; k++) {
+            if (groups[k] != group)
+                continue;
+            for (int i = 0; i < tails[k]; i++)
+                labels[queues[k][i]] = label;
+            // Mark the search as finished so that the group is not counted again
+            groups[k] = -1;
+        }
+    }
+
+    // Check whether every search in the given group has run out of cells
+    private boolean isExhausted(int group, int count) {
+        for (int k = 0; k < count; k++) {
+            if (groups[k] == group && heads[k] != tails[k])
+                return false;
+        }
+        return true;
+    }
+
+    // Count the groups which still have a search with cells left to test
+    private int activeGroups(int count) {
+        int active = 0;
+        for (int group = 0; group < count; group++) {
+            boolean isGroup = false;
+            for (int k = 0; k < count && !isGroup; k++)
+                isGroup = groups[k] == group;
+            if (isGroup && !isExhausted(group, count))
+                active++;
+        }
+        return active;
+    }
+
+    // The value stored in the visited array for a cell visited by the given search during this call
+    private int mark(int k) {
+        return epoch * MAX_NEIGHBOURS + k;
+    }
+
+    // Find the root label of the component the given label belongs to, shortening the path along the way
+    private int find(int label) {
+        while (parents[label] != label) {
+            parents[label] = parents[parents[label]];
+            label = parents[label];
+        }
+        return label;
+    }
+
+    /*
+        Create a new label which is the root of its own component. If far more labels have been used than
+        there are cells, every cell is labelled again from scratch so that the parents array stays small.
+     */
+    private int newLabel() {
+        if (labelCount == parents.length) {
+            if (labelCount > 2 * grid.getSize() + 16) {
+                relabel();
+                return newLabel();
+            }
+            parents = Arrays.copyOf(parents, labelCount * 2);
+        }
+        parents[labelCount] = labelCount;
+        return labelCount++;
+    }
+}
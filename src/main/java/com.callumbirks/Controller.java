@@ -1,32 +1,94 @@
 package com.callumbirks;
 
+import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
+import javafx.geometry.Rectangle2D;
+import javafx.scene.control.Alert;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.Label;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.ImageView;
+import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.layout.StackPane;
 import javafx.scene.paint.Color;
+import javafx.stage.FileChooser;
 
+import java.io.File;
+import java.io.IOException;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.Objects;
 import java.util.ResourceBundle;
+import java.util.concurrent.ForkJoinPool;
 
 /*
     The controller class is used to control GUI elements of the application
  */
 public class Controller implements Initializable {
     /*
-        A variable used to refer to the canvas (The part of the GUI which holds the grid in this application).
-        The FXML tag is needed so that the compiler knows this is an FXML element (this variable refers to
-        the canvas which can be found in the FXML file).
+        A variable used to refer to the pane which holds the grid in this application, which receives
+        the mouse events for the grid. The FXML tag is needed so that the compiler knows this is an FXML
+        element (this variable refers to the pane which can be found in the FXML file).
      */
     @FXML
-    private Canvas canvas;
-    // A variable used to control graphics elements of the canvas, such as drawing and clearing
-    private GraphicsContext gc;
+    private StackPane viewPane;
     /*
-        A constant variable which determines the size of each square on the grid.
+        The image view which displays the grid. The image has one pixel for each cell, and the view shows
+        the visible part of it (its viewport) scaled up without smoothing, so that each cell is a square.
+     */
+    @FXML
+    private ImageView view;
+    /*
+        A canvas which sits on top of the image view and holds the grid lines. The lines only change when
+        the view is zoomed or panned, so they are not drawn again every time the grid is rendered. It ignores
+        the mouse so that clicks still reach the pane underneath.
+     */
+    @FXML
+    private Canvas gridCanvas;
+    // The check box which turns on the overlay showing the cells in the open and closed sets of the last search
+    @FXML
+    private CheckBox overlayCheckBox;
+    // The check box which allows the path to move diagonally
+    @FXML
+    private CheckBox diagonalCheckBox;
+    // The label which shows the statistics of the last search
+    @FXML
+    private Label statsLabel;
+    /*
+        A constant variable which determines the starting size of each square on the grid, in pixels.
         The number of elements in the grid will dynamically change based on this.
      */
     public static final int PIXEL_SIZE = 10;
+    // The largest size a square on the grid can be zoomed in to, in pixels
+    private static final double MAX_SCALE = 64;
+    // How much each step of the mouse wheel zooms in or out by
+    private static final double ZOOM_STEP = 1.25;
+    // The grid lines are only drawn when squares are at least this many pixels wide, otherwise they would hide the cells
+    private static final double MIN_LINE_SCALE = 4;
+    // The colour of each type of cell, in the ARGB format used by the image
+    private static final int EMPTY_COLOUR = 0xFFF4F4F4;
+    private static final int WALL_COLOUR = 0xFF000000;
+    private static final int START_COLOUR = 0xFF008000;
+    private static final int END_COLOUR = 0xFFFF0000;
+    private static final int PATH_COLOUR = 0xFF0000FF;
+    private static final int OPEN_COLOUR = 0xFF98FB98;
+    private static final int CLOSED_COLOUR = 0xFFB0C4DE;
+    private static final int MUD_COLOUR = 0xFF8B5A2B;
+    // The terrain cost of the cells drawn with the "Draw Mud" button
+    private static final int MUD_COST = 5;
+    // The number of paths remembered, so that moving the start or end node back to where it was does not search again
+    private static final int PATH_CACHE_SIZE = 64;
+    /*
+        The number of landmarks used to improve the search when the moves do not all cost the same, which are
+        also saved with the grid so that they do not need to be worked out again when it is loaded
+     */
+    private static final int LANDMARK_COUNT = 4;
 
     // The variable used to store the width of the grid (number of columns)
     public static int WIDTH;
@@ -40,6 +102,40 @@ public class Controller implements Initializable {
         when the user is trying to place the start node, and other similar issues.
      */
     private String currentBtn = "";
+    /*
+        The cells which have changed since the grid was last rendered, stored as (y * WIDTH + x). Only these
+        cells are drawn again by the render function, rather than every cell of the grid.
+     */
+    private final BitSet dirty = new BitSet();
+    // Whether every cell needs to be drawn again, for example after the grid has been cleared
+    private boolean fullRepaint = true;
+    // The path, start node and end node as they were when the grid was last rendered
+    private GridPath drawnPath = null;
+    private Node drawnStart = null;
+    private Node drawnEnd = null;
+    /*
+        Runs the searches on a background thread so that the window does not freeze while a search runs.
+        When the grid changes while a search is running, that search is cancelled and a new one started.
+     */
+    private final BackgroundSearch search = new BackgroundSearch();
+    // The cells in the open and closed sets of the last search, which are only filled in while the overlay is on
+    private BitSet openCells = new BitSet();
+    private BitSet closedCells = new BitSet();
+    // The image of the grid, with one pixel for each cell
+    private GridImage image;
+    // The current size of each square on the grid in pixels, which changes when the user zooms
+    private double scale = PIXEL_SIZE;
+    // The co-ordinates of the cell at the top left corner of the view (which may be part way through a cell)
+    private double viewX = 0;
+    private double viewY = 0;
+    // The position of the mouse and the view when the user started panning
+    private double panStartX;
+    private double panStartY;
+    private double panViewX;
+    private double panViewY;
+    // The cell the mouse was over at the last event while drawing walls, which the next line is drawn from
+    private int lastDragX = 0;
+    private int lastDragY = 0;
 
     /*
         This method is overridden from the Initializable interface, it is similar
@@ -48,65 +144,261 @@ public class Controller implements Initializable {
      */
     @Override
     public void initialize(URL url, ResourceBundle resourceBundle) {
-        // Set the WIDTH variable to the pixel width of the canvas divided by the PIXEL_SIZE
-        WIDTH = (int) canvas.getWidth() / PIXEL_SIZE;
-        // Set the HEIGHT variable to the pixel height of the canvas divided by the PIXEL_SIZE
-        HEIGHT = (int) canvas.getHeight() / PIXEL_SIZE;
+        // Set the WIDTH variable to the pixel width of the view divided by the PIXEL_SIZE
+        WIDTH = (int) gridCanvas.getWidth() / PIXEL_SIZE;
+        // Set the HEIGHT variable to the pixel height of the view divided by the PIXEL_SIZE
+        HEIGHT = (int) gridCanvas.getHeight() / PIXEL_SIZE;
+        // Request focus for the pane (so that mouse input can be captured properly).
+        viewPane.requestFocus();
+        // Create a new AStar object, which will contain a grid with WIDTH columns and HEIGHT rows
+        aStar = createAStar(new Grid(WIDTH, HEIGHT));
+        // Create the image of the grid and display it
+        image = new GridImage(WIDTH, HEIGHT);
+        view.setImage(image.getImage());
         /*
-            Assign the graphics context of the canvas to the gc variable, so that the gc variable
-            can be used to manipulate graphics elements of the canvas.
+            Zoom in and out with the mouse wheel, and pan by dragging with the right or middle mouse button.
+            The panning handlers are added rather than set, so that they are kept when a button replaces
+            the pane's mouse handlers.
          */
-        gc = canvas.getGraphicsContext2D();
-        // Request focus for the canvas (so that mouse input can be captured properly).
-        canvas.requestFocus();
-        // Create a new AStar object, which will contain a grid with WIDTH columns and HEIGHT rows
-        aStar = new AStar(WIDTH, HEIGHT);
+        viewPane.setOnScroll(scrollEvent -> zoom(scrollEvent.getX(), scrollEvent.getY(),
+                scrollEvent.getDeltaY() > 0 ? ZOOM_STEP : 1 / ZOOM_STEP));
+        viewPane.addEventHandler(MouseEvent.MOUSE_PRESSED, this::startPan);
+        viewPane.addEventHandler(MouseEvent.MOUSE_DRAGGED, this::pan);
+        // Show the view and draw the grid lines
+        updateView();
         // Call the render function
         render();
     }
 
     /*
-        This function is used in order to render the graphics inside the canvas,
-        such as drawing the lines on the grid and filling in all wall squares as black.
-        When drawing, the co-ordinates have to be multiplied by the PIXEL_SIZE because
-        the co-ordinates are relative to the size of the grid in rows and columns, however
-        when drawing it must be relative to the pixels on the screen.
+        Create a new AStar object which searches the given grid. The incremental mode
+        is used because the path is run again after every change the user makes to the grid, and this
+        mode only updates the part of the search affected by each change.
+     */
+    private AStar createAStar(Grid grid) {
+        AStar aStar = new AStar(grid);
+        aStar.setMode(AStar.Mode.INCREMENTAL);
+        aStar.setDiagonal(diagonalCheckBox.isSelected());
+        aStar.setCacheSize(PATH_CACHE_SIZE);
+        aStar.setLandmarkCount(LANDMARK_COUNT);
+        return aStar;
+    }
+
+    /*
+        This function is used in order to render the graphics of the grid, such as filling in all
+        wall squares as black. Only the cells which have changed since the last render are drawn again:
+        cells marked as dirty (such as new walls), the cells of the old and new paths if the path has
+        changed, and the old and new positions of the start and end nodes if they have moved.
+        Each cell is one pixel of the image, which the image view scales up to the size of a square.
      */
     private void render() {
-        // Loop through each node on the grid
-        for (int x = 0; x < WIDTH; x++) {
-            for (int y = 0; y < HEIGHT; y++) {
-                // Clear the current node on the grid
-                gc.clearRect(x * PIXEL_SIZE, y * PIXEL_SIZE, PIXEL_SIZE, PIXEL_SIZE);
-                // If this node is a wall set the fill colour to black
-                if (aStar.isWall(x,y)) gc.setFill(Color.BLACK);
-                // Else if this node is the start node set the fill colour to green
-                else if (aStar.isStart(x,y)) gc.setFill(Color.GREEN);
-                // Else if this node is the end node set the fill colour to red
-                else if (aStar.isEnd(x,y)) gc.setFill(Color.RED);
-                // Else if this node is on the path set the fill colour to blue
-                else if (aStar.isOnPath(x,y)) gc.setFill(Color.BLUE);
-                // If this node fulfilled none of the above conditions, skip to the next node
-                else continue;
-                // Fill this node with the current fill colour
-                gc.fillRect(x * PIXEL_SIZE, y * PIXEL_SIZE, PIXEL_SIZE, PIXEL_SIZE);
+        if (fullRepaint) {
+            // Draw every cell
+            for (int x = 0; x < WIDTH; x++) {
+                for (int y = 0; y < HEIGHT; y++)
+                    drawCell(x, y);
             }
+            fullRepaint = false;
+            dirty.clear();
+        } else {
+            // If the path has changed, the cells of both the old path and the new path need to be drawn again
+            if (aStar.getPath() != drawnPath) {
+                markDirty(drawnPath);
+                markDirty(aStar.getPath());
+            }
+            // If the start node or end node has moved, both its old and new cells need to be drawn again
+            if (!Objects.equals(aStar.getStart(), drawnStart)) {
+                markDirty(drawnStart);
+                markDirty(aStar.getStart());
+            }
+            if (!Objects.equals(aStar.getEnd(), drawnEnd)) {
+                markDirty(drawnEnd);
+                markDirty(aStar.getEnd());
+            }
+            // Draw each dirty cell
+            for (int i = dirty.nextSetBit(0); i >= 0; i = dirty.nextSetBit(i + 1))
+                drawCell(i % WIDTH, i / WIDTH);
+            dirty.clear();
         }
-        // Set the fill colour to black in order to draw the grid lines
-        gc.setFill(Color.BLACK);
-        // Loop through the columns of the grid
-        for (int x = 0; x < canvas.getWidth(); x += PIXEL_SIZE) {
-            // Draw a line from the top to the bottom of the screen for each column
-            gc.strokeLine(x, 0, x, canvas.getHeight());
+        // Copy the changed pixels into the image that is displayed
+        image.update();
+        // Remember what has been drawn, so that the next render can tell what has changed
+        drawnPath = aStar.getPath();
+        drawnStart = aStar.getStart();
+        drawnEnd = aStar.getEnd();
+    }
+
+    // Set the pixel of the cell at the given co-ordinates to the colour the cell should be
+    private void drawCell(int x, int y) {
+        int colour;
+        // If this node is a wall set the colour to black
+        if (aStar.isWall(x,y)) colour = WALL_COLOUR;
+        // Else if this node is the start node set the colour to green
+        else if (aStar.isStart(x,y)) colour = START_COLOUR;
+        // Else if this node is the end node set the colour to red
+        else if (aStar.isEnd(x,y)) colour = END_COLOUR;
+        // Else if this node is on the path set the colour to blue
+        else if (aStar.isOnPath(x,y)) colour = PATH_COLOUR;
+        // Else if the overlay is on and this node was in the open set of the last search set the colour to green
+        else if (openCells.get(y * WIDTH + x)) colour = OPEN_COLOUR;
+        // Else if the overlay is on and this node was in the closed set of the last search set the colour to grey
+        else if (closedCells.get(y * WIDTH + x)) colour = CLOSED_COLOUR;
+        // Else if this node costs more than usual to move onto set the colour to brown
+        else if (aStar.getCost(x,y) > 1) colour = MUD_COLOUR;
+        // If this node fulfilled none of the above conditions, it is empty
+        else colour = EMPTY_COLOUR;
+        image.setColour(x, y, colour);
+    }
+
+    // Mark the cell at the given co-ordinates as needing to be drawn again
+    private void markDirty(int x, int y) {
+        dirty.set(y * WIDTH + x);
+    }
+
+    // Mark the cell of the given node as needing to be drawn again, if there is a node
+    private void markDirty(Node node) {
+        if (node != null)
+            markDirty(node.getX(), node.getY());
+    }
+
+    // Mark every cell of the given path as needing to be drawn again, if there is a path
+    private void markDirty(GridPath path) {
+        if (path != null) {
+            for (int i = 0; i < path.length(); i++)
+                markDirty(path.getX(i), path.getY(i));
         }
-        // Loop through the rows of the grid
-        for (int y = 0; y < canvas.getHeight(); y += PIXEL_SIZE) {
-            // Draw a line from the left to the right of the screen for each row
-            gc.strokeLine(0, y, canvas.getWidth(), y);
+    }
+
+    /*
+        Start searching for the path in the background, replacing any search which is still running.
+        The grid is rendered again once the path has been found. As with running the algorithm directly,
+        an IllegalArgumentException is thrown if the start or end node has not been set.
+     */
+    private void runSearch() {
+        search.submit(aStar, overlayCheckBox.isSelected(), this::searchFinished);
+    }
+
+    /*
+        Called once a search running in the background has finished and its path has been stored. The
+        statistics of the search are shown, and if the overlay is on, the cells of the old overlay and
+        the new one are marked to be drawn again.
+     */
+    private void searchFinished(BackgroundSearch.Result result) {
+        statsLabel.setText(result.stats.toString());
+        clearOverlay();
+        if (result.open != null) {
+            openCells = result.open;
+            closedCells = result.closed;
+            dirty.or(openCells);
+            dirty.or(closedCells);
         }
+        render();
+    }
+
+    // Remove the overlay, marking the cells it covered to be drawn again
+    private void clearOverlay() {
+        dirty.or(openCells);
+        dirty.or(closedCells);
+        openCells = new BitSet();
+        closedCells = new BitSet();
+    }
+
+    // Convert an x position in pixels within the view into the x co-ordinate of the cell at that position
+    private int toCellX(double x) {
+        return (int) Math.floor(viewX + x / scale);
+    }
+
+    // Convert a y position in pixels within the view into the y co-ordinate of the cell at that position
+    private int toCellY(double y) {
+        return (int) Math.floor(viewY + y / scale);
+    }
+
+    // The number of columns of the grid which fit in the view at the current scale, no more than the width of the grid
+    private double visibleWidth() {
+        return Math.min(WIDTH, gridCanvas.getWidth() / scale);
+    }
+
+    // The number of rows of the grid which fit in the view at the current scale, no more than the height of the grid
+    private double visibleHeight() {
+        return Math.min(HEIGHT, gridCanvas.getHeight() / scale);
+    }
+
+    // The size of a square on the grid, in pixels, at which the whole grid just fits in the view
+    private double fitScale() {
+        return Math.min(gridCanvas.getWidth() / WIDTH, gridCanvas.getHeight() / HEIGHT);
+    }
+
+    /*
+        Zoom the view by the given factor, keeping the cell under the given position (in pixels within the
+        view) in the same place. The view can not be zoomed out further than showing the whole grid.
+     */
+    private void zoom(double x, double y, double factor) {
+        // The co-ordinates of the point under the mouse, which should stay under the mouse
+        double cellX = viewX + x / scale;
+        double cellY = viewY + y / scale;
+        scale = Math.max(fitScale(), Math.min(MAX_SCALE, scale * factor));
+        viewX = cellX - x / scale;
+        viewY = cellY - y / scale;
+        updateView();
+    }
+
+    // Remember where the user started dragging with the right or middle mouse button, so that the view can be panned
+    private void startPan(MouseEvent mouseEvent) {
+        if (mouseEvent.getButton() != MouseButton.SECONDARY && mouseEvent.getButton() != MouseButton.MIDDLE)
+            return;
+        panStartX = mouseEvent.getX();
+        panStartY = mouseEvent.getY();
+        panViewX = viewX;
+        panViewY = viewY;
     }
 
+    // Move the view with the mouse while the user drags with the right or middle mouse button
+    private void pan(MouseEvent mouseEvent) {
+        if (!mouseEvent.isSecondaryButtonDown() && !mouseEvent.isMiddleButtonDown())
+            return;
+        viewX = panViewX - (mouseEvent.getX() - panStartX) / scale;
+        viewY = panViewY - (mouseEvent.getY() - panStartY) / scale;
+        updateView();
+    }
+
+    /*
+        Show the part of the grid which is currently in view. The view is first kept within the bounds of
+        the grid, then the viewport of the image view is set to the visible cells and scaled up to the
+        current size of a square, and the grid lines are drawn again to match.
+     */
+    private void updateView() {
+        double visibleWidth = visibleWidth();
+        double visibleHeight = visibleHeight();
+        viewX = Math.max(0, Math.min(WIDTH - visibleWidth, viewX));
+        viewY = Math.max(0, Math.min(HEIGHT - visibleHeight, viewY));
+        view.setViewport(new Rectangle2D(viewX, viewY, visibleWidth, visibleHeight));
+        view.setFitWidth(visibleWidth * scale);
+        view.setFitHeight(visibleHeight * scale);
+        drawGridLines();
+    }
 
+    // Draw the lines of the grid which are in view onto the grid canvas, which sits on top of the image view
+    private void drawGridLines() {
+        GraphicsContext lines = gridCanvas.getGraphicsContext2D();
+        lines.clearRect(0, 0, gridCanvas.getWidth(), gridCanvas.getHeight());
+        // When zoomed far out the lines would cover the cells, so they are left out
+        if (scale < MIN_LINE_SCALE)
+            return;
+        double width = visibleWidth() * scale;
+        double height = visibleHeight() * scale;
+        // Set the stroke colour to black in order to draw the grid lines
+        lines.setStroke(Color.BLACK);
+        // Loop through the columns of the grid which are in view
+        for (int x = (int) Math.ceil(viewX); x < viewX + visibleWidth(); x++) {
+            // Draw a line from the top to the bottom of the view for each column
+            lines.strokeLine((x - viewX) * scale, 0, (x - viewX) * scale, height);
+        }
+        // Loop through the rows of the grid which are in view
+        for (int y = (int) Math.ceil(viewY); y < viewY + visibleHeight(); y++) {
+            // Draw a line from the left to the right of the view for each row
+            lines.strokeLine(0, (y - viewY) * scale, width, (y - viewY) * scale);
+        }
+    }
 
     /*
         A function triggered by the "Set Start" button which sets the start node to
@@ -115,22 +407,21 @@ public class Controller implements Initializable {
     public void setStart() {
         // Set the currentBtn variable to "setStart" so we know this is the last button that was clicked on
         currentBtn = "setStart";
-        // Add a new mouse event to the canvas that triggers when the mouse is pressed in the canvas
-        canvas.setOnMousePressed(mouseEvent -> {
-            // If the last button pressed was Set Start
-            if (currentBtn.equals("setStart")) {
-                // Get the x position of the mouse, divide it by PIXEL_SIZE, and assign it to a temporary variable x
-                int x = (int) mouseEvent.getX() / PIXEL_SIZE;
-                // Get the y position of the mouse, divide it by PIXEL_SIZE, and assign it to a temporary variable y
-                int y = (int) mouseEvent.getY() / PIXEL_SIZE;
+        // Add a new mouse event to the canvas that triggers when the mouse is pressed in the grid
+        viewPane.setOnMousePressed(mouseEvent -> {
+            // If the last button pressed was Set Start, and the left mouse button was pressed (the others are used for panning)
+            if (currentBtn.equals("setStart") && mouseEvent.getButton() == MouseButton.PRIMARY) {
+                // Convert the position of the mouse into the co-ordinates of the cell under it
+                int x = toCellX(mouseEvent.getX());
+                int y = toCellY(mouseEvent.getY());
                 // If the node the user has clicked on is within the bounds of the grid, and it is not a wall
                 if (aStar.isInGrid(x, y) && !aStar.isWall(x,y)) {
                     // Set the start node to the node the user clicked on
                     aStar.setStart(x, y);
-                    // If the path has already been generated
-                    if(aStar.isPathSet())
+                    // If the path has already been generated, or is being generated
+                    if(aStar.isPathSet() || search.isPending())
                         // Regenerate the path based on the new start value
-                        aStar.run();
+                        runSearch();
                 }
                 // Call the render function
                 render();
@@ -145,22 +436,21 @@ public class Controller implements Initializable {
     public void setEnd() {
         // Set the currentBtn variable to "setEnd" so we know this is the last button that was clicked on
         currentBtn = "setEnd";
-        // Add a new mouse event to the canvas that triggers when the mouse is pressed in the canvas
-        canvas.setOnMousePressed(mouseEvent -> {
-            // If the last button pressed was Set End
-            if (currentBtn.equals("setEnd")) {
-                // Get the x position of the mouse, divide it by PIXEL_SIZE, and assign it to a temporary variable x
-                int x = (int) mouseEvent.getX() / PIXEL_SIZE;
-                // Get the y position of the mouse, divide it by PIXEL_SIZE, and assign it to a temporary variable y
-                int y = (int) mouseEvent.getY() / PIXEL_SIZE;
+        // Add a new mouse event to the canvas that triggers when the mouse is pressed in the grid
+        viewPane.setOnMousePressed(mouseEvent -> {
+            // If the last button pressed was Set End, and the left mouse button was pressed (the others are used for panning)
+            if (currentBtn.equals("setEnd") && mouseEvent.getButton() == MouseButton.PRIMARY) {
+                // Convert the position of the mouse into the co-ordinates of the cell under it
+                int x = toCellX(mouseEvent.getX());
+                int y = toCellY(mouseEvent.getY());
                 // If the node the user has clicked on is within the bounds of the grid, and it is not a wall
                 if (aStar.isInGrid(x, y) && !aStar.isWall(x,y)) {
                     // Set the end node to the node the user clicked on
                     aStar.setEnd(x, y);
-                    // If the path has already been generated
-                    if(aStar.isPathSet())
+                    // If the path has already been generated, or is being generated
+                    if(aStar.isPathSet() || search.isPending())
                         // Regenerate the path based on the new end value
-                        aStar.run();
+                        runSearch();
                 }
                 // Call the render function
                 render();
@@ -170,27 +460,81 @@ public class Controller implements Initializable {
 
     /*
         A function triggered by the "Draw Walls" button which allows the user to draw walls
-        by clicking and dragging on the grid
+        by clicking and dragging on the grid. The mouse can move several cells between one drag
+        event and the next, so each event draws a line from the cell the mouse was last over, and
+        the whole line is added as one batch with a single search and render.
      */
     public void drawWalls() {
         // Set the currentBtn variable to "drawWalls" so we know this is the last button that was clicked on
         currentBtn = "drawWalls";
-        // Add a new mouse event to the canvas that triggers when the mouse is dragged in the canvas
-        canvas.setOnMouseDragged(mouseEvent -> {
-            // If the last button pressed was Draw Walls
-            if (currentBtn.equals("drawWalls")) {
-                // Get the x position of the mouse, divide it by PIXEL_SIZE, and assign it to a temporary variable x
-                int x = (int) mouseEvent.getX() / PIXEL_SIZE;
-                // Get the y position of the mouse, divide it by PIXEL_SIZE, and assign it to a temporary variable y
-                int y = (int) mouseEvent.getY() / PIXEL_SIZE;
+        // Add a new mouse event to the canvas that triggers when the mouse is pressed in the grid, which starts a new line
+        viewPane.setOnMousePressed(mouseEvent -> {
+            if (currentBtn.equals("drawWalls") && mouseEvent.getButton() == MouseButton.PRIMARY) {
+                lastDragX = toCellX(mouseEvent.getX());
+                lastDragY = toCellY(mouseEvent.getY());
+                applyWalls(new WallEdit(true).cell(lastDragX, lastDragY));
+            }
+        });
+        // Add a new mouse event to the canvas that triggers when the mouse is dragged in the grid
+        viewPane.setOnMouseDragged(mouseEvent -> {
+            // If the last button pressed was Draw Walls, and the left mouse button is held down (the others are used for panning)
+            if (currentBtn.equals("drawWalls") && mouseEvent.isPrimaryButtonDown()) {
+                // Convert the position of the mouse into the co-ordinates of the cell under it
+                int x = toCellX(mouseEvent.getX());
+                int y = toCellY(mouseEvent.getY());
+                // Join the cell to the one the mouse was last over, so that a fast drag does not skip any cells
+                applyWalls(new WallEdit(true).line(lastDragX, lastDragY, x, y));
+                lastDragX = x;
+                lastDragY = y;
+            }
+        });
+    }
+
+    /*
+        Apply the given batch of walls to the grid, marking the cells which changed to be drawn again. The
+        path is found again (if it has been found before) and the grid rendered once for the whole batch,
+        and not at all if no cell changed.
+     */
+    private void applyWalls(WallEdit edit) {
+        BitSet changed = aStar.setWalls(edit);
+        if (changed.isEmpty())
+            return;
+        // The dirty cells are stored the same way as the indexes of the grid
+        dirty.or(changed);
+        // If the path has already been generated, or is being generated
+        if (aStar.isPathSet() || search.isPending())
+            // Regenerate the path based on the new walls
+            runSearch();
+        // Call the render function
+        render();
+    }
+
+    /*
+        A function triggered by the "Draw Mud" button which allows the user to draw mud by clicking and
+        dragging on the grid. Mud is not a wall, but costs more to move onto, so the path will go around
+        it if the way around is short enough.
+     */
+    public void drawMud() {
+        // Set the currentBtn variable to "drawMud" so we know this is the last button that was clicked on
+        currentBtn = "drawMud";
+        // Add a new mouse event to the canvas that triggers when the mouse is dragged in the grid
+        viewPane.setOnMouseDragged(mouseEvent -> {
+            // If the last button pressed was Draw Mud, and the left mouse button is held down (the others are used for panning)
+            if (currentBtn.equals("drawMud") && mouseEvent.isPrimaryButtonDown()) {
+                // Convert the position of the mouse into the co-ordinates of the cell under it
+                int x = toCellX(mouseEvent.getX());
+                int y = toCellY(mouseEvent.getY());
                 // If the node the user has dragged the mouse over is within the bounds of the grid
                 if (aStar.isInGrid(x, y)) {
-                    // Set the node the user dragged over to being a wall
-                    aStar.setWall(x, y, true);
-                    // If the path has already been generated
-                    if(aStar.isPathSet())
-                        // Regenerate the path based on the new walls
-                        aStar.run();
+                    // Turn the node the user dragged over into mud, replacing a wall if there is one
+                    aStar.setWall(x, y, false);
+                    aStar.setCost(x, y, MUD_COST);
+                    // The node needs to be drawn again as mud
+                    markDirty(x, y);
+                    // If the path has already been generated, or is being generated
+                    if(aStar.isPathSet() || search.isPending())
+                        // Regenerate the path based on the new terrain
+                        runSearch();
                 }
                 // Call the render function
                 render();
@@ -202,22 +546,151 @@ public class Controller implements Initializable {
     public void runAlgorithm() {
         // Set the currentBtn variable to "run" so we know this is the last button that was clicked on
         currentBtn = "run";
-        // Run the algorithm
-        aStar.run();
-        // Call the render function
-        render();
+        // Run the algorithm in the background, the path will be rendered once it has been found
+        runSearch();
     }
 
     // A function triggered by the "Clear" button which clears the grid
     public void clearGrid() {
         // Set the currentBtn variable to "clearGrid" so we know this is the last button that was clicked on
         currentBtn = "clearGrid";
+        // Stop any search which is still running, as its result is for the old grid
+        search.cancel();
         /*
             Create a new AStar object and assign this to 'aStar' in order to wipe the grid and any variables
             such as the start node or the path
          */
-        aStar = new AStar(WIDTH,HEIGHT);
+        aStar = createAStar(new Grid(WIDTH, HEIGHT));
+        // Every cell needs to be drawn again now that the grid is empty
+        clearOverlay();
+        statsLabel.setText("");
+        fullRepaint = true;
         // Call the render function
         render();
     }
+
+    /*
+        A function triggered by the "Load" button which replaces the grid with one loaded from a file
+        chosen by the user. Both map files (see MapFile) and text maps in the MovingAI format can be loaded.
+     */
+    public void loadMap() {
+        // Set the currentBtn variable to "loadMap" so we know this is the last button that was clicked on
+        currentBtn = "loadMap";
+        FileChooser chooser = createFileChooser();
+        chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("MovingAI maps", "*.map"));
+        File file = chooser.showOpenDialog(viewPane.getScene().getWindow());
+        // If the user did not choose a file, there is nothing to load
+        if (file == null)
+            return;
+        Grid grid;
+        Landmarks landmarks = null;
+        try {
+            // Files ending in .map are MovingAI text maps, anything else is expected to be a map file
+            if (file.getName().endsWith(".map")) {
+                grid = MapFile.importMovingAI(file.toPath());
+            } else {
+                MapFile mapFile = MapFile.open(file.toPath());
+                grid = mapFile.getGrid();
+                ByteBuffer section = mapFile.getSection(MapFile.LANDMARKS_SECTION);
+                if (section != null)
+                    landmarks = Landmarks.read(section, grid);
+            }
+        } catch (IOException e) {
+            new Alert(Alert.AlertType.ERROR, "The map could not be loaded: " + e.getMessage()).showAndWait();
+            return;
+        }
+        // Stop any search which is still running, as its result is for the old grid
+        search.cancel();
+        aStar = createAStar(grid);
+        if (landmarks != null)
+            aStar.setLandmarks(landmarks);
+        // The grid may be a different size, so the image and the view need to match its new size
+        WIDTH = grid.getWidth();
+        HEIGHT = grid.getHeight();
+        image = new GridImage(WIDTH, HEIGHT);
+        view.setImage(image.getImage());
+        // Start with the whole grid in view
+        scale = Math.min(MAX_SCALE, fitScale());
+        viewX = 0;
+        viewY = 0;
+        updateView();
+        // Every cell needs to be drawn again for the new grid
+        clearOverlay();
+        statsLabel.setText("");
+        fullRepaint = true;
+        render();
+    }
+
+    /*
+        A function triggered by the "Save" button which saves the grid to a map file chosen by the user, along
+        with its landmark tables. The current tables are reused if they were worked out for the grid as it is
+        now (such as ones loaded with it), otherwise they are worked out again. As that can take several
+        seconds on a large grid, a copy of the grid is saved in the background, and an error is shown when the
+        save fails.
+     */
+    public void saveMap() {
+        // Set the currentBtn variable to "saveMap" so we know this is the last button that was clicked on
+        currentBtn = "saveMap";
+        File file = createFileChooser().showSaveDialog(viewPane.getScene().getWindow());
+        // If the user did not choose a file, there is nothing to save
+        if (file == null)
+            return;
+        Path path = file.toPath();
+        Grid grid = aStar.getGrid().copy();
+        Landmarks landmarks = aStar.getCurrentLandmarks();
+        ForkJoinPool.commonPool().execute(() -> {
+            try {
+                writeMap(path, grid, landmarks);
+            } catch (IOException | RuntimeException e) {
+                Platform.runLater(() -> new Alert(Alert.AlertType.ERROR,
+                        "The map could not be saved: " + e.getMessage()).showAndWait());
+            }
+        });
+    }
+
+    /*
+        Save the given grid to a map file at the given path along with the given landmark tables, working them out
+        if there are none. The tables are left out if they would be too large to write in one piece (see
+        Landmarks.canWrite), as the map can still be searched without them.
+     */
+    private static void writeMap(Path path, Grid grid, Landmarks landmarks) throws IOException {
+        if (landmarks == null && !Landmarks.canWrite(LANDMARK_COUNT, grid.getSize())) {
+            MapFile.save(path, grid);
+            return;
+        }
+        if (landmarks == null)
+            landmarks = Landmarks.compute(grid, LANDMARK_COUNT);
+        MapFile.save(path, grid, Map.of(MapFile.LANDMARKS_SECTION, landmarks.write()));
+    }
+
+    // Create a file chooser for map files
+    private FileChooser createFileChooser() {
+        FileChooser chooser = new FileChooser();
+        chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Map files", "*.grid"));
+        return chooser;
+    }
+
+    /*
+        A function triggered by the "Diagonal moves" check box, which allows or stops the path moving
+        diagonally, and finds the path again if there is one.
+     */
+    public void toggleDiagonal() {
+        aStar.setDiagonal(diagonalCheckBox.isSelected());
+        if (aStar.isPathSet() || search.isPending())
+            runSearch();
+    }
+
+    /*
+        A function triggered by the "Show search" check box, which turns the overlay of the open and closed
+        sets on or off. When it is turned on the search is run again (if there is a path) to collect the cells.
+     */
+    public void toggleOverlay() {
+        if (overlayCheckBox.isSelected()) {
+            if (aStar.isPathSet() || search.isPending())
+                runSearch();
+        } else {
+            clearOverlay();
+            render();
+        }
+    }
 }
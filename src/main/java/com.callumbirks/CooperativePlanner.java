@@ -0,0 +1,502 @@
+package com.callumbirks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+
+/*
+    The CooperativePlanner class moves many agents across the same grid at once without them running
+    into each other, using Windowed Hierarchical Cooperative A* (WHCA*). Time passes in ticks, and on each
+    tick every agent either moves one cell up, down, left or right or waits where it is.
+
+    Each agent plans its path a fixed number of ticks ahead (the window) with a search through space and
+    time, where each node is a cell at a tick. The cells each agent will be in at each tick of its plan are
+    recorded in a reservation table (a hash map from cell and tick to the agent), and the agents which plan
+    after it treat those as walls. Two agents may also not swap cells in a single tick, as they would pass
+    through each other. Agents which plan in the same tick do so in order of priority, so a higher priority
+    agent gets the first choice of cells.
+
+    Once an agent reaches the end of its plan it stays (is parked) in the last cell until it plans again,
+    and that cell counts as reserved by the agent for every tick from then on. A plan may only end in a
+    cell which no other agent has reserved after it, and if an agent can not find such a plan it keeps its
+    old one, so no two agents can ever end up in the same cell.
+
+    Only the window is planned exactly. Beyond it the rest of the path is estimated with h(n), which is the
+    real distance from each cell to the agent's goal ignoring the other agents, read from a flow field (see
+    FlowField) shared by every agent with the same goal. The number of flow fields is limited, as each uses
+    several arrays as large as the grid, and agents whose goal has no field use the Manhattan distance instead.
+
+    Rather than every agent planning again on the same tick, each agent plans again every half window at
+    a different offset, along with any agent whose plan has run out before reaching its goal. This spreads
+    the work evenly across the ticks, so that thousands of agents can be moved at a steady frame rate. The
+    time each tick takes is recorded so that it can be checked against the time available for a frame.
+
+    Moving onto a cell costs its terrain cost, and waiting costs 1 except at the agent's goal, so an agent
+    which has arrived stays there at no cost.
+ */
+public class CooperativePlanner {
+    // The number of ticks each agent plans ahead by default
+    private static final int DEFAULT_WINDOW = 16;
+    // The largest number of flow fields kept by default
+    private static final int DEFAULT_FIELD_LIMIT = 16;
+    // The value used to represent "no cell" or "no node"
+    private static final int NONE = SearchState.NONE;
+    // The value used to represent infinity
+    private static final int INFINITY = SearchState.INFINITY;
+    // The number of nodes there is room for when the first search starts
+    private static final int INITIAL_CAPACITY = 1024;
+    // The grid the agents move on
+    private final Grid grid;
+    // The agents in the order they were added, so that an agent's number is its position in this list
+    private final List<Agent> agents = new ArrayList<>();
+    // The agent which has reserved each cell at each tick, keyed by key(cell, tick)
+    private final LongIntMap reservations = new LongIntMap();
+    // The agent parked in each cell after the end of its plan, keyed by the cell
+    private final LongIntMap parked = new LongIntMap();
+    // The flow field for each goal which has one, keyed by the index of the goal
+    private final LongIntMap fieldIndexes = new LongIntMap();
+    private final List<FlowField> fields = new ArrayList<>();
+    // The largest number of flow fields kept
+    private final int fieldLimit;
+    // The number of ticks each agent plans ahead
+    private final int window;
+    // The number of ticks between each time an agent plans again
+    private final int replanInterval;
+    // The current tick
+    private int tick = 0;
+    // The time the last tick took and the longest time any tick has taken, in nanoseconds
+    private long lastTickNanos = 0;
+    private long maxTickNanos = 0;
+    // The number of agents which planned during the last tick
+    private int lastPlanned = 0;
+
+    /*
+        The nodes of the search through space and time, which are numbered in the order they are created.
+        Each has a cell, a tick, the cost of the best path to it found so far (g(n)), the estimate of the
+        cost of the whole path through it (f(n)), h(n), and the node before it on that path. The arrays start
+        small and grow as a search needs more nodes, up to the node limit.
+     */
+    private int[] nodeCells = new int[0];
+    private int[] nodeTicks = new int[0];
+    private int[] nodeG = new int[0];
+    private int[] nodeF = new int[0];
+    private int[] nodeH = new int[0];
+    private int[] nodePrevious = new int[0];
+    // The most nodes a search can create, which is every cell within 'window' moves at each tick of the window
+    private final int nodeLimit;
+    // The number of nodes created by the current search
+    private int nodeCount = 0;
+    // The node of each cell and tick created by the current search, keyed by key(cell, tick)
+    private final LongIntMap nodeIndexes = new LongIntMap();
+    // The open set of the search, holding node numbers, which is replaced by a larger one whenever the node arrays grow
+    private IndexedHeap openSet = null;
+    // The neighbours of a cell
+    private final int[] neighbours = new int[4];
+
+    /*
+        A single agent: its goal, its priority, and its plan, which is the cell it is in at each tick from
+        planStart onwards.
+     */
+    private static class Agent {
+        final int number;
+        final int goal;
+        final int priority;
+        int[] plan;
+        int planStart;
+
+        private Agent(int number, int start, int goal, int priority, int tick) {
+            this.number = number;
+            this.goal = goal;
+            this.priority = priority;
+            this.plan = new int[] {start};
+            this.planStart = tick;
+        }
+
+        // Getter for the cell the agent is in at the given tick, staying in the last cell of the plan after it ends
+        int cellAt(int tick) {
+            return plan[Math.min(tick - planStart, plan.length - 1)];
+        }
+
+        // Getter for the last tick of the plan, after which the agent is parked
+        int planEnd() {
+            return planStart + plan.length - 1;
+        }
+    }
+
+    // The constructor for the planner, taking the grid to move the agents on, with the default window and number of flow fields
+    public CooperativePlanner(Grid grid) {
+        this(grid, DEFAULT_WINDOW, DEFAULT_FIELD_LIMIT);
+    }
+
+    /*
+        A constructor taking the grid to move the agents on, the number of ticks each agent plans ahead
+        (a longer window finds better paths but takes longer to plan) and the largest number of flow fields
+        to keep. The grid must not have walls added or removed while the planner is in use, except through
+        setWall.
+     */
+    public CooperativePlanner(Grid grid, int window, int fieldLimit) {
+        if (window < 2)
+            throw new IllegalArgumentException("The window must be at least 2 ticks.");
+        if (fieldLimit < 0)
+            throw new IllegalArgumentException("The number of flow fields must not be negative.");
+        this.grid = grid;
+        this.window = window;
+        this.fieldLimit = fieldLimit;
+        replanInterval = window / 2;
+        long reach = 2L * window * (window + 1) + 1;
+        nodeLimit = (int) Math.min((long) (window + 1) * Math.min(reach, grid.getSize()), Integer.MAX_VALUE - 8);
+    }
+
+    /*
+        Add an agent at the given start co-ordinates which heads for the given goal co-ordinates, returning its
+        number. Agents with a lower priority value plan first. The agent first plans on the next tick. An
+        IllegalArgumentException is thrown if the start or goal is outside of the grid or is a wall, or if
+        another agent is at the start or plans to pass through it.
+     */
+    public int addAgent(int startX, int startY, int goalX, int goalY, int priority) {
+        if (!grid.isInGrid(startX, startY) || !grid.isInGrid(goalX, goalY))
+            throw new IllegalArgumentException("The start and goal must be inside the grid.");
+        int start = grid.index(startX, startY);
+        int goal = grid.index(goalX, goalY);
+        if (grid.isWall(start) || grid.isWall(goal))
+            throw new IllegalArgumentException("The start and goal must not be walls.");
+        // The new agent is parked at the start until it first plans, so no other agent may use the cell
+        if (!isFreeUntil(NONE, start, tick, tick + window))
+            throw new IllegalArgumentException("Another agent is at the start or plans to pass through it.");
+        Agent agent = new Agent(agents.size(), start, goal, priority, tick);
+        agents.add(agent);
+        reserve(agent, tick);
+        // Give the goal a flow field if it does not have one yet and there is room for another
+        if (fieldIndexes.get(goal) == LongIntMap.MISSING && fields.size() < fieldLimit) {
+            FlowField field = new FlowField(grid, false);
+            field.setGoals(goal);
+            fieldIndexes.put(goal, fields.size());
+            fields.add(field);
+        }
+        return agent.number;
+    }
+
+    /*
+        Set whether the cell at the given co-ordinates is a wall, which every agent takes into account when
+        it next plans. Adding a wall only cuts short the plans which pass through the cell or park in it, and
+        those agents plan again on the next tick. Removing a wall leaves every plan as it is, as each is still
+        safe, and the agents find any shorter paths through the cell when they next plan on their turn. An
+        agent which is in a cell when it becomes a wall can still move out of it.
+     */
+    public void setWall(int x, int y, boolean wall) {
+        if (!grid.isInGrid(x, y))
+            throw new IllegalArgumentException("The cell (" + x + ", " + y + ") is outside of the grid.");
+        int cell = grid.index(x, y);
+        if (grid.isWall(cell) == wall)
+            return;
+        grid.setWall(cell, wall);
+        for (FlowField field : fields)
+            field.wallChanged(cell);
+        if (wall)
+            cutPlans(cell);
+    }
+
+    /*
+        Cut short the plans of the agents which hold the given cell after the current tick, parking each of them
+        where it is now, so that they plan again on the next tick. An agent parked where it is may be in the way
+        of other agents which planned to move through its cell after it left, so their plans are cut short as
+        well, and so on, until no plan passes through a cell where an agent has been parked.
+     */
+    private void cutPlans(int cell) {
+        BitSet cut = new BitSet(agents.size());
+        List<Agent> queue = new ArrayList<>();
+        addHolders(cell, cut, queue);
+        for (int i = 0; i < queue.size(); i++) {
+            Agent agent = queue.get(i);
+            unreserve(agent, tick + 1);
+            agent.plan = new int[] {agent.cellAt(tick)};
+            agent.planStart = tick;
+            // Find the agents in the way of this one before parking it, as that replaces the agent parked in the cell
+            addHolders(agent.plan[0], cut, queue);
+            reserve(agent, tick);
+        }
+    }
+
+    // Add the agents which hold the given cell at any tick after the current one to the queue, unless already cut
+    private void addHolders(int cell, BitSet cut, List<Agent> queue) {
+        // No plan reaches beyond the end of a window started at the current tick
+        for (int time = tick + 1; time <= tick + window; time++)
+            queueAgent(reservations.get(key(cell, time)), cut, queue);
+        queueAgent(parked.get(cell), cut, queue);
+    }
+
+    // Add the agent with the given number (or MISSING) to the queue of agents to cut, unless it has already been cut
+    private void queueAgent(int agent, BitSet cut, List<Agent> queue) {
+        if (agent == LongIntMap.MISSING || cut.get(agent))
+            return;
+        cut.set(agent);
+        queue.add(agents.get(agent));
+    }
+
+    /*
+        Move every agent on by one tick. The agents which are due to plan again do so first, in order of
+        priority, and then each agent moves to the next cell of its plan.
+     */
+    public void tick() {
+        long startTime = System.nanoTime();
+        // Find the agents which are due to plan, either on their turn or because their plan has run out before the goal
+        List<Agent> due = new ArrayList<>();
+        for (Agent agent : agents) {
+            if ((tick + agent.number) % replanInterval == 0 || (tick >= agent.planEnd() && agent.cellAt(tick) != agent.goal))
+                due.add(agent);
+        }
+        due.sort(Comparator.comparingInt((Agent agent) -> agent.priority).thenComparingInt(agent -> agent.number));
+        for (Agent agent : due)
+            plan(agent);
+        lastPlanned = due.size();
+        // Move every agent, releasing the cell it was in at this tick
+        for (Agent agent : agents) {
+            long key = key(agent.cellAt(tick), tick);
+            if (reservations.get(key) == agent.number)
+                reservations.remove(key);
+        }
+        tick++;
+        lastTickNanos = System.nanoTime() - startTime;
+        maxTickNanos = Math.max(maxTickNanos, lastTickNanos);
+    }
+
+    /*
+        Plan the given agent's path for the next 'window' ticks, replacing the rest of its old plan. This is a
+        search through space and time from the agent's cell at the current tick, which ends at the first node
+        at the end of the window, or at the goal if the agent can stay there until the end of the window. If
+        every path is blocked by other agents, the agent follows the path which gets furthest through the
+        window to a cell it can be parked in, or keeps its old plan if there is none.
+     */
+    private void plan(Agent agent) {
+        int start = agent.cellAt(tick);
+        // An agent which can not reach its goal at all keeps to its old plan, rather than searching the whole window
+        if (calculateH(start, agent.goal) == INFINITY - 1)
+            return;
+        int[] oldPlan = agent.plan;
+        int oldStart = agent.planStart;
+        unreserve(agent, tick + 1);
+        int end = tick + window;
+        nodeIndexes.clear();
+        if (openSet == null)
+            grow(INITIAL_CAPACITY);
+        else
+            openSet.clear();
+        nodeCount = 0;
+        int found = NONE;
+        // The node reached furthest through the window whose cell is free until its end, used if the end can not be reached
+        int furthest = NONE;
+        addNode(start, tick, 0, agent.goal, NONE);
+        while (!openSet.isEmpty()) {
+            int current = openSet.poll();
+            int cell = nodeCells[current];
+            int time = nodeTicks[current];
+            if (time == end || (cell == agent.goal && isFreeUntil(agent.number, cell, time + 1, end))) {
+                found = current;
+                break;
+            }
+            if ((furthest == NONE || time > nodeTicks[furthest]) && isFreeUntil(agent.number, cell, time + 1, end))
+                furthest = current;
+            // The agent can wait where it is, or move to an open neighbour
+            int count = grid.getNeighbours(cell, neighbours);
+            for (int i = -1; i < count; i++) {
+                int neighbour = i < 0 ? cell : neighbours[i];
+                if (!canMove(agent.number, cell, neighbour, time))
+                    continue;
+                int cost = neighbour == cell ? (cell == agent.goal ? 0 : 1) : grid.getCost(neighbour);
+                int tempG = nodeG[current] + cost;
+                int existing = nodeIndexes.get(key(neighbour, time + 1));
+                if (existing == LongIntMap.MISSING) {
+                    if (nodeCount < nodeLimit)
+                        addNode(neighbour, time + 1, tempG, agent.goal, current);
+                } else if (tempG < nodeG[existing]) {
+                    nodeG[existing] = tempG;
+                    nodeF[existing] = (int) Math.min((long) tempG + nodeH[existing], INFINITY - 1);
+                    nodePrevious[existing] = current;
+                    if (openSet.contains(existing))
+                        openSet.decreaseKey(existing);
+                    else
+                        openSet.add(existing);
+                }
+            }
+        }
+        if (found != NONE) {
+            setPlan(agent, found, end);
+        } else if (furthest != NONE) {
+            setPlan(agent, furthest, NONE);
+        } else {
+            // Nothing else is safe, so put the old plan back, which no other agent can have planned through
+            agent.plan = oldPlan;
+            agent.planStart = oldStart;
+            reserve(agent, tick + 1);
+        }
+    }
+
+    // Create a node for the given cell at the given tick, and add it to the open set, returning its number
+    private int addNode(int cell, int time, int g, int goal, int previous) {
+        if (nodeCount == nodeCells.length)
+            grow((int) Math.min(2L * nodeCells.length, Integer.MAX_VALUE - 8));
+        int node = nodeCount++;
+        nodeCells[node] = cell;
+        nodeTicks[node] = time;
+        nodeG[node] = g;
+        nodeH[node] = calculateH(cell, goal);
+        nodeF[node] = (int) Math.min((long) g + nodeH[node], INFINITY - 1);
+        nodePrevious[node] = previous;
+        nodeIndexes.put(key(cell, time), node);
+        openSet.add(node);
+        return node;
+    }
+
+    /*
+        Make room for the given number of nodes, up to the node limit. The open set reads the f(n) and h(n) arrays
+        it was created with, so a new open set is created for the new arrays and the open nodes are moved across.
+     */
+    private void grow(int capacity) {
+        capacity = Math.min(capacity, nodeLimit);
+        nodeCells = Arrays.copyOf(nodeCells, capacity);
+        nodeTicks = Arrays.copyOf(nodeTicks, capacity);
+        nodeG = Arrays.copyOf(nodeG, capacity);
+        nodeF = Arrays.copyOf(nodeF, capacity);
+        nodeH = Arrays.copyOf(nodeH, capacity);
+        nodePrevious = Arrays.copyOf(nodePrevious, capacity);
+        IndexedHeap grown = new IndexedHeap(capacity, nodeF, nodeH);
+        if (openSet != null) {
+            for (int i = 0; i < openSet.size(); i++)
+                grown.add(openSet.get(i));
+        }
+        openSet = grown;
+    }
+
+    /*
+        Store the path ending at the given node as the agent's plan and reserve its cells. If 'waitUntil' is
+        not NONE, the agent waits in the last cell of the path until that tick, which is used when it has
+        reached its goal before the end of the window.
+     */
+    private void setPlan(Agent agent, int last, int waitUntil) {
+        int lastTick = Math.max(nodeTicks[last], waitUntil);
+        int[] plan = new int[lastTick - tick + 1];
+        for (int node = last; node != NONE; node = nodePrevious[node])
+            plan[nodeTicks[node] - tick] = nodeCells[node];
+        Arrays.fill(plan, nodeTicks[last] - tick + 1, plan.length, nodeCells[last]);
+        agent.plan = plan;
+        agent.planStart = tick;
+        reserve(agent, tick + 1);
+    }
+
+    // Reserve the agent's cells from the given tick to the end of its plan, and park it in the last one
+    private void reserve(Agent agent, int from) {
+        for (int time = Math.max(from, agent.planStart); time <= agent.planEnd(); time++)
+            reservations.put(key(agent.cellAt(time), time), agent.number);
+        parked.put(agent.cellAt(agent.planEnd()), agent.number);
+    }
+
+    // Remove the agent's reservations from the given tick onwards, along with its parked cell
+    private void unreserve(Agent agent, int from) {
+        for (int time = Math.max(from, agent.planStart); time <= agent.planEnd(); time++) {
+            long key = key(agent.cellAt(time), time);
+            if (reservations.get(key) == agent.number)
+                reservations.remove(key);
+        }
+        int last = agent.cellAt(agent.planEnd());
+        if (parked.get(last) == agent.number)
+            parked.remove(last);
+    }
+
+    // Get the agent which has reserved the given cell at the given tick, or is parked in it by then, or MISSING
+    private int holder(int cell, int time) {
+        int agent = reservations.get(key(cell, time));
+        if (agent != LongIntMap.MISSING)
+            return agent;
+        agent = parked.get(cell);
+        if (agent != LongIntMap.MISSING && agents.get(agent).planEnd() <= time)
+            return agent;
+        return LongIntMap.MISSING;
+    }
+
+    /*
+        Check whether the given agent can move from one cell at the given tick to another (or the same) cell at
+        the next tick, which is when no other agent holds the cell at the next tick, and the move does not swap
+        cells with another agent.
+     */
+    private boolean canMove(int agent, int from, int to, int time) {
+        int holder = holder(to, time + 1);
+        if (holder != LongIntMap.MISSING && holder != agent)
+            return false;
+        if (from == to)
+            return true;
+        int other = holder(to, time);
+        return other == LongIntMap.MISSING || other == agent || holder(from, time + 1) != other;
+    }
+
+    // Check whether no agent other than the given one holds the given cell at any tick from 'from' to 'to'
+    private boolean isFreeUntil(int agent, int cell, int from, int to) {
+        for (int time = from; time <= to; time++) {
+            int holder = holder(cell, time);
+            if (holder != LongIntMap.MISSING && holder != agent)
+                return false;
+        }
+        return true;
+    }
+
+    /*
+        Calculate h(n) for the given cell: the cost of the cheapest path from it to the goal ignoring the other
+        agents, read from the goal's flow field if it has one, or the Manhattan distance otherwise.
+     */
+    private int calculateH(int cell, int goal) {
+        int field = fieldIndexes.get(goal);
+        if (field != LongIntMap.MISSING) {
+            int distance = fields.get(field).getDistance(cell);
+            return distance == INFINITY ? INFINITY - 1 : distance / WeightedSearch.ORTHOGONAL;
+        }
+        return Math.abs(grid.getX(cell) - grid.getX(goal)) + Math.abs(grid.getY(cell) - grid.getY(goal));
+    }
+
+    // Combine a cell and a tick into a single key
+    private static long key(int cell, int time) {
+        return ((long) time << 32) | cell;
+    }
+
+    // Getter for the number of agents
+    public int getAgentCount() {
+        return agents.size();
+    }
+
+    // Getter for the current position of the agent with the given number
+    public Node getPosition(int agent) {
+        int cell = agents.get(agent).cellAt(tick);
+        return new Node(grid.getX(cell), grid.getY(cell));
+    }
+
+    // Check whether the agent with the given number is at its goal
+    public boolean isAtGoal(int agent) {
+        Agent a = agents.get(agent);
+        return a.cellAt(tick) == a.goal;
+    }
+
+    // Getter for the current tick
+    public int getTick() {
+        return tick;
+    }
+
+    // Getter for the number of ticks each agent plans ahead
+    public int getWindow() {
+        return window;
+    }
+
+    // Getter for the time the last tick took, in nanoseconds
+    public long getLastTickNanos() {
+        return lastTickNanos;
+    }
+
+    // Getter for the longest time any tick has taken, in nanoseconds
+    public long getMaxTickNanos() {
+        return maxTickNanos;
+    }
+
+    // Getter for the number of agents which planned during the last tick
+    public int getLastPlanned() {
+        return lastPlanned;
+    }
+}
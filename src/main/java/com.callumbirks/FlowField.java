@@ -0,0 +1,400 @@
+package com.callumbirks;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/*
+    The FlowField class holds the distance from every cell of the grid to the nearest of one or more goal
+    cells, along with the first move of the cheapest path from each cell towards a goal. These are worked
+    out once with Dijkstra's algorithm, searching outwards from the goals, so when many agents are heading
+    for the same goal the path of each agent is read straight from the field: every step takes O(1) time,
+    without any search.
+
+    Moves cost the same as in WeightedSearch (in units of WeightedSearch.ORTHOGONAL), so terrain costs and
+    diagonal moves are handled. The field is kept up to date as walls and terrain costs change, and only
+    the cells whose distance is affected are worked out again:
+        - when a cell is blocked (made a wall, or made to cost more), every cell whose path to the goal went
+          through it (or, with diagonal moves, past the corner of a new wall) has its distance removed, and is
+          then given the best distance its unaffected neighbours can offer
+        - when a cell is opened (no longer a wall, or made to cost less), it and the cells around it are
+          used to lower the distances of their neighbours
+    In both cases the changed cells are put into the open set, and Dijkstra's algorithm carries on from
+    them until every distance is correct again. This is only done when the field is next read, so many
+    changes can be made at once for the cost of one update. An update which is cancelled part way through
+    leaves the remaining cells in the open set, and the next update carries on from where it stopped.
+ */
+public class FlowField {
+    // The value used to represent infinity for the distances
+    private static final int INFINITY = SearchState.INFINITY;
+    // The value used to represent "no cell", for example the next cell of a goal
+    private static final int NONE = SearchState.NONE;
+    // The grid the field covers
+    private final Grid grid;
+    // The cost of the cheapest path from each cell to a goal, or INFINITY if there is none yet
+    private final int[] distance;
+    // The next cell along the cheapest path from each cell to a goal, or NONE for a goal or unreachable cell
+    private final int[] next;
+    // The cells whose distance has changed and whose neighbours have not been updated from it
+    private final IndexedHeap openSet;
+    // Which cells are goals
+    private final BitSet goals;
+    // The cells whose paths went through a blocked cell, used while they are being found
+    private final BitSet affected;
+    // A stack of cells, used while finding the affected cells
+    private int[] stack = new int[16];
+    // The neighbours of a cell and the cost of the move to each
+    private final int[] neighbours = new int[WeightedSearch.MAX_MOVES];
+    private final int[] moveCosts = new int[WeightedSearch.MAX_MOVES];
+    // Whether diagonal moves are allowed
+    private boolean diagonal;
+    // The cost of the path found by the last call of findPath, or -1 if there was no path
+    private int pathCost = -1;
+
+    // The constructor for the field, taking the grid it covers and whether diagonal moves are allowed, with no goals
+    FlowField(Grid grid, boolean diagonal) {
+        this.grid = grid;
+        this.diagonal = diagonal;
+        distance = new int[grid.getSize()];
+        next = new int[grid.getSize()];
+        openSet = new IndexedHeap(grid.getSize(), distance, distance);
+        goals = new BitSet(grid.getSize());
+        affected = new BitSet(grid.getSize());
+        Arrays.fill(distance, INFINITY);
+        Arrays.fill(next, NONE);
+    }
+
+    /*
+        Setter for the goals, which every path in the field leads to the nearest of. The field is worked out
+        again from scratch the next time it is read. A goal which is a wall can not be reached until it is
+        opened. An IllegalArgumentException is thrown if any goal is outside of the grid.
+     */
+    public void setGoals(List<Node> goals) {
+        int[] cells = new int[goals.size()];
+        for (int i = 0; i < cells.length; i++) {
+            Node goal = goals.get(i);
+            if (!grid.isInGrid(goal.getX(), goal.getY()))
+                throw new IllegalArgumentException("Goal " + i + " is outside of the grid.");
+            cells[i] = grid.index(goal.getX(), goal.getY());
+        }
+        setGoals(cells);
+    }
+
+    // Set the goals to the cells with the given indexes, working the field out again from scratch
+    void setGoals(int... cells) {
+        goals.clear();
+        for (int cell : cells)
+            goals.set(cell);
+        reset();
+    }
+
+    // Check whether the only goal is the cell with the given index
+    boolean hasOnlyGoal(int cell) {
+        return goals.cardinality() == 1 && goals.get(cell);
+    }
+
+    // Setter for whether diagonal moves are allowed, which works the field out again from scratch if it changes
+    void setDiagonal(boolean diagonal) {
+        if (this.diagonal == diagonal)
+            return;
+        this.diagonal = diagonal;
+        reset();
+    }
+
+    // Remove every distance, leaving only the open goals in the open set
+    private void reset() {
+        Arrays.fill(distance, INFINITY);
+        Arrays.fill(next, NONE);
+        openSet.clear();
+        for (int goal = goals.nextSetBit(0); goal >= 0; goal = goals.nextSetBit(goal + 1)) {
+            if (!grid.isWall(goal))
+                lower(goal, 0, NONE);
+        }
+    }
+
+    /*
+        Getter for the cost of the cheapest path from the node at the given co-ordinates to the nearest goal,
+        measured as in SearchStats, or -1 if no goal can be reached.
+     */
+    public double getCost(int x, int y) {
+        int cost = getDistance(grid.index(x, y));
+        return cost == INFINITY ? -1 : cost / (double) WeightedSearch.ORTHOGONAL;
+    }
+
+    /*
+        Getter for the next node along the cheapest path from the node at the given co-ordinates to the nearest
+        goal, or null if the node is a goal or no goal can be reached.
+     */
+    public Node getNextStep(int x, int y) {
+        int step = nextStep(grid.index(x, y));
+        return step == NONE ? null : new Node(grid.getX(step), grid.getY(step));
+    }
+
+    // Getter for the cheapest path from the node at the given co-ordinates to the nearest goal, or null if there is none
+    public GridPath getPath(int x, int y) {
+        int[] cells = findPath(grid.index(x, y));
+        return cells == null ? null : new GridPath(cells, grid.getWidth());
+    }
+
+    // Getter for the cost of the cheapest path from the cell with the given index to the nearest goal, or INFINITY
+    int getDistance(int cell) {
+        update();
+        // A goal which is a wall can not be moved onto, but a path starting on it has already arrived
+        if (goals.get(cell))
+            return 0;
+        if (!grid.isWall(cell))
+            return distance[cell];
+        // A wall can still be moved away from, so its distance is worked out from its neighbours
+        int best = bestMove(cell);
+        return best == NONE ? INFINITY : (int) Math.min((long) distance[best] + moveCost(cell, best), INFINITY - 1);
+    }
+
+    // Getter for the index of the next cell along the cheapest path from the given cell to the nearest goal, or NONE
+    int nextStep(int cell) {
+        update();
+        if (goals.get(cell))
+            return NONE;
+        return grid.isWall(cell) ? bestMove(cell) : next[cell];
+    }
+
+    /*
+        Find the cheapest path from the cell with the given index to the nearest goal, returned as an array
+        holding the index of every cell along it in order, or null if no goal can be reached. Once the field
+        is up to date, this takes time proportional to the length of the path.
+     */
+    int[] findPath(int start) {
+        int cost = getDistance(start);
+        if (cost == INFINITY) {
+            pathCost = -1;
+            return null;
+        }
+        pathCost = cost;
+        int length = 1;
+        for (int cell = nextStep(start); cell != NONE; cell = next[cell])
+            length++;
+        int[] path = new int[length];
+        path[0] = start;
+        int cell = nextStep(start);
+        for (int i = 1; i < length; i++) {
+            path[i] = cell;
+            cell = next[cell];
+        }
+        return path;
+    }
+
+    // Getter for the cost of the path found by the last call of findPath, in the units of WeightedSearch, or -1 if there was no path
+    int getPathCost() {
+        return pathCost;
+    }
+
+    // Getter for the open set, used to read the statistics of the updates
+    IndexedHeap getOpenSet() {
+        return openSet;
+    }
+
+    /*
+        Fill in the cells of the field, setting the bit of each cell waiting in the open set in 'open' and of
+        every other cell with a distance in 'closed'.
+     */
+    void getSearchedCells(BitSet open, BitSet closed) {
+        for (int cell = 0; cell < distance.length; cell++) {
+            if (openSet.contains(cell))
+                open.set(cell);
+            else if (distance[cell] != INFINITY)
+                closed.set(cell);
+        }
+    }
+
+    // Update the field after the cell with the given index has been made into a wall or has stopped being one
+    void wallChanged(int cell) {
+        if (grid.isWall(cell)) {
+            // The cell itself can no longer be moved onto, along with diagonal moves past its corners
+            removeAffected(cell, true);
+        } else {
+            if (goals.get(cell))
+                lower(cell, 0, NONE);
+            else
+                offerBestMove(cell);
+            // A diagonal move between two of the cells around it may now be possible
+            if (diagonal)
+                reopenAround(cell);
+        }
+    }
+
+    // Update the field after the terrain cost of the cell with the given index has changed from the given cost
+    void costChanged(int cell, int oldCost) {
+        if (grid.isWall(cell))
+            return;
+        if (grid.getCost(cell) > oldCost) {
+            // Only the cells which move onto this cell pay its cost, its own distance is unchanged
+            removeAffected(cell, false);
+        } else if (distance[cell] != INFINITY) {
+            // The neighbours of this cell may now have a cheaper path through it
+            push(cell);
+        }
+    }
+
+    /*
+        Remove the distance of every cell whose path to a goal moves onto the given cell, which has become
+        a wall (if 'wall' is true) or has become more costly to move onto. When it has become a wall, the cell
+        itself is removed too, along with any cell whose path starts with a diagonal move past its corner.
+        Each removed cell is then given the best distance offered by the neighbours which were not removed.
+     */
+    private void removeAffected(int cell, boolean wall) {
+        int top = 0;
+        int count = countAround(cell);
+        if (wall) {
+            stack = push(stack, top++, cell);
+            if (diagonal) {
+                for (int i = 0; i < count; i++) {
+                    int around = neighbours[i];
+                    if (next[around] != NONE && isDiagonal(around, next[around]) && passesCorner(around, next[around], cell))
+                        stack = push(stack, top++, around);
+                }
+            }
+        } else {
+            for (int i = 0; i < count; i++) {
+                if (next[neighbours[i]] == cell)
+                    stack = push(stack, top++, neighbours[i]);
+            }
+        }
+        // Follow the paths backwards to find every cell whose path went through one of these cells
+        for (int i = 0; i < top; i++)
+            affected.set(stack[i]);
+        for (int position = 0; position < top; position++) {
+            int current = stack[position];
+            int around = countAround(current);
+            for (int i = 0; i < around; i++) {
+                int neighbour = neighbours[i];
+                if (next[neighbour] == current && !affected.get(neighbour)) {
+                    affected.set(neighbour);
+                    stack = push(stack, top++, neighbour);
+                }
+            }
+        }
+        // Remove the distances of the affected cells, unless they are goals which are still open
+        for (int i = 0; i < top; i++) {
+            int affectedCell = stack[i];
+            if (goals.get(affectedCell) && !grid.isWall(affectedCell))
+                continue;
+            distance[affectedCell] = INFINITY;
+            next[affectedCell] = NONE;
+            openSet.remove(affectedCell);
+        }
+        // Give each affected cell the best distance its neighbours can offer, which carries on once it is tested
+        for (int i = 0; i < top; i++) {
+            int affectedCell = stack[i];
+            affected.clear(affectedCell);
+            if (!grid.isWall(affectedCell) && distance[affectedCell] == INFINITY)
+                offerBestMove(affectedCell);
+        }
+    }
+
+    // Lower the distance of the given open cell to the best offered by the moves from it, if that is lower
+    private void offerBestMove(int cell) {
+        int best = bestMove(cell);
+        if (best != NONE)
+            lower(cell, distance[best] + moveCost(cell, best), best);
+    }
+
+    // Put every open cell around the given cell which has a distance into the open set, so that its neighbours are updated from it
+    private void reopenAround(int cell) {
+        int count = countAround(cell);
+        for (int i = 0; i < count; i++) {
+            if (!grid.isWall(neighbours[i]) && distance[neighbours[i]] != INFINITY)
+                push(neighbours[i]);
+        }
+    }
+
+    /*
+        Bring every distance up to date, by testing the cells in the open set in order of distance. Each
+        cell tested lowers the distance of each neighbour which can move onto it, if moving onto it gives
+        the neighbour a cheaper path.
+     */
+    private void update() {
+        while (!openSet.isEmpty()) {
+            // Stop if this search has been cancelled, the open set holds the cells still to be tested
+            SearchState.checkCancelled();
+            int current = openSet.poll();
+            int count = WeightedSearch.getMoves(grid, current, diagonal, neighbours, moveCosts);
+            for (int i = 0; i < count; i++) {
+                int neighbour = neighbours[i];
+                // Moving the other way costs the terrain cost of this cell rather than of the neighbour
+                long tempDistance = (long) distance[current] + moveCost(neighbour, current);
+                if (tempDistance < distance[neighbour])
+                    lower(neighbour, (int) Math.min(tempDistance, INFINITY - 1), current);
+            }
+        }
+    }
+
+    // Set the distance and next cell of the given cell, and put it into the open set so that its neighbours are updated
+    private void lower(int cell, int value, int nextCell) {
+        distance[cell] = value;
+        next[cell] = nextCell;
+        push(cell);
+    }
+
+    // Put the given cell into the open set, or move it to its new position if it is already there
+    private void push(int cell) {
+        if (openSet.contains(cell))
+            openSet.update(cell);
+        else
+            openSet.add(cell);
+    }
+
+    // Find the neighbour which gives the given cell the cheapest path, or NONE if no neighbour has a distance
+    private int bestMove(int cell) {
+        int count = WeightedSearch.getMoves(grid, cell, diagonal, neighbours, moveCosts);
+        int best = NONE;
+        long bestDistance = INFINITY;
+        for (int i = 0; i < count; i++) {
+            if (distance[neighbours[i]] == INFINITY)
+                continue;
+            long tempDistance = (long) distance[neighbours[i]] + moveCosts[i];
+            if (tempDistance < bestDistance) {
+                bestDistance = tempDistance;
+                best = neighbours[i];
+            }
+        }
+        return best;
+    }
+
+    // Calculate the cost of moving from one cell onto a neighbouring cell
+    private int moveCost(int from, int to) {
+        return (isDiagonal(from, to) ? WeightedSearch.DIAGONAL : WeightedSearch.ORTHOGONAL) * grid.getCost(to);
+    }
+
+    // Check whether the move between two neighbouring cells is diagonal, which is when both co-ordinates change
+    private boolean isDiagonal(int from, int to) {
+        return grid.getX(from) != grid.getX(to) && grid.getY(from) != grid.getY(to);
+    }
+
+    // Check whether the diagonal move between two cells passes the corner of the given cell
+    private boolean passesCorner(int from, int to, int cell) {
+        int x = grid.getX(cell);
+        int y = grid.getY(cell);
+        return (x == grid.getX(from) && y == grid.getY(to)) || (x == grid.getX(to) && y == grid.getY(from));
+    }
+
+    // Write the index of every cell around the given cell (up to 8, walls included) into 'neighbours', returning the count
+    private int countAround(int cell) {
+        int x = grid.getX(cell);
+        int y = grid.getY(cell);
+        int count = 0;
+        for (int dy = -1; dy <= 1; dy++) {
+            for (int dx = -1; dx <= 1; dx++) {
+                if ((dx != 0 || dy != 0) && grid.isInGrid(x + dx, y + dy))
+                    neighbours[count++] = grid.index(x + dx, y + dy);
+            }
+        }
+        return count;
+    }
+
+    // Put the given value at the given position of the stack, growing the stack if needed, and return the stack
+    private static int[] push(int[] stack, int position, int value) {
+        if (position == stack.length)
+            stack = Arrays.copyOf(stack, stack.length * 2);
+        stack[position] = value;
+        return stack;
+    }
+}
@@ -0,0 +1,303 @@
+package com.callumbirks;
+
+import java.nio.LongBuffer;
+import java.util.BitSet;
+
+/*
+    The Grid class stores the layout of the map which the algorithm searches over.
+    Rather than creating an object for every cell, each cell is identified by a single
+    integer (its index), calculated as y * width + x, and the walls are stored as one
+    bit per cell, packed 64 to a long. The neighbours of a cell are calculated from its index
+    when they are needed instead of being stored.
+
+    The packed walls are held in a LongBuffer, which is normally backed by an array, but can also
+    be backed by a map file mapped straight into memory (see MapFile) so that a huge grid can be
+    loaded without reading it all onto the heap. A mapped grid is read-only, so the first time one
+    of its walls is changed the walls are copied into an array.
+
+    Each open cell also has a terrain cost between 1 and MAX_COST, which is what it costs to move onto
+    that cell (so mud can cost more to cross than a road). The costs are stored as one byte per cell,
+    holding the cost minus 1, and the array is only created the first time a cell is given a cost other
+    than 1, so a grid where every move costs the same uses no extra memory for them.
+ */
+public class Grid {
+    // The largest terrain cost a cell can have
+    public static final int MAX_COST = 255;
+    // The width of the grid (number of columns)
+    private final int width;
+    // The height of the grid (number of rows)
+    private final int height;
+    // The total number of cells in the grid
+    private final int size;
+    // The number of longs needed to hold one bit for each cell
+    private final int wordCount;
+    // One bit for each cell, cell i is bit (i % 64) of long (i / 64), and a set bit means that cell is a wall
+    private LongBuffer walls;
+    // The terrain cost of each cell minus 1, or null if every cell has a cost of 1
+    private byte[] costs = null;
+    // The number of cells whose terrain cost is not 1, so that a uniform grid can be detected in O(1) time
+    private int weightedCells = 0;
+    // The number of changes made to the walls and terrain costs of the grid, see getVersion
+    private long version = 0;
+
+    /*
+        The constructor for the grid, taking the width and height of the desired grid as parameters.
+        Every cell starts off as not being a wall.
+     */
+    public Grid(int width, int height) {
+        this(width, height, null);
+    }
+
+    /*
+        The constructor for a grid whose walls are held in the given buffer, which must hold exactly the
+        number of longs needed for a grid of this size. The buffer is used directly rather than copied.
+        If the buffer is null, a new one is created in which every cell is not a wall.
+     */
+    Grid(int width, int height, LongBuffer walls) {
+        // A grid must have at least one cell in each direction
+        if (width <= 0 || height <= 0)
+            throw new IllegalArgumentException("Grid dimensions must be positive.");
+        // Every cell must be addressable by an int index, so the total number of cells must fit in an int
+        if ((long) width * height > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Grid is too large to be indexed.");
+        this.width = width;
+        this.height = height;
+        this.size = width * height;
+        this.wordCount = wordCount(size);
+        if (walls == null) {
+            this.walls = LongBuffer.allocate(wordCount);
+        } else {
+            if (walls.remaining() != wordCount)
+                throw new IllegalArgumentException("Wall buffer does not match the size of the grid.");
+            this.walls = walls.slice();
+        }
+    }
+
+    // Calculate the number of longs needed to hold one bit for each of the given number of cells
+    static int wordCount(int size) {
+        return (int) (((long) size + 63) / 64);
+    }
+
+    /*
+        Create a copy of this grid, which is not affected by any later changes to this grid.
+        As long as nothing changes the walls of the copy, it can safely be searched by many
+        threads at once.
+     */
+    public Grid copy() {
+        Grid copy = new Grid(width, height);
+        copy.walls.put(walls.duplicate().clear());
+        copy.walls.clear();
+        if (costs != null)
+            copy.setCosts(costs.clone());
+        return copy;
+    }
+
+    /*
+        Find the cells which differ between this grid and the given grid, which must be the same size.
+        The returned BitSet has a set bit for the index of each cell which is a wall in only one of the grids,
+        or which has a different terrain cost in each grid.
+     */
+    public BitSet getDifferences(Grid other) {
+        if (other.width != width || other.height != height)
+            throw new IllegalArgumentException("Grids must be the same size to be compared.");
+        long[] differences = new long[wordCount];
+        for (int i = 0; i < wordCount; i++)
+            differences[i] = walls.get(i) ^ other.walls.get(i);
+        BitSet cells = BitSet.valueOf(differences);
+        // The costs only need to be compared one by one if either grid has any
+        if (costs != null || other.costs != null) {
+            for (int i = 0; i < size; i++) {
+                if (getCost(i) != other.getCost(i))
+                    cells.set(i);
+            }
+        }
+        return cells;
+    }
+
+    // Getter for the width of the grid
+    public int getWidth() {
+        return width;
+    }
+
+    // Getter for the height of the grid
+    public int getHeight() {
+        return height;
+    }
+
+    // Getter for the total number of cells in the grid
+    public int getSize() {
+        return size;
+    }
+
+    // Calculate the index of the cell at the given x and y co-ordinates
+    public int index(int x, int y) {
+        return y * width + x;
+    }
+
+    // Calculate the x co-ordinate of the cell with the given index
+    public int getX(int index) {
+        return index % width;
+    }
+
+    // Calculate the y co-ordinate of the cell with the given index
+    public int getY(int index) {
+        return index / width;
+    }
+
+    // Check whether the given x and y co-ordinates are within the bounds of the grid
+    public boolean isInGrid(int x, int y) {
+        return x < width && y < height && x >= 0 && y >= 0;
+    }
+
+    // Getter for whether the cell with the given index is a wall
+    public boolean isWall(int index) {
+        // Java only uses the lowest 6 bits of the shift distance, so (1L << index) selects bit (index % 64)
+        return (walls.get(index >>> 6) & (1L << index)) != 0;
+    }
+
+    // Setter for whether the cell with the given index is a wall
+    public void setWall(int index, boolean wall) {
+        makeWritable();
+        long word = walls.get(index >>> 6);
+        long changed = wall ? word | (1L << index) : word & ~(1L << index);
+        if (changed != word) {
+            walls.put(index >>> 6, changed);
+            version++;
+        }
+    }
+
+    /*
+        Set whether every one of the given cells is a wall, as a single change to the grid: the version only goes
+        up by 1, however many cells change. The walls are changed 64 cells at a time. Returns the cells which
+        were actually changed, which does not include those which were already as wanted.
+     */
+    public BitSet setWalls(BitSet cells, boolean wall) {
+        if (cells.length() > size)
+            throw new IllegalArgumentException("Cell " + (cells.length() - 1) + " is outside of the grid.");
+        long[] words = cells.toLongArray();
+        long[] changed = new long[words.length];
+        boolean any = false;
+        for (int i = 0; i < words.length; i++) {
+            long word = walls.get(i);
+            changed[i] = words[i] & (wall ? ~word : word);
+            any |= changed[i] != 0;
+        }
+        if (!any)
+            return new BitSet();
+        makeWritable();
+        for (int i = 0; i < words.length; i++) {
+            if (changed[i] != 0)
+                walls.put(i, walls.get(i) ^ changed[i]);
+        }
+        version++;
+        return BitSet.valueOf(changed);
+    }
+
+    // A grid mapped from a file can not be written to, so take a copy of its walls the first time one changes
+    private void makeWritable() {
+        if (walls.isReadOnly()) {
+            LongBuffer copy = LongBuffer.allocate(wordCount);
+            copy.put(walls.duplicate().clear());
+            walls = copy.clear();
+        }
+    }
+
+    // Getter for the terrain cost of moving onto the cell with the given index
+    public int getCost(int index) {
+        return costs == null ? 1 : (costs[index] & 0xFF) + 1;
+    }
+
+    /*
+        Setter for the terrain cost of moving onto the cell with the given index, which must be between
+        1 and MAX_COST. The array of costs is created the first time a cell is given a cost other than 1.
+     */
+    public void setCost(int index, int cost) {
+        if (cost < 1 || cost > MAX_COST)
+            throw new IllegalArgumentException("Terrain cost must be between 1 and " + MAX_COST + ".");
+        if (costs == null) {
+            // Every cell already has a cost of 1, so there is nothing to store
+            if (cost == 1)
+                return;
+            costs = new byte[size];
+        }
+        int old = (costs[index] & 0xFF) + 1;
+        if (old == cost)
+            return;
+        if (old == 1)
+            weightedCells++;
+        else if (cost == 1)
+            weightedCells--;
+        costs[index] = (byte) (cost - 1);
+        version++;
+    }
+
+    /*
+        Getter for the version of the grid, which goes up by exactly 1 every time a wall or terrain cost is
+        changed, or every time a batch of walls is changed with setWalls. Anything worked out from the grid can
+        be checked against this to see if it is out of date.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /*
+        Check whether every cell has a terrain cost of 1, in which case every move costs the same and the
+        searches which rely on that can be used.
+     */
+    public boolean isUniform() {
+        return weightedCells == 0;
+    }
+
+    // Getter for the terrain costs of the cells minus 1, one byte per cell, or null if every cell has a cost of 1
+    byte[] getCosts() {
+        return costs;
+    }
+
+    /*
+        Setter for the terrain costs of the cells minus 1, one byte per cell, which are used directly rather
+        than copied. Null gives every cell a cost of 1.
+     */
+    void setCosts(byte[] costs) {
+        if (costs != null && costs.length != size)
+            throw new IllegalArgumentException("Cost array does not match the size of the grid.");
+        this.costs = costs;
+        weightedCells = 0;
+        version++;
+        if (costs != null) {
+            for (byte cost : costs) {
+                if (cost != 0)
+                    weightedCells++;
+            }
+        }
+    }
+
+    // Getter for the number of longs the walls are packed into
+    int getWordCount() {
+        return wordCount;
+    }
+
+    // Getter for the long holding the walls of cells (64 * i) to (64 * i + 63)
+    long getWord(int i) {
+        return walls.get(i);
+    }
+
+    /*
+        Calculate the neighbours of the cell with the given index which are not walls.
+        The neighbours are written into the given array (which must have room for 4 values)
+        in the order up, right, down, left, and the number of neighbours written is returned.
+        Neighbours that are outside the bounds of the grid are ignored.
+     */
+    public int getNeighbours(int index, int[] neighbours) {
+        int count = 0;
+        int x = index % width;
+        // If this cell is not at the very top of the grid, check the cell above it
+        if (index >= width && !isWall(index - width)) neighbours[count++] = index - width;
+        // If this cell is not at the very right of the grid, check the cell to the right of it
+        if (x < width - 1 && !isWall(index + 1)) neighbours[count++] = index + 1;
+        // If this cell is not at the very bottom of the grid, check the cell below it
+        if (index < size - width && !isWall(index + width)) neighbours[count++] = index + width;
+        // If this cell is not at the very left of the grid, check the cell to the left of it
+        if (x > 0 && !isWall(index - 1)) neighbours[count++] = index - 1;
+        return count;
+    }
+}
@@ -0,0 +1,81 @@
+package com.callumbirks;
+
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+
+import java.nio.IntBuffer;
+
+/*
+    The GridImage class holds an image of the grid with exactly one pixel for each cell, which is
+    scaled up when it is displayed. The colour of each cell is stored in an int array (in the ARGB
+    format) which is written straight into a WritableImage, rather than drawing a rectangle for every
+    cell, so grids with millions of cells can still be redrawn quickly.
+
+    Only the area of the image which has changed is written when the image is updated. The smallest
+    rectangle containing every changed cell is remembered, and only the rows and columns inside it are
+    copied into the image.
+ */
+class GridImage {
+    // The width and height of the image, which are the number of columns and rows of the grid
+    private final int width;
+    private final int height;
+    // The colour of each pixel (cell) as (y * width + x), in the ARGB format
+    private final int[] pixels;
+    // A buffer wrapping the array of pixels, which is what the image is written from
+    private final IntBuffer buffer;
+    // The image displayed in the window
+    private final WritableImage image;
+    // The rectangle containing every pixel changed since the image was last updated, empty if minX > maxX
+    private int minX;
+    private int minY;
+    private int maxX;
+    private int maxY;
+
+    // The constructor for the image, taking the number of columns and rows of the grid
+    GridImage(int width, int height) {
+        this.width = width;
+        this.height = height;
+        pixels = new int[width * height];
+        buffer = IntBuffer.wrap(pixels);
+        image = new WritableImage(width, height);
+        clearChanges();
+    }
+
+    // Getter for the image, which shows the colours as they were when the image was last updated
+    WritableImage getImage() {
+        return image;
+    }
+
+    // Set the colour of the pixel for the cell at the given co-ordinates, in the ARGB format
+    void setColour(int x, int y, int colour) {
+        int index = y * width + x;
+        // If the pixel already has this colour, there is nothing to change
+        if (pixels[index] == colour)
+            return;
+        pixels[index] = colour;
+        // Grow the changed rectangle to include this pixel
+        minX = Math.min(minX, x);
+        minY = Math.min(minY, y);
+        maxX = Math.max(maxX, x);
+        maxY = Math.max(maxY, y);
+    }
+
+    // Write the pixels which have changed since the last update into the image
+    void update() {
+        if (minX > maxX)
+            return;
+        // The buffer's position marks the first pixel to be written, and each row of the image is 'width' pixels apart
+        buffer.position(minY * width + minX);
+        image.getPixelWriter().setPixels(minX, minY, maxX - minX + 1, maxY - minY + 1,
+                PixelFormat.getIntArgbPreInstance(), buffer, width);
+        clearChanges();
+    }
+
+    // Forget the changed rectangle, so that it is empty
+    private void clearChanges() {
+        minX = width;
+        minY = height;
+        maxX = -1;
+        maxY = -1;
+    }
+}
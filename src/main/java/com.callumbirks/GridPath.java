@@ -0,0 +1,125 @@
+package com.callumbirks;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/*
+    The GridPath class represents a path found by a search, in order from the start node to the end node.
+    Rather than holding a Node object for every cell along it, a path only holds the index of each cell
+    (y * width + x) in an int array, along with the width of the grid so that the co-ordinates of each cell
+    can be worked out when they are needed. This keeps a long path small and quick to create, as the search
+    already produces this array. Node objects are only created if the path is iterated over as nodes.
+
+    A path can never be changed once it has been created.
+ */
+public final class GridPath implements Iterable<Node> {
+    // The index of every cell along the path, in order from the start node to the end node
+    private final int[] cells;
+    // The width of the grid the path was found on, used to turn an index into co-ordinates
+    private final int width;
+
+    /*
+        The constructor for the path, taking the index of every cell along it and the width of the grid.
+        The array is kept rather than copied, so it must not be changed afterwards.
+     */
+    GridPath(int[] cells, int width) {
+        if (cells.length == 0)
+            throw new IllegalArgumentException("A path must contain at least one cell.");
+        this.cells = cells;
+        this.width = width;
+    }
+
+    // Getter for the number of cells on the path, including the start and end nodes
+    public int length() {
+        return cells.length;
+    }
+
+    // Getter for the index of the cell at the given position along the path
+    public int getCell(int i) {
+        return cells[i];
+    }
+
+    // Getter for the x co-ordinate of the cell at the given position along the path
+    public int getX(int i) {
+        return cells[i] % width;
+    }
+
+    // Getter for the y co-ordinate of the cell at the given position along the path
+    public int getY(int i) {
+        return cells[i] / width;
+    }
+
+    // Return a copy of the index of every cell along the path
+    public int[] toArray() {
+        return cells.clone();
+    }
+
+    /*
+        Find the corners of the path: the start node, every cell where the path changes direction, and the
+        end node. Moving in a straight line between each corner and the next gives back the whole path, so
+        this is a much shorter way of describing a path which has long straight sections. The index of each
+        corner is returned in order.
+     */
+    public int[] getCorners() {
+        int[] corners = new int[cells.length];
+        int count = 0;
+        corners[count++] = cells[0];
+        for (int i = 1; i < cells.length - 1; i++) {
+            // The path turns at this cell if the move onto it is different to the move off it
+            if (cells[i] - cells[i - 1] != cells[i + 1] - cells[i])
+                corners[count++] = cells[i];
+        }
+        if (cells.length > 1)
+            corners[count++] = cells[cells.length - 1];
+        return Arrays.copyOf(corners, count);
+    }
+
+    // Iterate over the index of each cell along the path, without creating any objects for the cells
+    public PrimitiveIterator.OfInt cellIterator() {
+        return new PrimitiveIterator.OfInt() {
+            private int i = 0;
+
+            @Override
+            public boolean hasNext() {
+                return i < cells.length;
+            }
+
+            @Override
+            public int nextInt() {
+                if (i >= cells.length)
+                    throw new NoSuchElementException();
+                return cells[i++];
+            }
+        };
+    }
+
+    // Iterate over the cells along the path as Node objects, each of which is only created when it is reached
+    @Override
+    public Iterator<Node> iterator() {
+        return new Iterator<>() {
+            private int i = 0;
+
+            @Override
+            public boolean hasNext() {
+                return i < cells.length;
+            }
+
+            @Override
+            public Node next() {
+                if (i >= cells.length)
+                    throw new NoSuchElementException();
+                Node node = new Node(getX(i), getY(i));
+                i++;
+                return node;
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Path of %d cells from (%d, %d) to (%d, %d)",
+                cells.length, getX(0), getY(0), getX(cells.length - 1), getY(cells.length - 1));
+    }
+}
@@ -0,0 +1,416 @@
+package com.callumbirks;
+
+import java.util.Arrays;
+
+/*
+    The HierarchicalSearch class contains Hierarchical Pathfinding A* (HPA*). The grid is split into
+    square clusters, and for each border between two clusters the open cells which can be used to
+    cross the border are found (the "entrances"). The distance between every pair of entrances inside
+    each cluster is calculated ahead of time. Together these make a much smaller "abstract" graph of
+    the grid, which is searched with A* instead of the grid itself. Only the clusters along the
+    chosen route are then searched cell by cell to turn it into a full path.
+
+    The path found is not always the shortest possible, as crossing each border is only allowed at
+    the entrances, but it is usually very close and is found far more quickly on large grids.
+    When a wall changes, only the cluster containing it (and the neighbouring cluster, if the wall
+    is on a border) is calculated again, the next time it is needed.
+ */
+class HierarchicalSearch {
+    // The width and height of each cluster in cells
+    static final int CLUSTER_SIZE = 16;
+    // Open stretches of a border at least this wide get an entrance at each end rather than one in the middle
+    private static final int MAX_ENTRANCE_WIDTH = 6;
+    // The value used to represent infinity for distances
+    private static final int INFINITY = SearchState.INFINITY;
+    // The value used to represent "no cell"
+    private static final int NONE = SearchState.NONE;
+    // The grid being searched
+    private final Grid grid;
+    // The values for each cell and the open set, which are shared with the AStar class
+    private final SearchState state;
+    // The number of clusters across and down the grid
+    private final int clustersX;
+    private final int clustersY;
+    // For each cluster, the indexes of its entrance cells in ascending order
+    private final int[][] entrances;
+    // For each cluster, the cells on the other side of the border from each of its entrances
+    private final int[][][] partners;
+    // For each cluster, the distance between each pair of its entrances (k * k values for k entrances)
+    private final int[][] distances;
+    // For each cluster, whether its entrances and distances need to be calculated again
+    private final boolean[] dirty;
+    // The distance from the cell a breadth-first search started from, for each cell of the cluster searched
+    private final int[] searchDistance;
+    // The previous cell along the path for each cell of the cluster searched
+    private final int[] searchPrevious;
+    // The queue used by the breadth-first search
+    private final int[] searchQueue;
+    // An array to hold the neighbours of a cell
+    private final int[] neighbours = new int[4];
+    // The start and end nodes of the current search, and the clusters they are in
+    private int start;
+    private int end;
+    private int startCluster;
+    private int endCluster;
+    // The distance from the start node to each entrance of its cluster
+    private int[] startDistances;
+    // The distance from each entrance of the end node's cluster to the end node
+    private int[] endDistances;
+    // The distance from the start node to the end node without leaving their cluster, if they share one
+    private int directDistance;
+    // The co-ordinates of the end node, used when calculating h(n)
+    private int endX;
+    private int endY;
+
+    // The constructor for the search, taking the grid to search and the search state to use
+    HierarchicalSearch(Grid grid, SearchState state) {
+        this.grid = grid;
+        this.state = state;
+        clustersX = (grid.getWidth() + CLUSTER_SIZE - 1) / CLUSTER_SIZE;
+        clustersY = (grid.getHeight() + CLUSTER_SIZE - 1) / CLUSTER_SIZE;
+        entrances = new int[clustersX * clustersY][];
+        partners = new int[clustersX * clustersY][][];
+        distances = new int[clustersX * clustersY][];
+        dirty = new boolean[clustersX * clustersY];
+        // Every cluster needs to be calculated before it is first used
+        Arrays.fill(dirty, true);
+        searchDistance = new int[CLUSTER_SIZE * CLUSTER_SIZE];
+        searchPrevious = new int[CLUSTER_SIZE * CLUSTER_SIZE];
+        searchQueue = new int[CLUSTER_SIZE * CLUSTER_SIZE];
+    }
+
+    /*
+        Mark the clusters affected by the wall at the given cell being changed. The cluster containing
+        the cell always needs to be calculated again, and if the cell is on the edge of its cluster the
+        entrances on that border have changed, so the cluster on the other side does as well.
+     */
+    void wallChanged(int cell) {
+        int x = grid.getX(cell);
+        int y = grid.getY(cell);
+        int cx = x / CLUSTER_SIZE;
+        int cy = y / CLUSTER_SIZE;
+        dirty[cy * clustersX + cx] = true;
+        if (x % CLUSTER_SIZE == 0 && cx > 0) dirty[cy * clustersX + cx - 1] = true;
+        if (x % CLUSTER_SIZE == CLUSTER_SIZE - 1 && cx < clustersX - 1) dirty[cy * clustersX + cx + 1] = true;
+        if (y % CLUSTER_SIZE == 0 && cy > 0) dirty[(cy - 1) * clustersX + cx] = true;
+        if (y % CLUSTER_SIZE == CLUSTER_SIZE - 1 && cy < clustersY - 1) dirty[(cy + 1) * clustersX + cx] = true;
+    }
+
+    /*
+        Find a path from the start node to the end node. The path is returned as an array holding the
+        index of every cell along it in order, including the start and end nodes, or null if no path
+        was found.
+     */
+    int[] findPath(int start, int end) {
+        // A path can never move onto a wall, so there is no path to an end node which is a wall
+        if (grid.isWall(end))
+            return null;
+        if (start == end)
+            return new int[] {start};
+        this.start = start;
+        this.end = end;
+        endX = grid.getX(end);
+        endY = grid.getY(end);
+        startCluster = clusterOf(start);
+        endCluster = clusterOf(end);
+        ensureCluster(startCluster);
+        ensureCluster(endCluster);
+
+        // Connect the start node to the entrances of its cluster
+        breadthFirstSearch(startCluster, start);
+        startDistances = distancesTo(startCluster, entrances[startCluster]);
+        directDistance = startCluster == endCluster ? distanceTo(startCluster, end) : INFINITY;
+        // Connect the entrances of the end node's cluster to the end node
+        breadthFirstSearch(endCluster, end);
+        endDistances = distancesTo(endCluster, entrances[endCluster]);
+
+        if (!searchAbstractGraph())
+            return null;
+        return refinePath();
+    }
+
+    /*
+        Run A* over the abstract graph, whose nodes are the entrances of every cluster plus the start and
+        end nodes. Returns true if the end node was reached, in which case the route can be followed back
+        through the previous values of the search state.
+     */
+    private boolean searchAbstractGraph() {
+        int[] f = state.f;
+        int[] g = state.g;
+        IndexedHeap openSet = state.openSet;
+        state.begin();
+        touch(start);
+        g[start] = 0;
+        f[start] = state.h[start];
+        openSet.add(start);
+        while (!openSet.isEmpty()) {
+            SearchState.checkCancelled();
+            int current = openSet.poll();
+            if (current == end)
+                return true;
+            // The start node is connected to the entrances of its cluster, and possibly straight to the end node
+            if (current == start) {
+                int[] startEntrances = entrances[startCluster];
+                for (int i = 0; i < startEntrances.length; i++)
+                    relax(current, startEntrances[i], startDistances[i]);
+                relax(current, end, directDistance);
+            }
+            int cluster = clusterOf(current);
+            ensureCluster(cluster);
+            int[] clusterEntrances = entrances[cluster];
+            int i = Arrays.binarySearch(clusterEntrances, current);
+            if (i < 0)
+                continue;
+            // An entrance is connected to the other entrances of its cluster
+            int k = clusterEntrances.length;
+            for (int j = 0; j < k; j++) {
+                if (j != i)
+                    relax(current, clusterEntrances[j], distances[cluster][i * k + j]);
+            }
+            // And to the cells on the other side of the border from it
+            for (int partner : partners[cluster][i])
+                relax(current, partner, 1);
+            // And to the end node, if it is in the same cluster
+            if (cluster == endCluster)
+                relax(current, end, endDistances[i]);
+        }
+        return false;
+    }
+
+    // Update the given neighbour in the abstract graph if moving to it from the current node is shorter
+    private void relax(int current, int neighbour, int distance) {
+        if (distance == INFINITY)
+            return;
+        touch(neighbour);
+        int tempG = state.g[current] + distance;
+        if (tempG < state.g[neighbour]) {
+            state.previous[neighbour] = current;
+            state.g[neighbour] = tempG;
+            state.f[neighbour] = tempG + state.h[neighbour];
+            if (state.openSet.contains(neighbour))
+                state.openSet.decreaseKey(neighbour);
+            else
+                state.openSet.add(neighbour);
+        }
+    }
+
+    // Prepare the given cell to be used by the current search, calculating its h(n) value if needed
+    private void touch(int cell) {
+        if (state.touch(cell))
+            state.h[cell] = Math.abs(grid.getX(cell) - endX) + Math.abs(grid.getY(cell) - endY);
+    }
+
+    /*
+        Turn the route found through the abstract graph into a full path. Consecutive nodes of the route
+        are either on opposite sides of a border (and so next to each other), or in the same cluster, in
+        which case the cluster is searched to find the cells between them.
+     */
+    private int[] refinePath() {
+        // Follow the previous values back from the end node to find the route
+        int length = 1;
+        for (int cell = end; cell != start; cell = state.previous[cell])
+            length++;
+        int[] route = new int[length];
+        for (int cell = end, i = length - 1; i >= 0; cell = state.previous[cell], i--)
+            route[i] = cell;
+
+        int[] path = new int[state.g[end] + 1];
+        int size = 0;
+        path[size++] = start;
+        for (int i = 1; i < route.length; i++) {
+            int from = route[i - 1];
+            int to = route[i];
+            int cluster = clusterOf(from);
+            if (cluster != clusterOf(to)) {
+                path[size++] = to;
+                continue;
+            }
+            /*
+                Search the cluster from the previous node, and fill in the cells back from the next node. The
+                search has to start from the previous node, as the start node may be a wall, which can be moved
+                off but not onto.
+             */
+            breadthFirstSearch(cluster, from);
+            int x0 = clusterX0(cluster);
+            int y0 = clusterY0(cluster);
+            int width = clusterWidth(cluster);
+            int local = (grid.getY(to) - y0) * width + (grid.getX(to) - x0);
+            int steps = searchDistance[local];
+            for (int j = size + steps - 1; j >= size; j--) {
+                path[j] = grid.index(x0 + local % width, y0 + local / width);
+                local = searchPrevious[local];
+            }
+            size += steps;
+        }
+        return path;
+    }
+
+    // Calculate the entrances and distances of the given cluster if they are out of date
+    private void ensureCluster(int cluster) {
+        if (!dirty[cluster])
+            return;
+        dirty[cluster] = false;
+        int cx = cluster % clustersX;
+        int cy = cluster / clustersX;
+        int x0 = clusterX0(cluster);
+        int y0 = clusterY0(cluster);
+        int x1 = x0 + clusterWidth(cluster);
+        int y1 = y0 + clusterHeight(cluster);
+
+        // Find the entrances on each border, as pairs of (cell in this cluster, cell in the other cluster)
+        long[] pairs = new long[4 * CLUSTER_SIZE];
+        int count = 0;
+        if (cy > 0) count = findEntrances(pairs, count, x0, y0, 1, 0, x1 - x0, 0, -1);
+        if (cx < clustersX - 1) count = findEntrances(pairs, count, x1 - 1, y0, 0, 1, y1 - y0, 1, 0);
+        if (cy < clustersY - 1) count = findEntrances(pairs, count, x0, y1 - 1, 1, 0, x1 - x0, 0, 1);
+        if (cx > 0) count = findEntrances(pairs, count, x0, y0, 0, 1, y1 - y0, -1, 0);
+
+        // Group the pairs by the cell in this cluster, as a corner cell can be an entrance on two borders
+        Arrays.sort(pairs, 0, count);
+        int unique = 0;
+        for (int i = 0; i < count; i++) {
+            if (i == 0 || (int) (pairs[i] >>> 32) != (int) (pairs[i - 1] >>> 32))
+                unique++;
+        }
+        int[] clusterEntrances = new int[unique];
+        int[][] clusterPartners = new int[unique][];
+        for (int i = 0, e = -1; i < count; i++) {
+            int cell = (int) (pairs[i] >>> 32);
+            int partner = (int) pairs[i];
+            if (e < 0 || clusterEntrances[e] != cell) {
+                clusterEntrances[++e] = cell;
+                clusterPartners[e] = new int[] {partner};
+            } else {
+                clusterPartners[e] = Arrays.copyOf(clusterPartners[e], clusterPartners[e].length + 1);
+                clusterPartners[e][clusterPartners[e].length - 1] = partner;
+            }
+        }
+
+        // Calculate the distance between each pair of entrances, searching within the cluster from each one
+        int[] clusterDistances = new int[unique * unique];
+        for (int i = 0; i < unique; i++) {
+            breadthFirstSearch(cluster, clusterEntrances[i]);
+            for (int j = 0; j < unique; j++)
+                clusterDistances[i * unique + j] = distanceTo(cluster, clusterEntrances[j]);
+        }
+        entrances[cluster] = clusterEntrances;
+        partners[cluster] = clusterPartners;
+        distances[cluster] = clusterDistances;
+    }
+
+    /*
+        Find the entrances along one border of a cluster. The border starts at (x, y) and is 'length' cells
+        long in the direction (stepX, stepY), and the cells on the other side of the border are offset by
+        (outX, outY). Each stretch of the border which is open on both sides gets an entrance in the middle,
+        or one at each end if it is wide. The pairs found are added to the given array, packed as
+        (cell << 32 | partner), and the new number of pairs is returned.
+     */
+    private int findEntrances(long[] pairs, int count, int x, int y, int stepX, int stepY, int length,
+                              int outX, int outY) {
+        int runStart = -1;
+        for (int i = 0; i <= length; i++) {
+            boolean open = i < length
+                    && !grid.isWall(grid.index(x + i * stepX, y + i * stepY))
+                    && !grid.isWall(grid.index(x + i * stepX + outX, y + i * stepY + outY));
+            if (open && runStart < 0) {
+                runStart = i;
+            } else if (!open && runStart >= 0) {
+                int runEnd = i - 1;
+                if (runEnd - runStart + 1 >= MAX_ENTRANCE_WIDTH) {
+                    count = addPair(pairs, count, x + runStart * stepX, y + runStart * stepY, outX, outY);
+                    count = addPair(pairs, count, x + runEnd * stepX, y + runEnd * stepY, outX, outY);
+                } else {
+                    int middle = (runStart + runEnd) / 2;
+                    count = addPair(pairs, count, x + middle * stepX, y + middle * stepY, outX, outY);
+                }
+                runStart = -1;
+            }
+        }
+        return count;
+    }
+
+    // Add the pair of the cell at (x, y) and the cell offset from it by (outX, outY) to the given array
+    private int addPair(long[] pairs, int count, int x, int y, int outX, int outY) {
+        long cell = grid.index(x, y);
+        long partner = grid.index(x + outX, y + outY);
+        pairs[count] = (cell << 32) | partner;
+        return count + 1;
+    }
+
+    /*
+        Run a breadth-first search from the given cell, without leaving the given cluster. The distance to
+        each cell of the cluster and the previous cell along the path back to the source are left in the
+        searchDistance and searchPrevious arrays, indexed by the position of the cell within the cluster.
+     */
+    private void breadthFirstSearch(int cluster, int source) {
+        int x0 = clusterX0(cluster);
+        int y0 = clusterY0(cluster);
+        int x1 = x0 + clusterWidth(cluster);
+        int y1 = y0 + clusterHeight(cluster);
+        int width = clusterWidth(cluster);
+        Arrays.fill(searchDistance, 0, width * clusterHeight(cluster), INFINITY);
+        int first = (grid.getY(source) - y0) * width + (grid.getX(source) - x0);
+        searchDistance[first] = 0;
+        searchPrevious[first] = NONE;
+        searchQueue[0] = first;
+        int head = 0;
+        int tail = 1;
+        while (head < tail) {
+            int local = searchQueue[head++];
+            int cell = grid.index(x0 + local % width, y0 + local / width);
+            int count = grid.getNeighbours(cell, neighbours);
+            for (int i = 0; i < count; i++) {
+                int x = grid.getX(neighbours[i]);
+                int y = grid.getY(neighbours[i]);
+                // Ignore neighbours outside of the cluster
+                if (x < x0 || x >= x1 || y < y0 || y >= y1)
+                    continue;
+                int next = (y - y0) * width + (x - x0);
+                if (searchDistance[next] == INFINITY) {
+                    searchDistance[next] = searchDistance[local] + 1;
+                    searchPrevious[next] = local;
+                    searchQueue[tail++] = next;
+                }
+            }
+        }
+    }
+
+    // Read the distance to the given cell from the last breadth-first search of the given cluster
+    private int distanceTo(int cluster, int cell) {
+        int local = (grid.getY(cell) - clusterY0(cluster)) * clusterWidth(cluster) + (grid.getX(cell) - clusterX0(cluster));
+        return searchDistance[local];
+    }
+
+    // Read the distances to each of the given cells from the last breadth-first search of the given cluster
+    private int[] distancesTo(int cluster, int[] cells) {
+        int[] result = new int[cells.length];
+        for (int i = 0; i < cells.length; i++)
+            result[i] = distanceTo(cluster, cells[i]);
+        return result;
+    }
+
+    // Calculate which cluster the given cell is in
+    private int clusterOf(int cell) {
+        return (grid.getY(cell) / CLUSTER_SIZE) * clustersX + grid.getX(cell) / CLUSTER_SIZE;
+    }
+
+    // Calculate the x co-ordinate of the left column of the given cluster
+    private int clusterX0(int cluster) {
+        return (cluster % clustersX) * CLUSTER_SIZE;
+    }
+
+    // Calculate the y co-ordinate of the top row of the given cluster
+    private int clusterY0(int cluster) {
+        return (cluster / clustersX) * CLUSTER_SIZE;
+    }
+
+    // Calculate the width of the given cluster, which may be smaller than CLUSTER_SIZE at the edge of the grid
+    private int clusterWidth(int cluster) {
+        return Math.min(CLUSTER_SIZE, grid.getWidth() - clusterX0(cluster));
+    }
+
+    // Calculate the height of the given cluster, which may be smaller than CLUSTER_SIZE at the edge of the grid
+    private int clusterHeight(int cluster) {
+        return Math.min(CLUSTER_SIZE, grid.getHeight() - clusterY0(cluster));
+    }
+}
@@ -0,0 +1,294 @@
+package com.callumbirks;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/*
+    The IncrementalSearch class contains D* Lite, an incremental version of the A* algorithm.
+    Rather than starting from scratch every time it is run, it keeps the values it calculated for
+    each cell between runs. When a wall is added or removed only the cells whose distance to the
+    end node is affected are updated, so a small change to the grid costs roughly in proportion to
+    the size of the change rather than the size of the grid. The start node may also move between
+    runs without losing any work, but moving the end node means starting again from scratch.
+
+    D* Lite searches backwards, from the end node towards the start node, so g(n) is the distance
+    from each cell to the end node. Each cell also has an rhs(n) value, which is the distance
+    predicted from its neighbours (1 + the lowest g(n) of its open neighbours). A cell whose g(n)
+    and rhs(n) values differ is "inconsistent" and is kept in the open set until it is fixed.
+    Every move onto an open cell costs 1, and moving onto a wall is not possible.
+ */
+class IncrementalSearch {
+    // The value used to represent infinity for g(n) and rhs(n)
+    private static final int INFINITY = SearchState.INFINITY;
+    // The value used to represent "no cell", for example before the first run
+    private static final int NONE = SearchState.NONE;
+    // The grid being searched
+    private final Grid grid;
+    // The distance from each cell to the end node, as calculated by the search
+    private final int[] g;
+    // The distance from each cell to the end node, as predicted from its neighbours
+    private final int[] rhs;
+    // The two parts of the key of each cell in the open set, cells are ordered by the first then the second
+    private final int[] key1;
+    private final int[] key2;
+    // The generation in which each cell's values were last reset
+    private final int[] generations;
+    // The current generation, which changes whenever the end node changes
+    private int generation = 0;
+    // The open set, which holds the inconsistent cells ordered by their keys
+    private final IndexedHeap openSet;
+    // An array to hold every neighbour of a cell, including walls
+    private final int[] neighbours = new int[4];
+    // A separate array to hold the open neighbours of a cell, as these are needed while looping over 'neighbours'
+    private final int[] openNeighbours = new int[4];
+    // The start node used by the last run, which the heuristic is calculated from
+    private int start = NONE;
+    // The end node used by the last run, the search starts from here
+    private int end = NONE;
+    /*
+        The total distance the start node has moved since the end node was set. This is added to
+        every new key so that the keys already in the open set (which were calculated from an old
+        start node) remain lower bounds and do not need to be recalculated when the start node moves.
+     */
+    private int keyModifier = 0;
+
+    // The constructor for the search, taking the grid to search
+    IncrementalSearch(Grid grid) {
+        this.grid = grid;
+        g = new int[grid.getSize()];
+        rhs = new int[grid.getSize()];
+        key1 = new int[grid.getSize()];
+        key2 = new int[grid.getSize()];
+        generations = new int[grid.getSize()];
+        openSet = new IndexedHeap(grid.getSize(), key1, key2);
+    }
+
+    /*
+        Find the shortest path from the start node to the end node, reusing the work from the last run
+        where possible. The path is returned as an array holding the index of every cell along it in
+        order, including the start and end nodes, or null if there is no path between the two.
+     */
+    int[] findPath(int start, int end) {
+        // If the end node has moved, all of the previous values are measured from the wrong cell
+        if (end != this.end)
+            reset(start, end);
+        // If the start node has moved, increase the key modifier by the distance it moved
+        else if (start != this.start) {
+            keyModifier += heuristic(this.start, start);
+            this.start = start;
+        }
+        computeShortestPath();
+        return extractPath();
+    }
+
+    /*
+        Update the search after the wall at the given cell has been added or removed. The cost of moving
+        onto the cell has changed, so the rhs(n) value of each of its neighbours may have changed.
+        If the search has not been run yet there is nothing to update.
+     */
+    void wallChanged(int cell) {
+        if (end == NONE)
+            return;
+        int count = getAllNeighbours(cell);
+        for (int i = 0; i < count; i++)
+            updateCell(neighbours[i]);
+    }
+
+    // Getter for the open set, used to read the statistics of the search
+    IndexedHeap getOpenSet() {
+        return openSet;
+    }
+
+    /*
+        Fill in the cells the search has calculated values for since the end node was last set, setting the
+        bit of each inconsistent cell (in the open set) in 'open' and of every other cell in 'closed'.
+     */
+    void getSearchedCells(BitSet open, BitSet closed) {
+        if (end == NONE)
+            return;
+        for (int cell = 0; cell < generations.length; cell++) {
+            if (generations[cell] != generation)
+                continue;
+            if (openSet.contains(cell))
+                open.set(cell);
+            else
+                closed.set(cell);
+        }
+    }
+
+    // Start again from scratch with the given start and end nodes
+    private void reset(int start, int end) {
+        this.start = start;
+        this.end = end;
+        keyModifier = 0;
+        generation++;
+        if (generation == 0) {
+            Arrays.fill(generations, 0);
+            generation = 1;
+        }
+        openSet.clear();
+        // The end node is 0 moves from itself
+        touch(end);
+        rhs[end] = 0;
+        insert(end);
+    }
+
+    /*
+        Repeatedly fix the inconsistent cell with the lowest key until the start node is consistent
+        and no cell in the open set could lower its distance to the end node.
+     */
+    private void computeShortestPath() {
+        touch(start);
+        while (!openSet.isEmpty()) {
+            /*
+                Each pass of this loop leaves the values consistent, so if the search is cancelled here
+                the next run simply carries on from where this one stopped.
+             */
+            SearchState.checkCancelled();
+            int top = openSet.peek();
+            // Stop once the start node is consistent and has a key no greater than the lowest in the open set
+            if (rhs[start] == g[start] && !keyLess(key1[top], key2[top], startKey1(), startKey2()))
+                break;
+            int oldKey1 = key1[top];
+            int oldKey2 = key2[top];
+            calculateKey(top);
+            // If the key was calculated from an old start node it may be too low, so move the cell to its correct place
+            if (keyLess(oldKey1, oldKey2, key1[top], key2[top])) {
+                openSet.update(top);
+            }
+            // The cell's distance has dropped, so it is now fixed and its neighbours may be able to use it
+            else if (g[top] > rhs[top]) {
+                g[top] = rhs[top];
+                openSet.poll();
+                updatePredecessors(top);
+            }
+            // The cell's distance has risen, so it and any neighbours which relied on it need recalculating
+            else {
+                g[top] = INFINITY;
+                updateCell(top);
+                updatePredecessors(top);
+            }
+        }
+    }
+
+    // Update the neighbours which could move onto the given cell, as its g(n) value has changed
+    private void updatePredecessors(int cell) {
+        // Nothing can move onto a wall, so no other cell relies on its g(n) value
+        if (grid.isWall(cell))
+            return;
+        int count = getAllNeighbours(cell);
+        for (int i = 0; i < count; i++)
+            updateCell(neighbours[i]);
+    }
+
+    /*
+        Recalculate the rhs(n) value of the given cell from its open neighbours, and then add it to,
+        move it within, or remove it from the open set depending on whether it is inconsistent.
+     */
+    private void updateCell(int cell) {
+        touch(cell);
+        if (cell != end) {
+            int best = INFINITY;
+            int[] open = openNeighbours;
+            int count = grid.getNeighbours(cell, open);
+            for (int i = 0; i < count; i++) {
+                touch(open[i]);
+                if (g[open[i]] != INFINITY && g[open[i]] + 1 < best)
+                    best = g[open[i]] + 1;
+            }
+            rhs[cell] = best;
+        }
+        if (g[cell] != rhs[cell]) {
+            if (openSet.contains(cell)) {
+                calculateKey(cell);
+                openSet.update(cell);
+            } else {
+                insert(cell);
+            }
+        } else {
+            openSet.remove(cell);
+        }
+    }
+
+    // Calculate the key of the given cell and add it to the open set
+    private void insert(int cell) {
+        calculateKey(cell);
+        openSet.add(cell);
+    }
+
+    /*
+        Calculate the key of the given cell. The first part is like f(n) in A*, the lowest of g(n) and rhs(n)
+        plus the heuristic distance from the start node, and the second part is the lowest of g(n) and rhs(n).
+     */
+    private void calculateKey(int cell) {
+        int min = Math.min(g[cell], rhs[cell]);
+        key1[cell] = min == INFINITY ? INFINITY : min + heuristic(start, cell) + keyModifier;
+        key2[cell] = min;
+    }
+
+    // Calculate the first part of the key of the start node
+    private int startKey1() {
+        int min = Math.min(g[start], rhs[start]);
+        return min == INFINITY ? INFINITY : min + keyModifier;
+    }
+
+    // Calculate the second part of the key of the start node
+    private int startKey2() {
+        return Math.min(g[start], rhs[start]);
+    }
+
+    // Check whether the key (a1, a2) is lower than the key (b1, b2)
+    private static boolean keyLess(int a1, int a2, int b1, int b2) {
+        return a1 < b1 || (a1 == b1 && a2 < b2);
+    }
+
+    // Calculate the Manhattan distance between two cells, the fewest possible moves between them
+    private int heuristic(int a, int b) {
+        return Math.abs(grid.getX(a) - grid.getX(b)) + Math.abs(grid.getY(a) - grid.getY(b));
+    }
+
+    // Reset the values of the given cell if it has not been used since the end node was set
+    private void touch(int cell) {
+        if (generations[cell] != generation) {
+            generations[cell] = generation;
+            g[cell] = INFINITY;
+            rhs[cell] = INFINITY;
+        }
+    }
+
+    // Calculate every neighbour of the given cell within the grid, including walls, returning how many there are
+    private int getAllNeighbours(int cell) {
+        int count = 0;
+        int x = grid.getX(cell);
+        if (cell >= grid.getWidth()) neighbours[count++] = cell - grid.getWidth();
+        if (x < grid.getWidth() - 1) neighbours[count++] = cell + 1;
+        if (cell < grid.getSize() - grid.getWidth()) neighbours[count++] = cell + grid.getWidth();
+        if (x > 0) neighbours[count++] = cell - 1;
+        return count;
+    }
+
+    /*
+        Follow the g(n) values from the start node to the end node, at each step moving to the open
+        neighbour with the lowest g(n) value. Returns null if the start node cannot reach the end node.
+     */
+    private int[] extractPath() {
+        if (rhs[start] == INFINITY)
+            return null;
+        int[] path = new int[rhs[start] + 1];
+        int[] open = openNeighbours;
+        int current = start;
+        path[0] = current;
+        for (int i = 1; i < path.length; i++) {
+            int count = grid.getNeighbours(current, open);
+            int best = NONE;
+            for (int j = 0; j < count; j++) {
+                touch(open[j]);
+                if (best == NONE || g[open[j]] < g[best])
+                    best = open[j];
+            }
+            current = best;
+            path[i] = current;
+        }
+        return path;
+    }
+}
@@ -0,0 +1,240 @@
+package com.callumbirks;
+
+import java.util.Arrays;
+
+/*
+    The IndexedHeap class is a binary min-heap of cell indexes, used as the open set of the
+    algorithm. Unlike a PriorityQueue, it remembers the position of every cell inside the heap,
+    which means checking whether a cell is in the heap is O(1), and a cell whose value has
+    dropped while it is in the heap can be moved to its correct position in O(log n).
+    The values used to order the cells are not stored by the heap itself, instead the heap
+    reads them from two arrays (indexed by cell) which are owned by the user of the heap.
+    Cells are ordered by the primary value, and cells with an equal primary value are ordered
+    by the secondary value.
+ */
+public class IndexedHeap {
+    // The value stored in the position array for a cell which is not in the heap
+    private static final int ABSENT = -1;
+    // The values which the cells are primarily ordered by (for A* this is f(n))
+    private final int[] primary;
+    // The values used to break ties between cells with equal primary values (for A* this is h(n))
+    private final int[] secondary;
+    // The position of each cell inside the heap array, or ABSENT if the cell is not in the heap
+    private final int[] position;
+    // The heap array itself, holding cell indexes, this grows as needed up to the number of cells
+    private int[] heap;
+    // The number of cells currently in the heap
+    private int size = 0;
+    // The number of cells added, polled and repositioned after their values changed, since the counters were reset
+    private long adds = 0;
+    private long polls = 0;
+    private long keyChanges = 0;
+    // The largest number of cells which have been in the heap at once since the counters were reset
+    private int peakSize = 0;
+
+    /*
+        The constructor for the heap, taking the number of cells that could be added to the heap
+        and the two arrays which hold the values used to order the cells.
+     */
+    public IndexedHeap(int capacity, int[] primary, int[] secondary) {
+        this.primary = primary;
+        this.secondary = secondary;
+        this.position = new int[capacity];
+        // No cells are in the heap to begin with
+        Arrays.fill(position, ABSENT);
+        // Start with a small heap array, rather than one as large as the grid
+        this.heap = new int[Math.min(capacity, 16)];
+    }
+
+    // Check whether the heap is empty
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // Getter for the number of cells in the heap
+    public int size() {
+        return size;
+    }
+
+    // Check whether the given cell is in the heap
+    public boolean contains(int cell) {
+        return position[cell] != ABSENT;
+    }
+
+    // Add the given cell to the heap, the cell must not already be in the heap
+    public void add(int cell) {
+        // If the heap array is full, double its size
+        if (size == heap.length)
+            heap = Arrays.copyOf(heap, Math.min(position.length, Math.max(size * 2, 1)));
+        heap[size] = cell;
+        position[cell] = size;
+        siftUp(size++);
+        adds++;
+        if (size > peakSize)
+            peakSize = size;
+    }
+
+    // Return the cell with the lowest value without removing it, or ABSENT if the heap is empty
+    public int peek() {
+        return size == 0 ? ABSENT : heap[0];
+    }
+
+    // Remove and return the cell with the lowest value, or ABSENT if the heap is empty
+    public int poll() {
+        if (size == 0)
+            return ABSENT;
+        polls++;
+        int top = heap[0];
+        position[top] = ABSENT;
+        // Move the last cell in the heap to the top and sift it down to its correct position
+        int last = heap[--size];
+        if (size > 0) {
+            heap[0] = last;
+            position[last] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
+
+    /*
+        Move the given cell to its correct position after its values have been lowered.
+        This is the "decrease-key" operation, the cell must already be in the heap.
+     */
+    public void decreaseKey(int cell) {
+        keyChanges++;
+        siftUp(position[cell]);
+    }
+
+    /*
+        Move the given cell to its correct position after its values have changed in either
+        direction. The cell must already be in the heap.
+     */
+    public void update(int cell) {
+        keyChanges++;
+        reposition(cell);
+    }
+
+    // Move the given cell up or down the heap to its correct position
+    private void reposition(int cell) {
+        int pos = position[cell];
+        siftUp(pos);
+        // If the cell did not move up, it may need to move down instead
+        if (heap[pos] == cell)
+            siftDown(pos);
+    }
+
+    // Remove the given cell from the heap if it is in the heap
+    public void remove(int cell) {
+        int pos = position[cell];
+        if (pos == ABSENT)
+            return;
+        position[cell] = ABSENT;
+        int last = heap[--size];
+        // If the removed cell was not the last cell, move the last cell into its place
+        if (pos < size) {
+            heap[pos] = last;
+            position[last] = pos;
+            reposition(last);
+        }
+    }
+
+    // Getter for the cell at the given position of the heap array, used to go through every cell in the heap in no particular order
+    public int get(int i) {
+        return heap[i];
+    }
+
+    /*
+        Put the heap back in order after the values of many of its cells have changed at once. This takes
+        O(n) time, which is quicker than moving each of the cells on its own.
+     */
+    public void heapify() {
+        for (int pos = (size >>> 1) - 1; pos >= 0; pos--)
+            siftDown(pos);
+    }
+
+    /*
+        Remove every cell from the heap. Only the positions of the cells which are in the heap
+        are reset, so this takes time proportional to the size of the heap rather than the grid.
+        The peak size is also reset, as the cells which were in the heap belonged to an earlier search.
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++)
+            position[heap[i]] = ABSENT;
+        size = 0;
+        peakSize = 0;
+    }
+
+    // Getter for the number of cells added to the heap since the counters were reset
+    public long getAdds() {
+        return adds;
+    }
+
+    // Getter for the number of cells polled from the heap since the counters were reset
+    public long getPolls() {
+        return polls;
+    }
+
+    // Getter for the number of times a cell was moved after its values changed, since the counters were reset
+    public long getKeyChanges() {
+        return keyChanges;
+    }
+
+    // Getter for the largest number of cells in the heap at once since the counters were reset
+    public int getPeakSize() {
+        return peakSize;
+    }
+
+    // Reset the counters of the heap's operations to zero, and its peak size to its current size
+    public void resetCounters() {
+        adds = 0;
+        polls = 0;
+        keyChanges = 0;
+        peakSize = size;
+    }
+
+    // Check whether cell a should be nearer the top of the heap than cell b
+    private boolean less(int a, int b) {
+        return primary[a] < primary[b] || (primary[a] == primary[b] && secondary[a] < secondary[b]);
+    }
+
+    // Move the cell at the given position up the heap until its parent is not greater than it
+    private void siftUp(int pos) {
+        int cell = heap[pos];
+        while (pos > 0) {
+            int parentPos = (pos - 1) >>> 1;
+            int parent = heap[parentPos];
+            if (!less(cell, parent))
+                break;
+            // Move the parent down into the current position
+            heap[pos] = parent;
+            position[parent] = pos;
+            pos = parentPos;
+        }
+        heap[pos] = cell;
+        position[cell] = pos;
+    }
+
+    // Move the cell at the given position down the heap until neither of its children are less than it
+    private void siftDown(int pos) {
+        int cell = heap[pos];
+        int half = size >>> 1;
+        while (pos < half) {
+            // Find the smaller of the two children
+            int childPos = 2 * pos + 1;
+            int child = heap[childPos];
+            int rightPos = childPos + 1;
+            if (rightPos < size && less(heap[rightPos], child)) {
+                childPos = rightPos;
+                child = heap[childPos];
+            }
+            if (!less(child, cell))
+                break;
+            // Move the child up into the current position
+            heap[pos] = child;
+            position[child] = pos;
+            pos = childPos;
+        }
+        heap[pos] = cell;
+        position[cell] = pos;
+    }
+}
@@ -0,0 +1,196 @@
+package com.callumbirks;
+
+/*
+    The JumpPointSearch class contains Jump Point Search, a variation of the A* algorithm for grids
+    where every move has the same cost. On such a grid there are usually many different paths of
+    the same length between two nodes, and A* tests the nodes along all of them. Jump Point Search
+    instead "jumps" in a straight line from each node, only stopping (and adding a node to the open
+    set) where the path may need to change direction: at the end node, or next to a wall which
+    creates a new way through the grid (a "forced neighbour"). This finds a path of the same length
+    as A* while testing far fewer nodes in open areas of the grid.
+
+    This version is for 4-connected grids, so moves are only ever up, right, down or left. When
+    jumping vertically, the search also looks horizontally from each node it passes over, so that
+    paths which go vertically first and then horizontally are always found.
+    No values are precomputed from the walls, so nothing needs to be updated when a wall changes.
+ */
+class JumpPointSearch {
+    // The value used to represent "no cell", for example when a jump reaches a wall
+    private static final int NONE = SearchState.NONE;
+    // The grid being searched
+    private final Grid grid;
+    // The values for each cell and the open set, which are shared with the AStar class
+    private final SearchState state;
+    // The end node of the current search
+    private int end;
+    // The co-ordinates of the end node of the current search, used when calculating h(n)
+    private int endX;
+    private int endY;
+
+    // The constructor for the search, taking the grid to search and the search state to use
+    JumpPointSearch(Grid grid, SearchState state) {
+        this.grid = grid;
+        this.state = state;
+    }
+
+    /*
+        Find the shortest path from the start node to the end node. The path is returned as an array
+        holding the index of every cell along it in order, including the start and end nodes, or null
+        if there is no path between the two.
+     */
+    int[] findPath(int start, int end) {
+        int[] f = state.f;
+        int[] g = state.g;
+        int[] h = state.h;
+        int[] previous = state.previous;
+        IndexedHeap openSet = state.openSet;
+
+        this.end = end;
+        endX = grid.getX(end);
+        endY = grid.getY(end);
+        state.begin();
+        touch(start);
+        g[start] = 0;
+        f[start] = h[start];
+        openSet.add(start);
+
+        // An array to hold the jump points found from the current node, there can be at most 4
+        int[] successors = new int[4];
+
+        while (!openSet.isEmpty()) {
+            SearchState.checkCancelled();
+            int current = openSet.poll();
+            if (current == end)
+                return reconstructPath(current);
+            int count = findSuccessors(current, successors);
+            for (int i = 0; i < count; i++) {
+                int successor = successors[i];
+                touch(successor);
+                // The cost of a jump is the number of cells jumped over
+                int tempG = g[current] + distance(current, successor);
+                if (tempG < g[successor]) {
+                    previous[successor] = current;
+                    g[successor] = tempG;
+                    f[successor] = tempG + h[successor];
+                    if (openSet.contains(successor))
+                        openSet.decreaseKey(successor);
+                    else
+                        openSet.add(successor);
+                }
+            }
+        }
+        // The open set is empty, so there is no path between the start node and end node
+        return null;
+    }
+
+    /*
+        Find the jump points reachable from the given node, writing them into the given array and
+        returning how many were found. The directions jumped in depend on the direction the node was
+        reached from: the start node jumps in every direction, and any other node never jumps back
+        the way it came.
+     */
+    private int findSuccessors(int cell, int[] successors) {
+        int x = grid.getX(cell);
+        int y = grid.getY(cell);
+        int parent = state.previous[cell];
+        // The directions to jump in, the start node has no parent so all four are used
+        boolean up = true, right = true, down = true, left = true;
+        if (parent != NONE) {
+            int dx = Integer.signum(x - grid.getX(parent));
+            int dy = Integer.signum(y - grid.getY(parent));
+            // Moving horizontally, continue horizontally or turn up or down
+            if (dx != 0) {
+                right = dx > 0;
+                left = dx < 0;
+            }
+            // Moving vertically, continue vertically or turn left or right
+            else {
+                down = dy > 0;
+                up = dy < 0;
+            }
+        }
+        int count = 0;
+        int jumpPoint;
+        if (up && (jumpPoint = jumpVertical(x, y - 1, -1)) != NONE) successors[count++] = jumpPoint;
+        if (right && (jumpPoint = jumpHorizontal(x + 1, y, 1)) != NONE) successors[count++] = jumpPoint;
+        if (down && (jumpPoint = jumpVertical(x, y + 1, 1)) != NONE) successors[count++] = jumpPoint;
+        if (left && (jumpPoint = jumpHorizontal(x - 1, y, -1)) != NONE) successors[count++] = jumpPoint;
+        return count;
+    }
+
+    /*
+        Jump horizontally from the given co-ordinates in the direction dx (1 for right, -1 for left),
+        returning the first jump point reached, or NONE if a wall or the edge of the grid is reached first.
+        A node is a jump point if it is the end node, or if the node above or below it is open while the
+        node behind that one (in the direction jumped from) is a wall.
+     */
+    private int jumpHorizontal(int x, int y, int dx) {
+        while (isOpen(x, y)) {
+            int cell = grid.index(x, y);
+            if (cell == end)
+                return cell;
+            if ((isOpen(x, y - 1) && !isOpen(x - dx, y - 1)) || (isOpen(x, y + 1) && !isOpen(x - dx, y + 1)))
+                return cell;
+            x += dx;
+        }
+        return NONE;
+    }
+
+    /*
+        Jump vertically from the given co-ordinates in the direction dy (1 for down, -1 for up),
+        returning the first jump point reached, or NONE if a wall or the edge of the grid is reached first.
+        A node is a jump point if it is the end node, if the node to its left or right is open while
+        the node behind that one is a wall, or if a horizontal jump from it finds a jump point.
+     */
+    private int jumpVertical(int x, int y, int dy) {
+        while (isOpen(x, y)) {
+            int cell = grid.index(x, y);
+            if (cell == end)
+                return cell;
+            if ((isOpen(x - 1, y) && !isOpen(x - 1, y - dy)) || (isOpen(x + 1, y) && !isOpen(x + 1, y - dy)))
+                return cell;
+            if (jumpHorizontal(x + 1, y, 1) != NONE || jumpHorizontal(x - 1, y, -1) != NONE)
+                return cell;
+            y += dy;
+        }
+        return NONE;
+    }
+
+    // Check whether the given co-ordinates are within the grid and not a wall
+    private boolean isOpen(int x, int y) {
+        return grid.isInGrid(x, y) && !grid.isWall(grid.index(x, y));
+    }
+
+    // Prepare the given cell to be used by the current search, calculating its h(n) value if needed
+    private void touch(int cell) {
+        if (state.touch(cell))
+            state.h[cell] = Math.abs(grid.getX(cell) - endX) + Math.abs(grid.getY(cell) - endY);
+    }
+
+    // Calculate the number of moves between two cells, which are always in a straight line from each other
+    private int distance(int a, int b) {
+        return Math.abs(grid.getX(a) - grid.getX(b)) + Math.abs(grid.getY(a) - grid.getY(b));
+    }
+
+    /*
+        Reconstruct the path from the end node back to the start node. The previous values only link
+        jump points together, so every cell on the straight line between each pair is added as well.
+     */
+    private int[] reconstructPath(int current) {
+        int[] path = new int[state.g[current] + 1];
+        int i = path.length - 1;
+        path[i] = current;
+        while (state.previous[current] != NONE) {
+            int jumpPoint = state.previous[current];
+            // The step between neighbouring cells along the line from the jump point to the current cell
+            int step = grid.getY(current) == grid.getY(jumpPoint) ? 1 : grid.getWidth();
+            if (jumpPoint > current)
+                step = -step;
+            // Walk back from the current cell to the jump point
+            for (int cell = current - step; cell != jumpPoint - step; cell -= step)
+                path[--i] = cell;
+            current = jumpPoint;
+        }
+        return path;
+    }
+}
@@ -0,0 +1,231 @@
+package com.callumbirks;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/*
+    The Landmarks class holds the tables for the landmark (ALT) heuristic. A few open cells are chosen as
+    landmarks, and the number of moves from each landmark to every cell of the grid is worked out ahead of
+    time with a breadth-first search. By the triangle inequality, the shortest path from a cell n to the end
+    node is at least |d(L, n) - d(L, end)| moves for any landmark L, and the largest of these over every
+    landmark is used as h(n) (or the usual heuristic, if that is larger). On a maze, where the Manhattan
+    distance is far below the real length of the path, this is a much closer estimate, so far fewer nodes
+    are tested.
+
+    The distances are counted in moves up, down, left and right, ignoring terrain costs, which can only make
+    a path cost more. A diagonal move (which may not cut a corner) covers two of these moves, so it costs at
+    least half as much per move as an orthogonal one, which is taken into account by the searches which
+    allow diagonal moves.
+
+    The landmarks are chosen far apart from each other in the largest connected area of the grid: the first
+    is the cell furthest from the first cell found in that area, and each one after that is the cell furthest
+    from every landmark chosen so far. Cells which can not be reached from the landmarks have no distance, and
+    fall back to the usual heuristic.
+
+    Adding a wall can only make paths longer, so the tables remain a lower bound (though not as close a one)
+    after walls are added. Removing a wall can make paths shorter, so the tables must not be used after a wall
+    has been removed until they have been worked out again. The tables are never changed once created, so
+    they can be worked out on a background thread and handed over when they are finished.
+ */
+class Landmarks {
+    // The distance stored for a cell which can not be reached from a landmark
+    static final int UNREACHABLE = -1;
+    // The largest size in bytes of the tables written by write, which is the largest array Java can allocate
+    private static final long MAX_WRITE_SIZE = Integer.MAX_VALUE - 8;
+    // The index of each landmark in the grid
+    private final int[] cells;
+    // The number of moves from each landmark to every cell in the grid, or UNREACHABLE
+    private final int[][] distances;
+
+    // The constructor for the tables, taking the index of each landmark and its distances
+    private Landmarks(int[] cells, int[][] distances) {
+        this.cells = cells;
+        this.distances = distances;
+    }
+
+    /*
+        Choose the given number of landmarks on the given grid and work out the distance from each of them
+        to every cell. Fewer landmarks are chosen if the grid does not have enough open cells.
+     */
+    static Landmarks compute(Grid grid, int count) {
+        if (count <= 0)
+            throw new IllegalArgumentException("The number of landmarks must be positive.");
+        int size = grid.getSize();
+        int[] queue = new int[size];
+        int[] neighbours = new int[4];
+        int[] distance = new int[size];
+        // Find a cell in the largest connected area, by searching from each open cell not reached by an earlier search
+        Arrays.fill(distance, UNREACHABLE);
+        int first = -1;
+        int largest = 0;
+        for (int cell = 0; cell < size; cell++) {
+            if (grid.isWall(cell) || distance[cell] != UNREACHABLE)
+                continue;
+            int reached = breadthFirstSearch(grid, cell, distance, queue, neighbours);
+            if (reached > largest) {
+                largest = reached;
+                first = cell;
+            }
+        }
+        // A grid made entirely of walls has no landmarks
+        if (first == -1)
+            return new Landmarks(new int[0], new int[0][]);
+
+        // The distance from each cell to the closest landmark chosen so far
+        int[] closest = new int[size];
+        Arrays.fill(distance, UNREACHABLE);
+        breadthFirstSearch(grid, first, distance, queue, neighbours);
+        int next = furthest(distance);
+
+        int[] cells = new int[count];
+        int[][] distances = new int[count][];
+        int chosen = 0;
+        while (chosen < count) {
+            cells[chosen] = next;
+            distances[chosen] = new int[size];
+            Arrays.fill(distances[chosen], UNREACHABLE);
+            breadthFirstSearch(grid, next, distances[chosen], queue, neighbours);
+            for (int i = 0; i < size; i++)
+                closest[i] = chosen == 0 ? distances[0][i] : Math.min(closest[i], distances[chosen][i]);
+            chosen++;
+            next = furthest(closest);
+            // Every reachable cell is already a landmark
+            if (closest[next] <= 0)
+                break;
+        }
+        return new Landmarks(Arrays.copyOf(cells, chosen), Arrays.copyOf(distances, chosen));
+    }
+
+    /*
+        Find the number of moves from the given cell to every cell it can reach, using the given queue and
+        neighbours arrays. Only cells whose distance is UNREACHABLE are visited, so the distances must be
+        filled with UNREACHABLE first. The number of cells reached is returned.
+     */
+    private static int breadthFirstSearch(Grid grid, int from, int[] distance, int[] queue, int[] neighbours) {
+        distance[from] = 0;
+        queue[0] = from;
+        int head = 0;
+        int tail = 1;
+        while (head < tail) {
+            int current = queue[head++];
+            int count = grid.getNeighbours(current, neighbours);
+            for (int i = 0; i < count; i++) {
+                int neighbour = neighbours[i];
+                if (distance[neighbour] == UNREACHABLE) {
+                    distance[neighbour] = distance[current] + 1;
+                    queue[tail++] = neighbour;
+                }
+            }
+        }
+        return tail;
+    }
+
+    // Find the cell with the largest distance, which is never an unreachable cell
+    private static int furthest(int[] distance) {
+        int best = 0;
+        for (int i = 1; i < distance.length; i++) {
+            if (distance[i] > distance[best])
+                best = i;
+        }
+        return best;
+    }
+
+    // Getter for the number of landmarks
+    int getCount() {
+        return cells.length;
+    }
+
+    // Getter for the index of the landmark with the given number
+    int getCell(int landmark) {
+        return cells[landmark];
+    }
+
+    // Getter for the number of moves from the given landmark to the given cell, or UNREACHABLE
+    int getDistance(int landmark, int cell) {
+        return distances[landmark][cell];
+    }
+
+    /*
+        Get the distance from each landmark to the given cell, which is passed to lowerBound for each cell
+        tested during a search towards that cell.
+     */
+    int[] distancesTo(int cell) {
+        int[] target = new int[cells.length];
+        for (int k = 0; k < cells.length; k++)
+            target[k] = distances[k][cell];
+        return target;
+    }
+
+    /*
+        Calculate the fewest moves a path could take from the given cell to the cell whose distances are given
+        (from distancesTo), using every landmark which can reach both cells. Returns 0 if there is none.
+     */
+    int lowerBound(int cell, int[] target) {
+        int bound = 0;
+        for (int k = 0; k < target.length; k++) {
+            int from = distances[k][cell];
+            if (from != UNREACHABLE && target[k] != UNREACHABLE)
+                bound = Math.max(bound, Math.abs(from - target[k]));
+        }
+        return bound;
+    }
+
+    /*
+        Check whether tables with the given number of landmarks for a grid with the given number of cells are small
+        enough to be written by write, which puts them in a single buffer.
+     */
+    static boolean canWrite(int count, int size) {
+        return 8 + 4L * count * (size + 1L) <= MAX_WRITE_SIZE;
+    }
+
+    /*
+        Write the tables in the form used for the LANDMARKS_SECTION of a map file (see MapFile): the number of
+        landmarks and an int 0 (reserved), the index of each landmark, then the distances from each landmark to
+        every cell in turn, all as little-endian ints. An IllegalArgumentException is thrown if the tables are
+        too large to fit in one buffer (see canWrite).
+     */
+    ByteBuffer write() {
+        int size = cells.length == 0 ? 0 : distances[0].length;
+        if (!canWrite(cells.length, size))
+            throw new IllegalArgumentException("The landmark tables are too large to write.");
+        ByteBuffer buffer = ByteBuffer.allocate((int) (8 + 4L * cells.length * (size + 1L)))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(cells.length).putInt(0);
+        buffer.asIntBuffer().put(cells);
+        buffer.position(buffer.position() + 4 * cells.length);
+        for (int[] table : distances) {
+            buffer.asIntBuffer().put(table);
+            buffer.position(buffer.position() + 4 * table.length);
+        }
+        return buffer.flip();
+    }
+
+    /*
+        Read tables in the form written by write, checking that they match the size of the given grid. The
+        tables are only a lower bound if the grid has had no walls removed since they were worked out, which
+        is the case for tables saved in the same map file as the grid.
+     */
+    static Landmarks read(ByteBuffer buffer, Grid grid) throws IOException {
+        buffer = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int size = grid.getSize();
+        if (buffer.remaining() < 8)
+            throw new IOException("The landmark tables are too short.");
+        int count = buffer.getInt();
+        buffer.getInt();
+        if (count < 0 || buffer.remaining() != 4L * count * (size + 1L))
+            throw new IOException("The landmark tables do not match the size of the grid.");
+        int[] cells = new int[count];
+        buffer.asIntBuffer().get(cells);
+        buffer.position(buffer.position() + 4 * count);
+        int[][] distances = new int[count][size];
+        for (int k = 0; k < count; k++) {
+            if (cells[k] < 0 || cells[k] >= size)
+                throw new IOException("A landmark is outside of the grid.");
+            buffer.asIntBuffer().get(distances[k]);
+            buffer.position(buffer.position() + 4 * size);
+        }
+        return new Landmarks(cells, distances);
+    }
+}
@@ -0,0 +1,126 @@
+package com.callumbirks;
+
+import java.util.Arrays;
+
+/*
+    The LongIntMap class is a hash map from long keys to int values, stored in two flat arrays rather than
+    as an object for each entry, so that it can be filled and emptied many times a second without creating
+    any garbage. It uses open addressing with linear probing: each key is stored at the first free slot at
+    or after the slot its hash points to. Removing a key moves the keys after it back into the gap, so no
+    "deleted" markers are needed and lookups never slow down as keys are added and removed.
+
+    Keys must not be negative, as EMPTY marks a free slot.
+ */
+class LongIntMap {
+    // The value returned when a key is not in the map
+    static final int MISSING = -1;
+    // The key stored in a free slot
+    private static final long EMPTY = -1;
+    // The number of slots to start with, which must be a power of 2
+    private static final int INITIAL_CAPACITY = 16;
+    // The key in each slot, or EMPTY
+    private long[] keys;
+    // The value in each slot
+    private int[] values;
+    // The number of keys in the map
+    private int size = 0;
+    // The number of slots minus 1, used to wrap a slot number around to the start of the arrays
+    private int mask;
+
+    // The constructor for the map, which starts empty
+    LongIntMap() {
+        keys = new long[INITIAL_CAPACITY];
+        values = new int[INITIAL_CAPACITY];
+        Arrays.fill(keys, EMPTY);
+        mask = INITIAL_CAPACITY - 1;
+    }
+
+    // Getter for the number of keys in the map
+    int size() {
+        return size;
+    }
+
+    // Get the value of the given key, or MISSING if the key is not in the map
+    int get(long key) {
+        for (int slot = slot(key); ; slot = (slot + 1) & mask) {
+            if (keys[slot] == key)
+                return values[slot];
+            if (keys[slot] == EMPTY)
+                return MISSING;
+        }
+    }
+
+    // Set the value of the given key, adding the key if it is not already in the map
+    void put(long key, int value) {
+        if (key < 0)
+            throw new IllegalArgumentException("Keys must not be negative.");
+        // Keep at least half of the slots free, so that runs of full slots stay short
+        if (2 * (size + 1) > keys.length)
+            resize(keys.length * 2);
+        int slot = slot(key);
+        while (keys[slot] != EMPTY && keys[slot] != key)
+            slot = (slot + 1) & mask;
+        if (keys[slot] == EMPTY)
+            size++;
+        keys[slot] = key;
+        values[slot] = value;
+    }
+
+    // Remove the given key from the map, if it is in the map
+    void remove(long key) {
+        int slot = slot(key);
+        while (keys[slot] != key) {
+            if (keys[slot] == EMPTY)
+                return;
+            slot = (slot + 1) & mask;
+        }
+        size--;
+        /*
+            Move each key after the gap back into it if the gap lies between the slot the key's hash points
+            to and the slot it is in, as the key would otherwise no longer be found past the gap.
+         */
+        int gap = slot;
+        for (int next = (gap + 1) & mask; keys[next] != EMPTY; next = (next + 1) & mask) {
+            int home = slot(keys[next]);
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+        }
+        keys[gap] = EMPTY;
+    }
+
+    // Remove every key from the map, which takes time proportional to the number of slots
+    void clear() {
+        if (size == 0)
+            return;
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+    }
+
+    // Move every key into new arrays with the given number of slots
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == EMPTY)
+                continue;
+            int slot = slot(oldKeys[i]);
+            while (keys[slot] != EMPTY)
+                slot = (slot + 1) & mask;
+            keys[slot] = oldKeys[i];
+            values[slot] = oldValues[i];
+        }
+    }
+
+    // Find the slot the given key's hash points to, mixing the bits of the key so that nearby keys are spread out
+    private int slot(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,274 @@
+package com.callumbirks;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+    The MapFile class reads and writes grids in a compact binary format, which is designed so that
+    the file can be mapped straight into memory and used as the walls of a grid without copying it.
+    This means even a grid with hundreds of millions of cells can be opened almost instantly, with
+    the operating system reading in each part of the file as it is used.
+
+    Every value is stored little-endian. The file starts with a 24 byte header:
+        int  MAGIC          (identifies the file as a map file)
+        int  VERSION        (the version of the format)
+        int  width          (the number of columns of the grid)
+        int  height         (the number of rows of the grid)
+        int  sectionCount   (the number of sections after the walls)
+        int  0              (reserved)
+    This is followed by the walls, one bit for each cell packed 64 to a long in the same layout the
+    Grid class uses, so cell i is bit (i % 64) of long (i / 64). After the walls come any number of
+    optional sections, which hold tables that have been calculated ahead of time for the grid. Each
+    section is an int id, an int 0 (reserved) and a long length, followed by that many bytes and then
+    padded with zeros to a multiple of 8 bytes, so that every part of the file is aligned to 8 bytes.
+    The section with the id COSTS_SECTION holds the terrain costs of the grid, if any cell has a cost
+    other than 1, as one byte for each cell holding its cost minus 1. The section with the id
+    LANDMARKS_SECTION holds the tables of the landmark heuristic, in the form written by Landmarks.
+
+    Text maps in the MovingAI benchmark format can also be imported.
+ */
+public class MapFile {
+    // The id of the section holding the terrain costs of the grid, which is read and written by this class
+    public static final int COSTS_SECTION = 1;
+    // The id of the section holding the landmark tables of the grid (see Landmarks)
+    public static final int LANDMARKS_SECTION = 2;
+    // The first int of every map file, the characters "PFGM" read as a little-endian int
+    private static final int MAGIC = 0x4D474650;
+    // The version of the format written by this class
+    private static final int VERSION = 1;
+    // The size of the header in bytes
+    private static final int HEADER_SIZE = 24;
+    // The size of the header of each section in bytes
+    private static final int SECTION_HEADER_SIZE = 16;
+    // The size of the buffer used when writing a file
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+    // The grid held in the file, whose walls are mapped from the file
+    private final Grid grid;
+    // The data of each section in the file by its id
+    private final Map<Integer, ByteBuffer> sections;
+
+    // The constructor for an opened map file, taking its grid and sections
+    private MapFile(Grid grid, Map<Integer, ByteBuffer> sections) {
+        this.grid = grid;
+        this.sections = sections;
+    }
+
+    /*
+        Open the map file at the given path by mapping it into memory. The walls of the returned grid are
+        read straight from the mapped file until one of them is changed, at which point the grid takes its
+        own copy, so the file itself is never changed. An IOException is thrown if the file can not be read
+        or is not a valid map file.
+     */
+    public static MapFile open(Path path) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // A single mapping can hold at most Integer.MAX_VALUE bytes, which is enough for the walls of the largest grid
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new IOException(path + " is too large to be mapped.");
+            // The mapping stays valid after the channel has been closed
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt(0) != MAGIC)
+            throw new IOException(path + " is not a map file.");
+        if (buffer.getInt(4) != VERSION)
+            throw new IOException(path + " uses an unsupported version of the map format.");
+        int width = buffer.getInt(8);
+        int height = buffer.getInt(12);
+        int sectionCount = buffer.getInt(16);
+        if (width <= 0 || height <= 0 || (long) width * height > Integer.MAX_VALUE || sectionCount < 0)
+            throw new IOException(path + " has an invalid header.");
+
+        // Map the walls as longs, which is only possible for the whole grid if the file is long enough
+        int wordCount = Grid.wordCount(width * height);
+        long position = HEADER_SIZE + 8L * wordCount;
+        if (position > buffer.limit())
+            throw new IOException(path + " is too short for a grid of its size.");
+        LongBuffer walls = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN)
+                .position(HEADER_SIZE).limit((int) position)
+                .slice().order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+        // The bits after the last cell must not be set, otherwise they would be mistaken for walls outside the grid
+        int lastBits = (width * height) % 64;
+        if (lastBits != 0 && walls.get(wordCount - 1) >>> lastBits != 0)
+            throw new IOException(path + " has walls outside of the grid.");
+        Grid grid = new Grid(width, height, walls);
+
+        // Read the header of each section, keeping a view of its data
+        Map<Integer, ByteBuffer> sections = new HashMap<>();
+        for (int i = 0; i < sectionCount; i++) {
+            if (position + SECTION_HEADER_SIZE > buffer.limit())
+                throw new IOException(path + " is too short for its sections.");
+            int id = buffer.getInt((int) position);
+            long length = buffer.getLong((int) position + 8);
+            long start = position + SECTION_HEADER_SIZE;
+            if (length < 0 || start + length > buffer.limit())
+                throw new IOException(path + " has a section which is longer than the file.");
+            sections.put(id, buffer.duplicate().position((int) start).limit((int) (start + length))
+                    .slice().order(ByteOrder.LITTLE_ENDIAN).asReadOnlyBuffer());
+            position = start + padded(length);
+        }
+        // The terrain costs are copied onto the heap, as they are much smaller than the walls would be as bytes
+        ByteBuffer costs = sections.get(COSTS_SECTION);
+        if (costs != null) {
+            if (costs.remaining() != width * height)
+                throw new IOException(path + " has terrain costs which do not match the size of the grid.");
+            byte[] array = new byte[width * height];
+            costs.duplicate().get(array);
+            grid.setCosts(array);
+        }
+        return new MapFile(grid, Collections.unmodifiableMap(sections));
+    }
+
+    // Getter for the grid held in the file
+    public Grid getGrid() {
+        return grid;
+    }
+
+    /*
+        Getter for the data of the section with the given id, as a read-only little-endian buffer, or null
+        if the file does not have a section with that id.
+     */
+    public ByteBuffer getSection(int id) {
+        ByteBuffer section = sections.get(id);
+        return section == null ? null : section.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    // Save the given grid to a map file at the given path, with no sections
+    public static void save(Path path, Grid grid) throws IOException {
+        save(path, grid, Collections.emptyMap());
+    }
+
+    /*
+        Save the given grid to a map file at the given path, along with the given sections (from the
+        position to the limit of each buffer) by their id. The terrain costs of the grid are saved in their
+        own section if any cell has a cost other than 1, so the given sections can not use COSTS_SECTION as
+        their id. The file is written through a small buffer
+        rather than being built up in memory first. It is written to a temporary file which then replaces
+        the file at the given path, so a grid which is mapped from that file can safely be saved over it.
+     */
+    public static void save(Path path, Grid grid, Map<Integer, ByteBuffer> sections) throws IOException {
+        if (sections.containsKey(COSTS_SECTION))
+            throw new IllegalArgumentException("Section id " + COSTS_SECTION + " is used for the terrain costs.");
+        if (!grid.isUniform()) {
+            sections = new LinkedHashMap<>(sections);
+            sections.put(COSTS_SECTION, ByteBuffer.wrap(grid.getCosts()));
+        }
+        Path directory = path.toAbsolutePath().getParent();
+        Path temporary = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                buffer.putInt(MAGIC).putInt(VERSION).putInt(grid.getWidth()).putInt(grid.getHeight())
+                        .putInt(sections.size()).putInt(0);
+                for (int i = 0; i < grid.getWordCount(); i++) {
+                    if (buffer.remaining() < 8)
+                        flush(channel, buffer);
+                    buffer.putLong(grid.getWord(i));
+                }
+                for (Map.Entry<Integer, ByteBuffer> section : sections.entrySet()) {
+                    ByteBuffer data = section.getValue().duplicate();
+                    if (buffer.remaining() < SECTION_HEADER_SIZE)
+                        flush(channel, buffer);
+                    buffer.putInt(section.getKey()).putInt(0).putLong(data.remaining());
+                    long padding = padded(data.remaining()) - data.remaining();
+                    // Copy the data across a piece at a time, as it may be larger than the buffer
+                    while (data.hasRemaining()) {
+                        if (!buffer.hasRemaining())
+                            flush(channel, buffer);
+                        int count = Math.min(buffer.remaining(), data.remaining());
+                        ByteBuffer piece = data.duplicate();
+                        piece.limit(piece.position() + count);
+                        buffer.put(piece);
+                        data.position(data.position() + count);
+                    }
+                    for (long i = 0; i < padding; i++) {
+                        if (!buffer.hasRemaining())
+                            flush(channel, buffer);
+                        buffer.put((byte) 0);
+                    }
+                }
+                flush(channel, buffer);
+            }
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /*
+        Import a text map in the MovingAI benchmark format, which is a short header such as:
+            type octile
+            height 512
+            width 512
+            map
+        followed by one line of characters for each row. '.', 'G' and 'S' are open cells, and every other
+        character ('@', 'O', 'T', 'W') is treated as a wall. The map is read one line at a time, so only
+        the grid itself is held in memory. An IOException is thrown if the map is not in this format.
+     */
+    public static Grid importMovingAI(Path path) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.US_ASCII)) {
+            int width = -1;
+            int height = -1;
+            String line;
+            // Read the header up to the line "map", which comes just before the rows
+            while ((line = reader.readLine()) != null && !line.trim().equals("map")) {
+                String[] parts = line.trim().split("\\s+");
+                if (parts.length != 2)
+                    continue;
+                try {
+                    if (parts[0].equals("width"))
+                        width = Integer.parseInt(parts[1]);
+                    else if (parts[0].equals("height"))
+                        height = Integer.parseInt(parts[1]);
+                } catch (NumberFormatException e) {
+                    throw new IOException(path + " has an invalid " + parts[0] + ".", e);
+                }
+            }
+            if (line == null || width <= 0 || height <= 0)
+                throw new IOException(path + " is missing its width, height or map.");
+            if ((long) width * height > Integer.MAX_VALUE)
+                throw new IOException(path + " is too large to be loaded as a grid.");
+
+            Grid grid = new Grid(width, height);
+            for (int y = 0; y < height; y++) {
+                line = reader.readLine();
+                if (line == null || line.length() < width)
+                    throw new IOException(path + " has a missing or short row " + y + ".");
+                for (int x = 0; x < width; x++) {
+                    char c = line.charAt(x);
+                    if (c != '.' && c != 'G' && c != 'S')
+                        grid.setWall(grid.index(x, y), true);
+                }
+            }
+            return grid;
+        }
+    }
+
+    // Write the contents of the given buffer to the channel and empty the buffer
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+
+    // Round the given length up to a multiple of 8 bytes
+    private static long padded(long length) {
+        return (length + 7) & ~7L;
+    }
+}
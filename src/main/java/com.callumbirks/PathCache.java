@@ -0,0 +1,283 @@
+package com.callumbirks;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/*
+    The PathCache class remembers the results of recent searches, so that asking again for the path
+    between the same start and end nodes does not search the grid again. It holds at most a fixed
+    number of results, and when it is full the result which was used least recently is thrown away.
+
+    Rather than throwing every result away whenever the grid changes, each change only removes the
+    results it could affect:
+        - a cell which is blocked (made a wall, or made to cost more) only affects the paths which go
+          through it, or which move diagonally past its corner when it becomes a wall
+        - a cell which is opened (no longer a wall, or made to cost less) can only make a path cheaper if
+          the cheapest possible path through it, going straight over open ground to it from the start node
+          and straight from it to the end node, costs less than the path already found. So only the results
+          whose start and end nodes are close enough to the cell, along with any paths through the cell
+          (whose cost has changed), are removed. With diagonal moves, a wall being removed also allows
+          diagonal moves past its corners, so paths through the cells around it are checked in the same way.
+          A wall being removed can also join up areas of the grid which were separate, so it removes every
+          result which had no path as well.
+    The cache remembers the version of the grid (see Grid.getVersion) it was last brought up to date with,
+    so each result is only used for the version of the grid it is known to be correct for. If the grid has
+    been changed without the cache being told, every result is thrown away.
+ */
+public class PathCache {
+    // The grid the paths were found on
+    private final Grid grid;
+    // The largest number of results held at once
+    private final int capacity;
+    // The results by their start and end nodes, in order from the least to the most recently used
+    private final LinkedHashMap<Long, Entry> entries;
+    // The version of the grid which the results are up to date with
+    private long version;
+    // The number of lookups which found a result, and which did not
+    private long hits = 0;
+    private long misses = 0;
+    // The number of results removed because the grid changed, and because the cache was full
+    private long invalidations = 0;
+    private long evictions = 0;
+
+    /*
+        A single cached result: the path between its start and end nodes (or null if there is no path),
+        along with its cost and bound as reported in SearchStats. The cells of the path are also kept in
+        sorted order, so that checking whether a cell is on the path takes O(log n) time.
+     */
+    static class Entry {
+        final int start;
+        final int end;
+        final int[] cells;
+        final double cost;
+        final double bound;
+        private final int[] sortedCells;
+
+        private Entry(int start, int end, int[] cells, double cost, double bound) {
+            this.start = start;
+            this.end = end;
+            this.cells = cells;
+            this.cost = cost;
+            this.bound = bound;
+            if (cells == null) {
+                sortedCells = null;
+            } else {
+                sortedCells = cells.clone();
+                Arrays.sort(sortedCells);
+            }
+        }
+
+        // Check whether the given cell is on the path
+        private boolean contains(int cell) {
+            return sortedCells != null && Arrays.binarySearch(sortedCells, cell) >= 0;
+        }
+    }
+
+    // The constructor for the cache, taking the grid the paths are found on and the largest number of results to hold
+    PathCache(Grid grid, int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("Cache capacity must be positive.");
+        this.grid = grid;
+        this.capacity = capacity;
+        this.version = grid.getVersion();
+        // Access order, so that each lookup moves its result to the end as the most recently used
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /*
+        Look up the result for the given start and end nodes, returning null if there is none. Every lookup
+        is counted as either a hit or a miss.
+     */
+    Entry get(int start, int end) {
+        checkVersion();
+        Entry entry = entries.get(key(start, end));
+        if (entry == null)
+            misses++;
+        else
+            hits++;
+        return entry;
+    }
+
+    // Store the result of a search, throwing away the least recently used result if the cache is full
+    void put(int start, int end, int[] cells, double cost, double bound) {
+        checkVersion();
+        entries.put(key(start, end), new Entry(start, end, cells, cost, bound));
+        if (entries.size() > capacity) {
+            Iterator<Entry> eldest = entries.values().iterator();
+            eldest.next();
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    /*
+        Remove the results affected by the given cell being blocked, by it becoming a wall ('wallAdded') or its
+        terrain cost going up, given whether diagonal moves are allowed. This must be called straight after the
+        change has been made to the grid.
+     */
+    void cellBlocked(int cell, boolean wallAdded, boolean diagonal) {
+        if (!isOneChangeBehind())
+            return;
+        removeBlocked(cell, wallAdded, diagonal);
+        version = grid.getVersion();
+    }
+
+    /*
+        Remove the results affected by the given cell being opened, by it no longer being a wall ('wallRemoved')
+        or its terrain cost going down, given whether diagonal moves are allowed. This must be called straight
+        after the change has been made to the grid.
+     */
+    void cellOpened(int cell, boolean wallRemoved, boolean diagonal) {
+        if (!isOneChangeBehind())
+            return;
+        removeOpened(cell, wallRemoved, diagonal);
+        version = grid.getVersion();
+    }
+
+    /*
+        Remove the results affected by every one of the given cells becoming a wall ('wallsAdded') or no longer
+        being one, given whether diagonal moves are allowed. This must be called straight after the cells have
+        been changed as a single change to the grid (see Grid.setWalls).
+     */
+    void wallsChanged(BitSet cells, boolean wallsAdded, boolean diagonal) {
+        if (!isOneChangeBehind())
+            return;
+        for (int cell = cells.nextSetBit(0); cell >= 0 && !entries.isEmpty(); cell = cells.nextSetBit(cell + 1)) {
+            if (wallsAdded)
+                removeBlocked(cell, true, diagonal);
+            else
+                removeOpened(cell, true, diagonal);
+        }
+        version = grid.getVersion();
+    }
+
+    // Remove the results affected by the given cell being blocked, see cellBlocked
+    private void removeBlocked(int cell, boolean wallAdded, boolean diagonal) {
+        int x = grid.getX(cell);
+        int y = grid.getY(cell);
+        boolean corners = wallAdded && diagonal;
+        entries.values().removeIf(entry -> {
+            boolean affected = entry.contains(cell) || (corners && passesCorner(entry, x, y));
+            if (affected)
+                invalidations++;
+            return affected;
+        });
+    }
+
+    // Remove the results affected by the given cell being opened, see cellOpened
+    private void removeOpened(int cell, boolean wallRemoved, boolean diagonal) {
+        int x = grid.getX(cell);
+        int y = grid.getY(cell);
+        // A new diagonal move past the cell's corner goes through one of the cells around it instead
+        int reach = wallRemoved && diagonal ? 1 : 0;
+        entries.values().removeIf(entry -> {
+            boolean affected;
+            if (entry.cells == null) {
+                // Only a removed wall can join up the start and end nodes
+                affected = wallRemoved;
+            } else {
+                affected = entry.contains(cell);
+                for (int nx = x - reach; nx <= x + reach && !affected; nx++) {
+                    for (int ny = y - reach; ny <= y + reach && !affected; ny++) {
+                        if (grid.isInGrid(nx, ny))
+                            affected = lowestCost(entry, nx, ny, diagonal) < entry.cost * WeightedSearch.ORTHOGONAL;
+                    }
+                }
+            }
+            if (affected)
+                invalidations++;
+            return affected;
+        });
+    }
+
+    // Calculate the cheapest a path through the given co-ordinates could possibly cost, in the units of WeightedSearch
+    private long lowestCost(Entry entry, int x, int y, boolean diagonal) {
+        return (long) WeightedSearch.calculateH(grid.getX(entry.start), grid.getY(entry.start), x, y, diagonal)
+                + WeightedSearch.calculateH(x, y, grid.getX(entry.end), grid.getY(entry.end), diagonal);
+    }
+
+    /*
+        Check whether the path may move diagonally past the corner of the cell at the given co-ordinates, which
+        is when two of the cells beside it which are diagonal to each other are both on the path.
+     */
+    private boolean passesCorner(Entry entry, int x, int y) {
+        boolean up = y > 0 && entry.contains(grid.index(x, y - 1));
+        boolean right = x < grid.getWidth() - 1 && entry.contains(grid.index(x + 1, y));
+        boolean down = y < grid.getHeight() - 1 && entry.contains(grid.index(x, y + 1));
+        boolean left = x > 0 && entry.contains(grid.index(x - 1, y));
+        return (up || down) && (left || right);
+    }
+
+    // Remove every result, for example because the search used to find them has changed
+    void clear() {
+        entries.clear();
+        version = grid.getVersion();
+    }
+
+    /*
+        Check whether exactly one change has been made to the grid since the cache was last brought up to
+        date, which is the change the cache is being told about. If more changes have been made, the cache
+        can not tell what they were, so every result is removed and false is returned.
+     */
+    private boolean isOneChangeBehind() {
+        if (grid.getVersion() == version + 1)
+            return true;
+        checkVersion();
+        return false;
+    }
+
+    /*
+        If the grid has changed since the cache was last brought up to date, without the cache being told
+        what changed, remove every result. Returns true if the results were removed.
+     */
+    private boolean checkVersion() {
+        if (version == grid.getVersion())
+            return false;
+        invalidations += entries.size();
+        clear();
+        return true;
+    }
+
+    // Combine the start and end nodes into a single key
+    private static long key(int start, int end) {
+        return ((long) start << 32) | (end & 0xFFFFFFFFL);
+    }
+
+    // Getter for the number of results currently held
+    public int size() {
+        return entries.size();
+    }
+
+    // Getter for the largest number of results held at once
+    public int getCapacity() {
+        return capacity;
+    }
+
+    // Getter for the number of lookups which found a result
+    public long getHits() {
+        return hits;
+    }
+
+    // Getter for the number of lookups which did not find a result
+    public long getMisses() {
+        return misses;
+    }
+
+    // Getter for the number of results removed because the grid changed
+    public long getInvalidations() {
+        return invalidations;
+    }
+
+    // Getter for the number of results removed because the cache was full
+    public long getEvictions() {
+        return evictions;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d/%d cached, %d hits, %d misses, %d invalidated, %d evicted",
+                entries.size(), capacity, hits, misses, invalidations, evictions);
+    }
+}
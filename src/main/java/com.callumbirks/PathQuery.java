@@ -0,0 +1,42 @@
+package com.callumbirks;
+
+/*
+    The PathQuery class represents one search in a batch of searches, holding the
+    co-ordinates of the start node and the end node of the path to be found.
+ */
+public class PathQuery {
+    // The co-ordinates of the start node
+    private final int startX;
+    private final int startY;
+    // The co-ordinates of the end node
+    private final int endX;
+    private final int endY;
+
+    // The constructor for the query, taking the co-ordinates of the start node and the end node
+    public PathQuery(int startX, int startY, int endX, int endY) {
+        this.startX = startX;
+        this.startY = startY;
+        this.endX = endX;
+        this.endY = endY;
+    }
+
+    // Getter for the x co-ordinate of the start node
+    public int getStartX() {
+        return startX;
+    }
+
+    // Getter for the y co-ordinate of the start node
+    public int getStartY() {
+        return startY;
+    }
+
+    // Getter for the x co-ordinate of the end node
+    public int getEndX() {
+        return endX;
+    }
+
+    // Getter for the y co-ordinate of the end node
+    public int getEndY() {
+        return endY;
+    }
+}
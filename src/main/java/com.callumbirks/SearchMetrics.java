@@ -0,0 +1,236 @@
+package com.callumbirks;
+
+import com.sun.management.ThreadMXBean;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+    The SearchMetrics class adds up the statistics of every search run through an AStar object, so that
+    the overall behaviour of the searches can be watched while the application runs. Searches can be run
+    on several threads at once (see BackgroundSearch and BatchSearch), so every total is safe to update
+    from any thread. The single instance is registered with the platform MBean server the first time it
+    is used, under the name "com.callumbirks:type=SearchMetrics". If it can not be registered (for example
+    because another copy of the class has already registered that name) the totals are still kept, they
+    just can not be watched over JMX.
+
+    The memory allocated by each search is also counted. Every search runs from start to finish on a single
+    thread, so the bytes it allocated are the difference between the bytes the JVM reports that thread has
+    allocated before and after it (see allocatedBytes).
+ */
+public class SearchMetrics implements SearchMetricsMXBean {
+    // The name the metrics are registered under
+    public static final String OBJECT_NAME = "com.callumbirks:type=SearchMetrics";
+    // The number of entries in each histogram, enough for any long value
+    private static final int BUCKETS = 64;
+    // The JVM's statistics of its threads, or null if it can not report the bytes allocated by a thread
+    private static final ThreadMXBean THREADS = allocationCounter();
+
+    /*
+        Holds the single instance, which the JVM creates and registers the first time getInstance is called,
+        without getInstance needing to lock on every search.
+     */
+    private static class Holder {
+        static final SearchMetrics INSTANCE = register(new SearchMetrics());
+    }
+
+    private final LongAdder searchCount = new LongAdder();
+    private final LongAdder pathsFound = new LongAdder();
+    private final LongAdder totalExpanded = new LongAdder();
+    private final LongAdder totalPushed = new LongAdder();
+    private final LongAdder totalDecreaseKeys = new LongAdder();
+    private final LongAccumulator maxPeakOpen = new LongAccumulator(Math::max, 0);
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+    private final AtomicLongArray latencyHistogram = new AtomicLongArray(BUCKETS);
+    private final AtomicLongArray expandedHistogram = new AtomicLongArray(BUCKETS);
+    private final LongAdder totalAllocatedBytes = new LongAdder();
+    private final AtomicLongArray allocatedHistogram = new AtomicLongArray(BUCKETS);
+
+    // The constructor is private, the single instance is obtained through getInstance
+    private SearchMetrics() {
+    }
+
+    /*
+        Getter for the single instance of the metrics, which registers it with the platform MBean server the
+        first time it is called
+     */
+    public static SearchMetrics getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    // Register the given metrics with the platform MBean server, leaving them unregistered if that fails
+    private static SearchMetrics register(SearchMetrics metrics) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, new ObjectName(OBJECT_NAME));
+        } catch (JMException e) {
+            // The totals are still kept, they just can not be watched over JMX
+        }
+        return metrics;
+    }
+
+    // Find the JVM's statistics of its threads, if it can report the bytes each thread has allocated
+    private static ThreadMXBean allocationCounter() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof ThreadMXBean))
+            return null;
+        ThreadMXBean counter = (ThreadMXBean) threads;
+        if (!counter.isThreadAllocatedMemorySupported() || !counter.isThreadAllocatedMemoryEnabled())
+            return null;
+        return counter;
+    }
+
+    /*
+        Getter for the total bytes of memory allocated by the current thread since it started, or -1 if the JVM
+        can not report them. Only the difference between two calls on the same thread has any meaning.
+     */
+    static long allocatedBytes() {
+        return THREADS == null ? -1 : THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    // Calculate the bytes the current thread has allocated since allocatedBytes gave the given value, or -1
+    static long allocatedSince(long startBytes) {
+        if (startBytes < 0)
+            return -1;
+        long bytes = allocatedBytes();
+        return bytes < 0 ? -1 : bytes - startBytes;
+    }
+
+    // Add the statistics of a single search to the totals
+    void record(SearchStats stats) {
+        searchCount.increment();
+        if (stats.getPathLength() >= 0)
+            pathsFound.increment();
+        totalExpanded.add(stats.getExpanded());
+        totalPushed.add(stats.getPushed());
+        totalDecreaseKeys.add(stats.getDecreaseKeys());
+        maxPeakOpen.accumulate(stats.getPeakOpen());
+        totalNanos.add(stats.getNanos());
+        maxNanos.accumulate(stats.getNanos());
+        latencyHistogram.incrementAndGet(bucket(stats.getNanos() / 1000));
+        expandedHistogram.incrementAndGet(bucket(stats.getExpanded()));
+        if (stats.getAllocatedBytes() >= 0) {
+            totalAllocatedBytes.add(stats.getAllocatedBytes());
+            allocatedHistogram.incrementAndGet(bucket(stats.getAllocatedBytes()));
+        }
+    }
+
+    // Count a path which was found in a path cache, so no search was needed
+    void recordCacheHit() {
+        cacheHits.increment();
+    }
+
+    // Count a path which was not found in a path cache, so it had to be searched for
+    void recordCacheMiss() {
+        cacheMisses.increment();
+    }
+
+    // Find the histogram entry for the given value, which is the number of bits needed to write it
+    private static int bucket(long value) {
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(Math.max(0, value)));
+    }
+
+    // Copy a histogram into a plain array
+    private static long[] toArray(AtomicLongArray histogram) {
+        long[] counts = new long[histogram.length()];
+        for (int i = 0; i < counts.length; i++)
+            counts[i] = histogram.get(i);
+        return counts;
+    }
+
+    @Override
+    public long getSearchCount() {
+        return searchCount.sum();
+    }
+
+    @Override
+    public long getPathsFound() {
+        return pathsFound.sum();
+    }
+
+    @Override
+    public long getTotalExpanded() {
+        return totalExpanded.sum();
+    }
+
+    @Override
+    public long getTotalPushed() {
+        return totalPushed.sum();
+    }
+
+    @Override
+    public long getTotalDecreaseKeys() {
+        return totalDecreaseKeys.sum();
+    }
+
+    @Override
+    public long getMaxPeakOpen() {
+        return maxPeakOpen.get();
+    }
+
+    @Override
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    @Override
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    @Override
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    @Override
+    public long getCacheMisses() {
+        return cacheMisses.sum();
+    }
+
+    @Override
+    public long getTotalAllocatedBytes() {
+        return totalAllocatedBytes.sum();
+    }
+
+    @Override
+    public long[] getLatencyHistogram() {
+        return toArray(latencyHistogram);
+    }
+
+    @Override
+    public long[] getExpandedHistogram() {
+        return toArray(expandedHistogram);
+    }
+
+    @Override
+    public long[] getAllocatedHistogram() {
+        return toArray(allocatedHistogram);
+    }
+
+    @Override
+    public void reset() {
+        searchCount.reset();
+        pathsFound.reset();
+        totalExpanded.reset();
+        totalPushed.reset();
+        totalDecreaseKeys.reset();
+        maxPeakOpen.reset();
+        totalNanos.reset();
+        maxNanos.reset();
+        cacheHits.reset();
+        cacheMisses.reset();
+        totalAllocatedBytes.reset();
+        for (int i = 0; i < BUCKETS; i++) {
+            latencyHistogram.set(i, 0);
+            expandedHistogram.set(i, 0);
+            allocatedHistogram.set(i, 0);
+        }
+    }
+}
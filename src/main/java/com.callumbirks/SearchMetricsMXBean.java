@@ -0,0 +1,55 @@
+package com.callumbirks;
+
+/*
+    The management interface of SearchMetrics, which makes the totals of every search available over JMX
+    (for example in JConsole or VisualVM) under the name "com.callumbirks:type=SearchMetrics".
+
+    Each histogram is an array of counts, where entry i counts the searches whose value was at least 2^(i-1)
+    and less than 2^i, so entry 0 counts the searches whose value was 0. The last entry also counts every
+    larger value.
+ */
+public interface SearchMetricsMXBean {
+    // The number of searches recorded
+    long getSearchCount();
+
+    // The number of searches recorded which found a path
+    long getPathsFound();
+
+    // The total number of nodes expanded by every search
+    long getTotalExpanded();
+
+    // The total number of nodes pushed onto the open set by every search
+    long getTotalPushed();
+
+    // The total number of decrease-key operations by every search
+    long getTotalDecreaseKeys();
+
+    // The largest open set of any search
+    long getMaxPeakOpen();
+
+    // The total time taken by every search, in nanoseconds
+    long getTotalNanos();
+
+    // The longest time taken by any search, in nanoseconds
+    long getMaxNanos();
+
+    // The number of paths asked for which were found in a path cache, and which were not
+    long getCacheHits();
+
+    long getCacheMisses();
+
+    // The total bytes of memory allocated by every search whose allocation could be measured
+    long getTotalAllocatedBytes();
+
+    // A histogram of the time taken by each search, in microseconds
+    long[] getLatencyHistogram();
+
+    // A histogram of the number of nodes expanded by each search
+    long[] getExpandedHistogram();
+
+    // A histogram of the bytes of memory allocated by each search whose allocation could be measured
+    long[] getAllocatedHistogram();
+
+    // Set every total and histogram back to zero
+    void reset();
+}
@@ -0,0 +1,108 @@
+package com.callumbirks;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.CancellationException;
+
+/*
+    The SearchState class holds the values that a search algorithm stores for each cell of the
+    grid, as flat arrays indexed by the index of the cell (y * width + x), along with the open set.
+    Rather than resetting the values of every cell at the start of each search, each cell stores
+    the number of the last search (its generation) that used it. The first time a cell is used by
+    a search it is "touched", which resets its values, so a search only pays for the cells it
+    actually visits instead of for the whole grid.
+ */
+class SearchState {
+    // The value used to represent infinity for f(n) and g(n)
+    static final int INFINITY = Integer.MAX_VALUE;
+    // The value used to represent "no cell", for example the previous cell of the start cell
+    static final int NONE = -1;
+    // The f(n) value of each cell
+    final int[] f;
+    // The g(n) value of each cell
+    final int[] g;
+    // The h(n) value of each cell
+    final int[] h;
+    // The index of the previous cell along the path for each cell
+    final int[] previous;
+    // The open set, ordered by f(n) with ties broken by h(n)
+    final IndexedHeap openSet;
+    // The generation in which each cell's values were last reset
+    private final int[] generations;
+    // The generation of the current search, a cell whose generation differs has out of date values
+    private int generation = 0;
+
+    // The constructor for the search state, taking the number of cells in the grid
+    SearchState(int size) {
+        f = new int[size];
+        g = new int[size];
+        h = new int[size];
+        previous = new int[size];
+        generations = new int[size];
+        openSet = new IndexedHeap(size, f, h);
+    }
+
+    /*
+        Start a new search, which makes every cell's values out of date and empties the open set.
+        In the very unlikely event that the generation counter wraps around, the generation of every
+        cell is cleared so that an old value can not be mistaken for a current one.
+     */
+    void begin() {
+        generation++;
+        if (generation == 0) {
+            Arrays.fill(generations, 0);
+            generation = 1;
+        }
+        openSet.clear();
+    }
+
+    /*
+        Prepare the given cell to be used by the current search, resetting its f(n), g(n) and previous
+        values if it has not yet been used by this search. Returns true if the cell was reset, in which
+        case the caller must calculate its h(n) value.
+     */
+    boolean touch(int cell) {
+        // If this cell has already been used during this search, its values are already correct
+        if (generations[cell] == generation)
+            return false;
+        generations[cell] = generation;
+        f[cell] = INFINITY;
+        g[cell] = INFINITY;
+        previous[cell] = NONE;
+        return true;
+    }
+
+    // Check whether the given cell has been used by the current search
+    boolean isTouched(int cell) {
+        return generations[cell] == generation;
+    }
+
+    /*
+        Fill in the cells used by the current search, setting the bit of each cell still in the open set
+        in 'open' and of every other cell the search has reached in 'closed'. This checks every cell, so
+        it takes time proportional to the size of the grid.
+     */
+    void getSearchedCells(BitSet open, BitSet closed) {
+        // Before the first search, no cell has been used
+        if (generation == 0)
+            return;
+        for (int cell = 0; cell < generations.length; cell++) {
+            if (generations[cell] != generation)
+                continue;
+            if (openSet.contains(cell))
+                open.set(cell);
+            else
+                closed.set(cell);
+        }
+    }
+
+    /*
+        Stop the current search by throwing a CancellationException if the thread running it has been
+        interrupted, which happens when a search running in the background is replaced by a newer one.
+        The searches call this once for each node they test, so that a cancelled search stops quickly.
+     */
+    static void checkCancelled() {
+        if (Thread.currentThread().isInterrupted())
+            throw new CancellationException("The search was cancelled.");
+    }
+}
@@ -0,0 +1,105 @@
+package com.callumbirks;
+
+/*
+    The SearchStats class holds the statistics of a single search, which show how much work the search
+    did. The counts come from the open set (or both open sets, for a bidirectional search):
+        - expanded: the number of nodes taken from the open set to be tested
+        - pushed: the number of nodes added to the open set
+        - decreaseKeys: the number of times a node already in the open set was moved because its values changed
+        - peakOpen: the largest number of nodes waiting in the open set at once
+    along with the time the search took, the bytes of memory it allocated, and the length and cost of the
+    path it found. The bytes are measured on the thread the search ran on, as every search runs on one
+    thread, and are -1 if the JVM can not measure them (see SearchMetrics.allocatedBytes). The cost is
+    measured in orthogonal moves onto a cell with a terrain cost of 1, so without terrain costs or
+    diagonal moves it is the number of moves along the path. A search which found no path has a path
+    length and cost of -1. The bound is the most the path can cost as a multiple of the cost of the
+    cheapest path, which is 1 for the searches which always find the cheapest path, and NaN for the
+    hierarchical search, which does not know how close its path is. When no path is found the bound is 1,
+    as every search is certain when there is no path. A result which was taken from the path cache
+    rather than searched for has no work counted.
+ */
+public class SearchStats {
+    private final long expanded;
+    private final long pushed;
+    private final long decreaseKeys;
+    private final int peakOpen;
+    private final long nanos;
+    private final long allocatedBytes;
+    private final int pathLength;
+    private final double pathCost;
+    private final double bound;
+    private final boolean cached;
+
+    // The constructor for the statistics, taking each of the values
+    SearchStats(long expanded, long pushed, long decreaseKeys, int peakOpen, long nanos, long allocatedBytes,
+                int pathLength, double pathCost, double bound, boolean cached) {
+        this.expanded = expanded;
+        this.pushed = pushed;
+        this.decreaseKeys = decreaseKeys;
+        this.peakOpen = peakOpen;
+        this.nanos = nanos;
+        this.allocatedBytes = allocatedBytes;
+        this.pathLength = pathLength;
+        this.pathCost = pathCost;
+        this.bound = bound;
+        this.cached = cached;
+    }
+
+    // Getter for the number of nodes taken from the open set to be tested
+    public long getExpanded() {
+        return expanded;
+    }
+
+    // Getter for the number of nodes added to the open set
+    public long getPushed() {
+        return pushed;
+    }
+
+    // Getter for the number of times a node in the open set was moved because its values changed
+    public long getDecreaseKeys() {
+        return decreaseKeys;
+    }
+
+    // Getter for the largest number of nodes in the open set at once
+    public int getPeakOpen() {
+        return peakOpen;
+    }
+
+    // Getter for the time the search took, in nanoseconds
+    public long getNanos() {
+        return nanos;
+    }
+
+    // Getter for the bytes of memory allocated by the search, or -1 if they could not be measured
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    // Getter for the number of nodes on the path found, including the start and end nodes, or -1 if there is no path
+    public int getPathLength() {
+        return pathLength;
+    }
+
+    // Getter for the total cost of the moves along the path found, or -1 if there is no path
+    public double getPathCost() {
+        return pathCost;
+    }
+
+    // Getter for the most the path can cost as a multiple of the cost of the cheapest path, or NaN if this is not known
+    public double getBound() {
+        return bound;
+    }
+
+    // Check whether the result was taken from the path cache rather than searched for
+    public boolean isCached() {
+        return cached;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("expanded %d, pushed %d, decrease-keys %d, peak open %d, %.3f ms, path length %d, cost %.1f, bound %.2f",
+                expanded, pushed, decreaseKeys, peakOpen, nanos / 1e6, pathLength, pathCost, bound)
+                + (allocatedBytes >= 0 ? String.format(", allocated %.1f KB", allocatedBytes / 1024.0) : "")
+                + (cached ? ", cached" : "");
+    }
+}
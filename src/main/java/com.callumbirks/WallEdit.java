@@ -0,0 +1,187 @@
+package com.callumbirks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/*
+    The WallEdit class describes a batch of walls to add or remove in one go, made up of any number of shapes:
+    single cells, rectangles, lines, round brushes and flood fills. Nothing is changed until the edit is given
+    to AStar.setWalls, which applies the whole batch as a single change to the grid, so the grid's version
+    only goes up once and the path only needs to be found again once, however many cells the edit covers.
+
+    The shapes are only worked out against the grid when the edit is applied, and any part of a shape outside
+    of the grid is ignored. A flood fill covers the area joined up to its cell (up, down, left and right) which
+    is the opposite of what the edit sets it to, as the grid was before the edit was applied, so flood filling
+    an open cell with walls fills the whole open area around it, and flood filling a wall while removing walls
+    clears the whole block of walls it is part of.
+
+    The methods which add a shape return the edit itself, so that a batch can be built up in a single statement.
+ */
+public final class WallEdit {
+    // The kinds of shape an edit can be made of
+    private static final int RECTANGLE = 0;
+    private static final int LINE = 1;
+    private static final int BRUSH = 2;
+    private static final int FLOOD_FILL = 3;
+    // Whether the edit adds walls (true) or removes them (false)
+    private final boolean wall;
+    // The shapes of the edit in the order they were added, each as its kind followed by its co-ordinates
+    private final List<int[]> shapes = new ArrayList<>();
+
+    // The constructor for an empty edit, taking whether it adds walls (true) or removes them (false)
+    public WallEdit(boolean wall) {
+        this.wall = wall;
+    }
+
+    // Getter for whether the edit adds walls (true) or removes them (false)
+    public boolean isWall() {
+        return wall;
+    }
+
+    // Check whether the edit has no shapes
+    public boolean isEmpty() {
+        return shapes.isEmpty();
+    }
+
+    // Add the cell at the given co-ordinates to the edit
+    public WallEdit cell(int x, int y) {
+        return rectangle(x, y, x, y);
+    }
+
+    // Add the rectangle with the given opposite corners to the edit, including the corners themselves
+    public WallEdit rectangle(int x1, int y1, int x2, int y2) {
+        shapes.add(new int[] {RECTANGLE, x1, y1, x2, y2});
+        return this;
+    }
+
+    /*
+        Add the straight line between the given cells to the edit, including both ends, using Bresenham's line
+        algorithm. Joining up the points of a mouse drag with lines means no cells are skipped when the mouse
+        moves more than one cell between events.
+     */
+    public WallEdit line(int x1, int y1, int x2, int y2) {
+        shapes.add(new int[] {LINE, x1, y1, x2, y2});
+        return this;
+    }
+
+    // Add the round brush centred on the given cell to the edit, covering every cell within the given radius of it
+    public WallEdit brush(int x, int y, int radius) {
+        if (radius < 0)
+            throw new IllegalArgumentException("The brush radius must not be negative.");
+        shapes.add(new int[] {BRUSH, x, y, radius});
+        return this;
+    }
+
+    // Add a flood fill starting at the given cell to the edit, see the description of the class
+    public WallEdit floodFill(int x, int y) {
+        shapes.add(new int[] {FLOOD_FILL, x, y});
+        return this;
+    }
+
+    // Work out every cell of the grid covered by the shapes of the edit, using the grid as it is now
+    BitSet getCells(Grid grid) {
+        BitSet cells = new BitSet();
+        for (int[] shape : shapes) {
+            if (shape[0] == RECTANGLE)
+                addRectangle(grid, cells, shape[1], shape[2], shape[3], shape[4]);
+            else if (shape[0] == LINE)
+                addLine(grid, cells, shape[1], shape[2], shape[3], shape[4]);
+            else if (shape[0] == BRUSH)
+                addBrush(grid, cells, shape[1], shape[2], shape[3]);
+            else
+                addFloodFill(grid, cells, shape[1], shape[2]);
+        }
+        return cells;
+    }
+
+    // Add the cells of the rectangle with the given corners which are inside the grid
+    private static void addRectangle(Grid grid, BitSet cells, int x1, int y1, int x2, int y2) {
+        int left = Math.max(Math.min(x1, x2), 0);
+        int right = Math.min(Math.max(x1, x2), grid.getWidth() - 1);
+        int top = Math.max(Math.min(y1, y2), 0);
+        int bottom = Math.min(Math.max(y1, y2), grid.getHeight() - 1);
+        if (left > right)
+            return;
+        // Each row of the rectangle is a run of consecutive indexes
+        for (int y = top; y <= bottom; y++)
+            cells.set(grid.index(left, y), grid.index(right, y) + 1);
+    }
+
+    /*
+        Add the cells of the line between the given cells which are inside the grid. Bresenham's algorithm steps
+        one cell at a time along the longer axis, keeping track of how far the line has drifted from the centre
+        of the current cell along the other axis, and also steps along that axis whenever the drift passes half
+        a cell, using only integer arithmetic.
+     */
+    private static void addLine(Grid grid, BitSet cells, int x1, int y1, int x2, int y2) {
+        long dx = Math.abs((long) x2 - x1);
+        long dy = -Math.abs((long) y2 - y1);
+        int stepX = x1 < x2 ? 1 : -1;
+        int stepY = y1 < y2 ? 1 : -1;
+        long error = dx + dy;
+        int x = x1;
+        int y = y1;
+        while (true) {
+            if (grid.isInGrid(x, y))
+                cells.set(grid.index(x, y));
+            if (x == x2 && y == y2)
+                break;
+            long doubled = 2 * error;
+            if (doubled >= dy) {
+                error += dy;
+                x += stepX;
+            }
+            if (doubled <= dx) {
+                error += dx;
+                y += stepY;
+            }
+        }
+    }
+
+    // Add the cells within the given radius of the given cell which are inside the grid
+    private static void addBrush(Grid grid, BitSet cells, int centreX, int centreY, int radius) {
+        long radiusSquared = (long) radius * radius;
+        for (int dy = -radius; dy <= radius; dy++) {
+            // The half width of the row of the circle dy rows from its centre
+            int half = (int) Math.sqrt(radiusSquared - (long) dy * dy);
+            addRectangle(grid, cells, centreX - half, centreY + dy, centreX + half, centreY + dy);
+        }
+    }
+
+    /*
+        Add the area joined up to the given cell whose cells are the opposite of what the edit sets them to, using
+        a depth-first search with a stack of cells. Nothing is added if the cell is already as wanted, or is
+        outside of the grid.
+     */
+    private void addFloodFill(Grid grid, BitSet cells, int x, int y) {
+        if (!grid.isInGrid(x, y) || grid.isWall(grid.index(x, y)) == wall)
+            return;
+        BitSet filled = new BitSet();
+        int[] stack = new int[16];
+        int top = 0;
+        stack[top++] = grid.index(x, y);
+        filled.set(grid.index(x, y));
+        int width = grid.getWidth();
+        // The cells up, right, down and left of the current cell, or -1 for those outside of the grid
+        int[] around = new int[4];
+        while (top > 0) {
+            int cell = stack[--top];
+            int cellX = cell % width;
+            around[0] = cell >= width ? cell - width : -1;
+            around[1] = cellX < width - 1 ? cell + 1 : -1;
+            around[2] = cell < grid.getSize() - width ? cell + width : -1;
+            around[3] = cellX > 0 ? cell - 1 : -1;
+            for (int next : around) {
+                if (next < 0 || filled.get(next) || grid.isWall(next) == wall)
+                    continue;
+                filled.set(next);
+                if (top == stack.length)
+                    stack = Arrays.copyOf(stack, stack.length * 2);
+                stack[top++] = next;
+            }
+        }
+        cells.or(filled);
+    }
+}
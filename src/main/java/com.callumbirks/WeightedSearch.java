@@ -0,0 +1,211 @@
+package com.callumbirks;
+
+/*
+    This class contains the A* algorithm for grids where moves do not all cost the same, either because
+    some cells have a terrain cost other than 1, or because diagonal moves are allowed. It is kept apart
+    from AStarSearch so that the common case, where every move costs 1 and only the 4 orthogonal
+    neighbours are used, keeps its simpler and faster loop.
+
+    Moving onto a cell costs ORTHOGONAL times the terrain cost of that cell for an orthogonal move, or
+    DIAGONAL times the terrain cost for a diagonal move, so DIAGONAL / ORTHOGONAL approximates the square
+    root of 2 while every cost stays an integer. A diagonal move may not cut a corner: both of the cells
+    it passes between must be open. This means every diagonal move could also be made as two orthogonal
+    moves, so the cells which can be reached are the same whether or not diagonal moves are allowed.
+ */
+class WeightedSearch {
+    // The cost of an orthogonal move onto a cell with a terrain cost of 1
+    static final int ORTHOGONAL = 10;
+    // The cost of a diagonal move onto a cell with a terrain cost of 1
+    static final int DIAGONAL = 14;
+    // The largest number of moves which can be made from one cell
+    static final int MAX_MOVES = 8;
+    // The value used to represent "no cell", for example the previous cell of the start cell
+    private static final int NONE = SearchState.NONE;
+    // The value used to represent infinity for g(n)
+    private static final int INFINITY = SearchState.INFINITY;
+    // The grid being searched
+    private final Grid grid;
+    // The values for each cell and the open set
+    private final SearchState state;
+    // The co-ordinates of the end node for the current run, used when calculating h(n)
+    private int endX;
+    private int endY;
+    // Whether diagonal moves are allowed in the current run
+    private boolean diagonal;
+    // The weight h(n) is multiplied by, where a weight above 1 trades the length of the path for speed
+    private double weight = 1;
+    // The landmark tables used to improve h(n), or null to use only the distance over open ground
+    private Landmarks landmarks = null;
+    // The distance from each landmark to the end node for the current run, or null if there are no landmarks
+    private int[] landmarkTarget = null;
+
+    // The constructor for the search, taking the grid to search and the search state to use
+    WeightedSearch(Grid grid, SearchState state) {
+        this.grid = grid;
+        this.state = state;
+    }
+
+    /*
+        Setter for the weight h(n) is multiplied by, which must be at least 1. With a weight of w, the path
+        found costs at most w times as much as the cheapest path, but far fewer nodes are usually tested.
+     */
+    void setWeight(double weight) {
+        this.weight = weight;
+    }
+
+    /*
+        Setter for the landmark tables used to improve h(n) (see Landmarks), or null to use only the distance
+        over open ground. The tables must be a lower bound for the grid as it is now.
+     */
+    void setLandmarks(Landmarks landmarks) {
+        this.landmarks = landmarks;
+    }
+
+    /*
+        This function runs the algorithm. It takes the indexes of the start and end nodes as parameters,
+        along with whether diagonal moves are allowed. If the cheapest path is found, it is returned as an
+        array holding the index of every cell along it in order, including the start and end nodes. If
+        there is no path between the two, null is returned instead. The cost of the path found is left in
+        the g(n) value of the end node.
+     */
+    int[] findPath(int start, int end, boolean diagonal) {
+        int[] f = state.f;
+        int[] g = state.g;
+        int[] h = state.h;
+        int[] previous = state.previous;
+        IndexedHeap openSet = state.openSet;
+
+        state.begin();
+        endX = grid.getX(end);
+        endY = grid.getY(end);
+        this.diagonal = diagonal;
+        landmarkTarget = landmarks == null ? null : landmarks.distancesTo(end);
+        touch(start);
+        g[start] = 0;
+        f[start] = h[start];
+        openSet.add(start);
+
+        // The neighbours of the current cell and the cost of the move to each, a cell has at most 8 neighbours
+        int[] neighbours = new int[MAX_MOVES];
+        int[] moveCosts = new int[MAX_MOVES];
+
+        while (!openSet.isEmpty()) {
+            // Stop if this search has been cancelled
+            SearchState.checkCancelled();
+            int current = openSet.poll();
+            if (current == end)
+                return reconstructPath(current);
+
+            int count = getMoves(grid, current, diagonal, neighbours, moveCosts);
+            for (int i = 0; i < count; i++) {
+                int neighbour = neighbours[i];
+                touch(neighbour);
+                // Add up the cost as a long, so that a very long path through costly terrain can not overflow
+                long tempG = (long) g[current] + moveCosts[i];
+                if (tempG < g[neighbour] && tempG + h[neighbour] < INFINITY) {
+                    previous[neighbour] = current;
+                    g[neighbour] = (int) tempG;
+                    f[neighbour] = (int) tempG + h[neighbour];
+                    if (openSet.contains(neighbour))
+                        openSet.decreaseKey(neighbour);
+                    else
+                        openSet.add(neighbour);
+                }
+            }
+        }
+        // The open set is empty without reaching the end node, so there is no path
+        return null;
+    }
+
+    /*
+        Calculate the moves which can be made from the cell with the given index. The neighbours moved to
+        are written into 'neighbours' and the cost of each move into 'moveCosts' (both of which must have
+        room for MAX_MOVES values), orthogonal moves first in the order up, right, down, left, then the
+        diagonal moves if they are allowed. The number of moves written is returned.
+     */
+    static int getMoves(Grid grid, int current, boolean diagonal, int[] neighbours, int[] moveCosts) {
+        int width = grid.getWidth();
+        // Work out which of the orthogonal neighbours are open, as the diagonal moves depend on them
+        int x = current % width;
+        boolean up = current >= width && !grid.isWall(current - width);
+        boolean right = x < width - 1 && !grid.isWall(current + 1);
+        boolean down = current < grid.getSize() - width && !grid.isWall(current + width);
+        boolean left = x > 0 && !grid.isWall(current - 1);
+        int count = 0;
+        if (up) count = addMove(grid, neighbours, moveCosts, count, current - width, ORTHOGONAL);
+        if (right) count = addMove(grid, neighbours, moveCosts, count, current + 1, ORTHOGONAL);
+        if (down) count = addMove(grid, neighbours, moveCosts, count, current + width, ORTHOGONAL);
+        if (left) count = addMove(grid, neighbours, moveCosts, count, current - 1, ORTHOGONAL);
+        if (diagonal) {
+            // A diagonal neighbour can only be moved to if both cells beside the move are open
+            if (up && right && !grid.isWall(current - width + 1))
+                count = addMove(grid, neighbours, moveCosts, count, current - width + 1, DIAGONAL);
+            if (down && right && !grid.isWall(current + width + 1))
+                count = addMove(grid, neighbours, moveCosts, count, current + width + 1, DIAGONAL);
+            if (down && left && !grid.isWall(current + width - 1))
+                count = addMove(grid, neighbours, moveCosts, count, current + width - 1, DIAGONAL);
+            if (up && left && !grid.isWall(current - width - 1))
+                count = addMove(grid, neighbours, moveCosts, count, current - width - 1, DIAGONAL);
+        }
+        return count;
+    }
+
+    // Add a move to the given neighbour, costing the given multiple of its terrain cost, and return the new count
+    private static int addMove(Grid grid, int[] neighbours, int[] moveCosts, int count, int neighbour, int multiple) {
+        neighbours[count] = neighbour;
+        moveCosts[count] = multiple * grid.getCost(neighbour);
+        return count + 1;
+    }
+
+    // Prepare the given cell to be used by the current run, calculating its h(n) value the first time it is used
+    private void touch(int cell) {
+        if (state.touch(cell)) {
+            int h = calculateH(grid.getX(cell), grid.getY(cell), endX, endY, diagonal);
+            if (landmarkTarget != null)
+                h = Math.max(h, calculateLandmarkH(landmarks, cell, landmarkTarget, diagonal));
+            state.h[cell] = weight == 1 ? h : (int) Math.min(weight * h, INFINITY - 1);
+        }
+    }
+
+    /*
+        Calculate the h(n) value for a node at the given co-ordinates, given the co-ordinates of the end node.
+        Every cell costs at least 1 to move onto, so the cost of the cheapest possible path over open ground
+        is a lower bound on the real cost. With only orthogonal moves this is the Manhattan distance, and with
+        diagonal moves it is the octile distance: as many diagonal moves as the smaller of the two distances,
+        and orthogonal moves for the rest.
+     */
+    static int calculateH(int x, int y, int endX, int endY, boolean diagonal) {
+        long dx = Math.abs((long) endX - x);
+        long dy = Math.abs((long) endY - y);
+        long h = diagonal ? DIAGONAL * Math.min(dx, dy) + ORTHOGONAL * Math.abs(dx - dy) : ORTHOGONAL * (dx + dy);
+        // A lower value is still a lower bound, so a distance too large to store is capped
+        return (int) Math.min(h, INFINITY - 1);
+    }
+
+    /*
+        Calculate the landmark estimate of h(n) for the given cell, given the distance from each landmark to
+        the end node. The landmarks count moves up, down, left and right, each of which costs at least
+        ORTHOGONAL. A diagonal move covers two of those moves and costs at least DIAGONAL, so when diagonal
+        moves are allowed each move counted by the landmarks is only known to cost DIAGONAL / 2.
+     */
+    static int calculateLandmarkH(Landmarks landmarks, int cell, int[] target, boolean diagonal) {
+        long h = (long) landmarks.lowerBound(cell, target) * (diagonal ? DIAGONAL / 2 : ORTHOGONAL);
+        return (int) Math.min(h, INFINITY - 1);
+    }
+
+    // Reconstruct the path from the given node (which would be the end node) back to the start node
+    private int[] reconstructPath(int current) {
+        // The number of moves is not known from the cost, so count the nodes along the path first
+        int length = 1;
+        for (int cell = current; state.previous[cell] != NONE; cell = state.previous[cell])
+            length++;
+        int[] path = new int[length];
+        int i = length - 1;
+        path[i] = current;
+        while (state.previous[current] != NONE) {
+            current = state.previous[current];
+            path[--i] = current;
+        }
+        return path;
+    }
+}
@@ -1,6 +1,8 @@
 module com.callumbirks {
     requires javafx.controls;
     requires javafx.fxml;
+    requires java.management;
+    requires jdk.management;
 
     opens com.callumbirks to javafx.fxml;
     exports com.callumbirks;